@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.ui.control.FuzzyKostenModel;
+import nl.detoren.ijc.ui.control.FuzzyParameters;
+import nl.detoren.ijc.ui.control.GroepenIndeler;
+
+/**
+ * Opbouw van de fuzzy matrix voor de eerste en tweede serie, en het
+ * doorrekenen van een set wegingen op een al opgebouwd kostenmodel (zoals bij
+ * het afstemmen van de parameters).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FuzzyMatrixBenchmark {
+
+	@Param({ "10", "20", "50", "100", "200", "500" })
+	public int spelers;
+
+	private Groep groep;
+	private GroepenIndeler indeler;
+	private FuzzyKostenModel model;
+	private FuzzyParameters parameters;
+
+	@Setup
+	public void setup() {
+		Stil.aan();
+		groep = new SyntheticData(spelers).maakGroep(Groep.DAMEGROEP, spelers);
+		indeler = new GroepenIndeler();
+		model = new FuzzyKostenModel(groep);
+		parameters = new FuzzyParameters();
+		parameters.setFactoren(new int[] { 2, 1, 3, 1 });
+	}
+
+	@Benchmark
+	public int[][] eersteSerie() {
+		return indeler.MaakFuzzyMatrix(groep, 0);
+	}
+
+	@Benchmark
+	public int[][] tweedeSerie() {
+		return indeler.MaakFuzzyMatrix(groep, 1);
+	}
+
+	@Benchmark
+	public int[] wegingen() {
+		return model.bereken(0, parameters);
+	}
+}
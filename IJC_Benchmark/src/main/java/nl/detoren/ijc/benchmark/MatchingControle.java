@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.util.Random;
+
+import nl.detoren.ijc.ui.util.BlossomPairingEngine;
+import nl.detoren.ijc.ui.util.MaxWeightMatching;
+
+/**
+ * Controle van MaxWeightMatching en BlossomPairingEngine tegen een uitputtende
+ * zoektocht op kleine willekeurige problemen. Er is geen testmodule, daarom is
+ * dit een los programma:
+ *
+ * java -cp target/benchmarks.jar nl.detoren.ijc.benchmark.MatchingControle [aantal] [seed]
+ *
+ * Bij een verschil wordt het probleem afgedrukt en eindigt het programma met
+ * exitcode 1.
+ */
+public class MatchingControle {
+
+	/** Grootste aantal punten; de uitputtende zoektocht is exponentieel */
+	private static final int MAX_PUNTEN = 11;
+
+	public static void main(String[] args) {
+		Stil.aan();
+		int aantal = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 20161010L;
+		Random random = new Random(seed);
+		int fouten = 0;
+		for (int t = 0; t < aantal; t++) {
+			int n = 1 + random.nextInt(MAX_PUNTEN);
+			if (!controleerMatching(random, n, t)) {
+				fouten++;
+			}
+			if (!controleerEngine(random, n, t)) {
+				fouten++;
+			}
+		}
+		System.err.println(aantal + " problemen gecontroleerd, " + fouten + " fouten");
+		if (fouten > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * MaxWeightMatching moet een matching met maximale cardinaliteit geven en
+	 * daarbinnen het hoogste gewicht. Gewichten mogen negatief zijn.
+	 */
+	private static boolean controleerMatching(Random random, int n, int t) {
+		int w[][] = new int[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				w[i][j] = w[j][i] = random.nextInt(201) - 50;
+			}
+		}
+		int mate[] = new MaxWeightMatching(w).solve();
+		int paren = 0;
+		int gewicht = 0;
+		for (int i = 0; i < n; i++) {
+			int j = mate[i];
+			if (j >= 0) {
+				if (j == i || mate[j] != i) {
+					return meld("MaxWeightMatching geeft geen geldige matching", t, w);
+				}
+				if (i < j) {
+					paren++;
+					gewicht += w[i][j];
+				}
+			}
+		}
+		if (paren != n / 2) {
+			return meld("MaxWeightMatching: " + paren + " paren, verwacht " + n / 2, t, w);
+		}
+		int beste = besteMatching(w, new boolean[n], n / 2, true);
+		if (gewicht != beste) {
+			return meld("MaxWeightMatching: gewicht " + gewicht + ", optimum " + beste, t, w);
+		}
+		return true;
+	}
+
+	/**
+	 * BlossomPairingEngine moet de goedkoopste indeling vinden: een perfecte
+	 * matching, of bij een oneven aantal spelers een trio van drie
+	 * opeenvolgende spelers plus een perfecte matching van de rest. De
+	 * opgeleverde volgorde moet precies die kosten hebben.
+	 */
+	private static boolean controleerEngine(Random random, int n, int t) {
+		if (n < 2) {
+			return true;
+		}
+		int indexrow = 1;
+		int A[][] = new int[n][n + indexrow];
+		for (int i = 0; i < n; i++) {
+			A[i][0] = i + 1;
+			for (int j = 0; j < n; j++) {
+				A[i][indexrow + j] = (i == j) ? 0 : random.nextInt(100);
+			}
+		}
+		int c[][] = new int[n][n];
+		for (int a = 0; a < n; a++) {
+			for (int b = a + 1; b < n; b++) {
+				c[a][b] = c[b][a] = A[a][indexrow + b] + A[b][indexrow + a];
+			}
+		}
+		int optimum;
+		if (n % 2 == 0) {
+			optimum = -besteMatching(negatief(c), new boolean[n], n / 2, false);
+		} else {
+			optimum = Integer.MAX_VALUE;
+			for (int m = 1; m < n - 1; m++) {
+				boolean bezet[] = new boolean[n];
+				bezet[m - 1] = bezet[m] = bezet[m + 1] = true;
+				int kosten = c[m - 1][m] + c[m][m + 1] + c[m - 1][m + 1]
+						- besteMatching(negatief(c), bezet, (n - 3) / 2, false);
+				optimum = Math.min(optimum, kosten);
+			}
+		}
+		BlossomPairingEngine engine = new BlossomPairingEngine();
+		int tri[][] = engine.optimaliseer(A, indexrow);
+		if (engine.getKosten() != optimum) {
+			return meld("BlossomPairingEngine: kosten " + engine.getKosten() + ", optimum " + optimum, t, c);
+		}
+		int volgorde[] = new int[n];
+		boolean gezien[] = new boolean[n];
+		for (int p = 0; p < n; p++) {
+			volgorde[p] = tri[p][indexrow - 1] - 1;
+			if (gezien[volgorde[p]]) {
+				return meld("BlossomPairingEngine: speler dubbel in volgorde", t, c);
+			}
+			gezien[volgorde[p]] = true;
+		}
+		int trio = engine.getTrio();
+		int kosten = 0;
+		int vanaf = 0;
+		if (trio > 0) {
+			int a = volgorde[trio - 1];
+			int b = volgorde[trio];
+			int d = volgorde[trio + 1];
+			kosten += c[a][b] + c[b][d] + c[a][d];
+			vanaf = trio + 2;
+		}
+		for (int k = vanaf; k + 1 < n; k += 2) {
+			kosten += c[volgorde[k]][volgorde[k + 1]];
+		}
+		if (kosten != optimum) {
+			return meld("BlossomPairingEngine: volgorde kost " + kosten + ", optimum " + optimum, t, c);
+		}
+		return true;
+	}
+
+	private static int[][] negatief(int c[][]) {
+		int w[][] = new int[c.length][c.length];
+		for (int i = 0; i < c.length; i++) {
+			for (int j = 0; j < c.length; j++) {
+				w[i][j] = -c[i][j];
+			}
+		}
+		return w;
+	}
+
+	/**
+	 * Hoogste gewicht van een matching met precies paren paren tussen de
+	 * vrije punten. Als eenOngepaard is toegestaan, mag per niveau ook het
+	 * eerste vrije punt overgeslagen worden (nodig bij een oneven aantal).
+	 */
+	private static int besteMatching(int w[][], boolean bezet[], int paren, boolean eenOngepaard) {
+		if (paren == 0) {
+			return 0;
+		}
+		int i = 0;
+		while (bezet[i]) {
+			i++;
+		}
+		int beste = Integer.MIN_VALUE;
+		bezet[i] = true;
+		for (int j = i + 1; j < w.length; j++) {
+			if (!bezet[j]) {
+				bezet[j] = true;
+				int rest = besteMatching(w, bezet, paren - 1, eenOngepaard);
+				if (rest != Integer.MIN_VALUE) {
+					beste = Math.max(beste, w[i][j] + rest);
+				}
+				bezet[j] = false;
+			}
+		}
+		if (eenOngepaard && vrij(bezet) >= 2 * paren) {
+			int rest = besteMatching(w, bezet, paren, false);
+			if (rest != Integer.MIN_VALUE) {
+				beste = Math.max(beste, rest);
+			}
+		}
+		bezet[i] = false;
+		return beste;
+	}
+
+	private static int vrij(boolean bezet[]) {
+		int aantal = 0;
+		for (boolean b : bezet) {
+			if (!b) {
+				aantal++;
+			}
+		}
+		return aantal;
+	}
+
+	private static boolean meld(String fout, int t, int w[][]) {
+		System.err.println("Probleem " + t + ": " + fout);
+		for (int[] rij : w) {
+			StringBuilder sb = new StringBuilder();
+			for (int v : rij) {
+				sb.append(v).append(' ');
+			}
+			System.err.println(sb);
+		}
+		return false;
+	}
+}
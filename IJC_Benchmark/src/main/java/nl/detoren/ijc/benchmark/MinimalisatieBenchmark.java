@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.ui.control.GroepenIndeler;
+import nl.detoren.ijc.ui.util.BandPairingEngine;
+import nl.detoren.ijc.ui.util.BlossomPairingEngine;
+import nl.detoren.ijc.ui.util.minimizetriagonal;
+
+/**
+ * Minimalisatie van een fuzzy matrix. minimizetriagonal is de referentie; de
+ * incrementele minimalisatie en de exacte matching worden op dezelfde matrix
+ * gemeten. minimizetriagonal past de matrix zelf aan, daarom krijgt iedere
+ * aanroep een kopie.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MinimalisatieBenchmark {
+
+	@Param({ "10", "20", "50", "100", "200", "500" })
+	public int spelers;
+
+	private int[][] matrix;
+
+	@Setup
+	public void setup() {
+		Stil.aan();
+		Groep groep = new SyntheticData(spelers).maakGroep(Groep.DAMEGROEP, spelers);
+		matrix = new GroepenIndeler().MaakFuzzyMatrix(groep, 0);
+	}
+
+	private int[][] kopie() {
+		int[][] k = new int[matrix.length][];
+		for (int i = 0; i < matrix.length; i++) {
+			k[i] = matrix[i].clone();
+		}
+		return k;
+	}
+
+	@Benchmark
+	public int[][] Iterminimizetriagonal() {
+		minimizetriagonal triagonal = new minimizetriagonal();
+		triagonal.setA(kopie());
+		triagonal.setOrder(new int[matrix.length]);
+		triagonal.setIterations(matrix.length);
+		triagonal.Iterminimizetriagonal();
+		return triagonal.getA();
+	}
+
+	@Benchmark
+	public int[][] incrementeel() {
+		return new BandPairingEngine(true, matrix.length).optimaliseer(matrix, 1);
+	}
+
+	@Benchmark
+	public int[][] matching() {
+		return new BlossomPairingEngine().optimaliseer(matrix, 1);
+	}
+}
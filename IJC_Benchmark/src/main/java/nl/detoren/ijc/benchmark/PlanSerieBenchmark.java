@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.data.wedstrijden.Serie;
+import nl.detoren.ijc.ui.control.GroepenIndeler;
+
+/**
+ * Backtracking indeling via maakSerie, die de SeriePlanner gebruikt. Voor de
+ * eerste ronde worden de doorgeschoven spelers apart ingepland, daarom worden
+ * beide rondes gemeten.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlanSerieBenchmark {
+
+	@Param({ "10", "20", "50", "100", "200", "500" })
+	public int spelers;
+
+	@Param({ "1", "2" })
+	public int ronde;
+
+	private Groep groep;
+	private GroepenIndeler indeler;
+
+	@Setup
+	public void setup() {
+		Stil.aan();
+		groep = new SyntheticData(spelers).maakGroep(Groep.DAMEGROEP, spelers & ~1);
+		indeler = new GroepenIndeler();
+	}
+
+	@Benchmark
+	public Serie maakSerie() {
+		boolean[] gepland = new boolean[groep.getAantalSpelers()];
+		return indeler.maakSerie(groep, gepland, groep.getAantalSpelers(), 1, 0, ronde);
+	}
+}
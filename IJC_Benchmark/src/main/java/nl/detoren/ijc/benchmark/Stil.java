@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * De indeling schrijft veel naar System.out en logt op INFO niveau. Om te
+ * voorkomen dat de console-uitvoer de metingen domineert, wordt die tijdens de
+ * benchmarks weggegooid. Het opbouwen van de strings wordt wel gemeten.
+ */
+public class Stil {
+
+	private static final PrintStream NULL = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+
+	public static void aan() {
+		System.setOut(NULL);
+		Logger.getLogger("").setLevel(Level.WARNING);
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
+import nl.detoren.ijc.data.wedstrijden.Serie;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+
+/**
+ * Genereert synthetische groepen en wedstrijden met dezelfde structuur als in
+ * status.json. Spelers hebben unieke initialen van twee letters (maximaal 676
+ * per groep), een tegenstandershistorie met spelers die in de ranglijst dichtbij
+ * staan, een witvoorkeur tussen -2 en 2 en onderaan de groep een aantal
+ * doorgeschoven spelers. Met dezelfde seed wordt altijd dezelfde data gemaakt.
+ */
+public class SyntheticData {
+
+	public static final int MAX_SPELERS = 26 * 26;
+
+	private static final String[] RESULTATEN = { "+", "-", "=" };
+
+	private final Random random;
+
+	public SyntheticData(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Maak een groep met aantal spelers, gesorteerd op punten en genummerd
+	 * vanaf 1.
+	 *
+	 * @param niveau
+	 *            Niveau van de groep
+	 * @param aantal
+	 *            Aantal spelers, maximaal MAX_SPELERS
+	 * @return De groep
+	 */
+	public Groep maakGroep(int niveau, int aantal) {
+		if (aantal > MAX_SPELERS) {
+			throw new IllegalArgumentException("Maximaal " + MAX_SPELERS + " spelers per groep");
+		}
+		String[] initialen = new String[aantal];
+		for (int i = 0; i < aantal; i++) {
+			initialen[i] = "" + (char) ('A' + i / 26) + (char) ('A' + i % 26);
+		}
+		int doorgeschoven = niveau > 0 ? Math.min(4, aantal / 4) : 0;
+		Groep groep = new Groep(niveau);
+		for (int i = 0; i < aantal; i++) {
+			String[] tgn = new String[4];
+			for (int j = 0; j < 4; j++) {
+				if (random.nextInt(10) == 0) {
+					tgn[j] = "-- ";
+				} else {
+					// Tegenstander op maximaal vijf plaatsen afstand
+					int afstand = 1 + random.nextInt(Math.min(5, aantal - 1));
+					int t = random.nextBoolean() ? i + afstand : i - afstand;
+					if (t < 0 || t >= aantal) {
+						t = 2 * i - t;
+					}
+					if (t < 0 || t >= aantal) {
+						t = i == 0 ? 1 : i - 1;
+					}
+					tgn[j] = initialen[t] + RESULTATEN[random.nextInt(RESULTATEN.length)];
+				}
+			}
+			int witvk = random.nextInt(5) - 2;
+			int spelerGroep = i >= aantal - doorgeschoven ? niveau - 1 : niveau;
+			int rating = 1200 - 2 * i + random.nextInt(50);
+			int punten = 10 * (aantal - i) + random.nextInt(10);
+			Speler s = new Speler(i + 1, "Speler " + initialen[i], initialen[i], witvk, spelerGroep, rating, tgn,
+					punten, false, true);
+			groep.addSpeler(s);
+		}
+		return groep;
+	}
+
+	/**
+	 * Maak alle groepen, van KEIZERGROEP tot PIONNENGROEP, ieder met aantal
+	 * spelers.
+	 */
+	public Groepen maakGroepen(int aantal) {
+		Groepen groepen = new Groepen();
+		groepen.setPeriode(1);
+		groepen.setRonde(1);
+		for (int niveau = Groep.getAantalGroepen() - 1; niveau >= 0; niveau--) {
+			groepen.addGroep(maakGroep(niveau, aantal));
+		}
+		return groepen;
+	}
+
+	/**
+	 * Maak voor alle groepen twee series met willekeurige uitslagen. Spelers
+	 * worden op volgorde van de ranglijst gepaard; bij een oneven aantal wordt
+	 * de laatste speler overgeslagen.
+	 */
+	public Wedstrijden maakWedstrijden(Groepen groepen) {
+		Wedstrijden wedstrijden = new Wedstrijden();
+		wedstrijden.setPeriode(groepen.getPeriode());
+		wedstrijden.setRonde(groepen.getRonde());
+		for (Groep groep : groepen.getGroepen()) {
+			Groepswedstrijden gws = new Groepswedstrijden();
+			gws.setNiveau(groep.getNiveau());
+			int n = groep.getAantalSpelers() & ~1;
+			for (int serie = 0; serie < 2; serie++) {
+				Serie s = new Serie();
+				for (int i = 0; i < n; i += 2) {
+					int a = serie == 0 ? i : (i + 1) % n;
+					int b = serie == 0 ? i + 1 : (i + 2) % n;
+					Wedstrijd w = new Wedstrijd(s.getWedstrijden().size() + 1, groep.getSpelers().get(a),
+							groep.getSpelers().get(b), random.nextInt(4));
+					s.addWedstrijd(w);
+				}
+				gws.addSerie(s);
+			}
+			wedstrijden.addGroepswedstrijden(gws);
+		}
+		return wedstrijden;
+	}
+
+	/**
+	 * Velden zoals IJCController ze in status.json opslaat.
+	 */
+	@SuppressWarnings("unused")
+	private static class Status {
+		private boolean automatisch = true;
+		private Groepen groepen;
+		private Groepen wedstrijdgroepen;
+		private Wedstrijden wedstrijden;
+		private Groepen resultaatVerwerkt;
+	}
+
+	/**
+	 * Schrijf een synthetisch statusbestand, bijvoorbeeld om de applicatie met
+	 * grote groepen te testen.
+	 *
+	 * Gebruik: SyntheticData [aantal spelers per groep] [bestand] [seed]
+	 */
+	public static void main(String[] args) throws IOException {
+		int aantal = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		String bestand = args.length > 1 ? args[1] : "status.json";
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		SyntheticData data = new SyntheticData(seed);
+		Status status = new Status();
+		status.groepen = data.maakGroepen(aantal);
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		try (FileWriter writer = new FileWriter(bestand)) {
+			writer.write(gson.toJson(status));
+		}
+		System.out.println("Statusbestand " + bestand + " met " + aantal + " spelers per groep geschreven");
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+import nl.detoren.ijc.ui.control.Uitslagverwerker;
+
+/**
+ * Verwerken van de uitslagen van een speelavond: alle groepen met ieder het
+ * opgegeven aantal spelers en twee series wedstrijden.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UitslagBenchmark {
+
+	@Param({ "10", "20", "50", "100", "200", "500" })
+	public int spelers;
+
+	private Groepen groepen;
+	private Wedstrijden wedstrijden;
+
+	@Setup
+	public void setup() {
+		Stil.aan();
+		SyntheticData data = new SyntheticData(spelers);
+		groepen = data.maakGroepen(spelers);
+		wedstrijden = data.maakWedstrijden(groepen);
+	}
+
+	@Benchmark
+	public Groepen verwerkUitslag() {
+		return new Uitslagverwerker().verwerkUitslag(groepen, wedstrijden);
+	}
+}
@@ -16,6 +16,7 @@
 package nl.detoren.ijc.data.groepen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -45,6 +46,36 @@ public class Groep {
     private int niveau;
     private ArrayList<Speler> spelers;
 
+    /**
+     * Index van speler ID naar positie in spelers. De index wordt bij de
+     * eerste zoekopdracht opgebouwd en vervalt bij iedere wijziging via deze
+     * klasse. Wijzigingen buiten Groep om (via getSpelers() of Speler.setId)
+     * worden alleen opgemerkt als het aantal spelers verandert of als de
+     * gevonden speler een ander ID heeft gekregen.
+     *
+     * De index wordt volledig opgebouwd en daarna met 1 schrijfactie
+     * gepubliceerd. Een groep uit een gepubliceerde toestand kan zo door
+     * meerdere threads tegelijk worden doorzocht: in het ergste geval bouwen
+     * ze allebei een index, maar niemand ziet een half opgebouwde index.
+     */
+    private transient volatile SpelerIndex index;
+
+    /**
+     * Onveranderlijke index voor de lijst spelers met het opgegeven aantal.
+     * positieVanId is null als er gezocht moet worden.
+     */
+    private static final class SpelerIndex {
+        final ArrayList<Speler> spelers;
+        final int aantal;
+        final int[] positieVanId;
+
+        SpelerIndex(ArrayList<Speler> spelers, int aantal, int[] positieVanId) {
+            this.spelers = spelers;
+            this.aantal = aantal;
+            this.positieVanId = positieVanId;
+        }
+    }
+
     public Groep() {
     }
 
@@ -52,6 +83,21 @@ public class Groep {
         this.niveau = niveau;
     }
 
+    /**
+     * Maak een kopie van een groep met kopieen van alle spelers. Wijzigingen
+     * in de kopie, zoals hernummeren, hebben geen invloed op het origineel.
+     * @param groep Te kopieren groep
+     */
+    public Groep(Groep groep) {
+        this.niveau = groep.niveau;
+        if (groep.spelers != null) {
+            this.spelers = new ArrayList<>(groep.spelers.size());
+            for (Speler s : groep.spelers) {
+                this.spelers.add(new Speler(s));
+            }
+        }
+    }
+
     public int getNiveau() {
         return niveau;
     }
@@ -70,6 +116,7 @@ public class Groep {
 
     public void setSpelers(ArrayList<Speler> spelers) {
         this.spelers = spelers;
+        index = null;
     }
 
     public void addSpeler(Speler speler) {
@@ -77,6 +124,7 @@ public class Groep {
             spelers = new ArrayList<>();
         }
         spelers.add(speler);
+        index = null;
     }
 
     public void addSpeler(Speler speler, int loc) {
@@ -89,6 +137,15 @@ public class Groep {
         renumber();
     }
 
+    /**
+     * Verwijder een speler zonder de overige spelers te hernummeren
+     * @param speler De te verwijderen speler
+     */
+    public void removeSpeler(Speler speler) {
+        spelers.remove(speler);
+        index = null;
+    }
+
     /** 
      * Geen naam van deze groep
      * @return GRoepsnaam
@@ -118,6 +175,7 @@ public class Groep {
         for (Speler s : spelers) {
             s.setId(nummer++);
         }
+        index = null;
     }
 
     /**
@@ -131,6 +189,7 @@ public class Groep {
                 s.setId(spelers.get(i-1).getId()+1);
             }
         }
+        index = null;
     }
     
     /**
@@ -150,12 +209,67 @@ public class Groep {
        return namen.length;
     }
     
+    /**
+     * Zoek een speler op ID. Bij meerdere spelers met hetzelfde ID wordt de
+     * eerste in de lijst teruggegeven.
+     * @param ID Het ID van de speler
+     * @return De speler, of null als er geen speler met dit ID is
+     */
     public Speler getSpelerByID(int ID) {
+        SpelerIndex idx = index;
+        if ((idx == null) || (idx.spelers != spelers) || (idx.aantal != spelers.size())) {
+            idx = bouwIndex();
+        }
+        int[] positieVanId = idx.positieVanId;
+        if (positieVanId == null) {
+            return zoekSpeler(ID);
+        }
+        if ((ID < 0) || (ID >= positieVanId.length) || (positieVanId[ID] < 0)) {
+            return null;
+        }
+        Speler s = spelers.get(positieVanId[ID]);
+        if (s.getId() != ID) {
+            // ID is buiten Groep om gewijzigd
+            index = null;
+            return zoekSpeler(ID);
+        }
+        return s;
+    }
+
+    private Speler zoekSpeler(int ID) {
         for (Speler s : spelers) {
             if (s.getId() == ID) return s;
         }
         return null;
     }
+
+    /**
+     * Bouw de index op en publiceer hem. Bij negatieve of zeer grote ID's
+     * wordt er geen index gebruikt maar gewoon gezocht.
+     */
+    private SpelerIndex bouwIndex() {
+        int aantal = spelers.size();
+        int[] positieVanId = new int[aantal + 1];
+        Arrays.fill(positieVanId, -1);
+        for (int i = 0; i < aantal; ++i) {
+            int id = spelers.get(i).getId();
+            if ((id < 0) || (id > 4 * aantal + 64)) {
+                positieVanId = null;
+                break;
+            }
+            if (id >= positieVanId.length) {
+                int oud = positieVanId.length;
+                positieVanId = Arrays.copyOf(positieVanId, Math.max(id + 1, 2 * oud));
+                Arrays.fill(positieVanId, oud, positieVanId.length, -1);
+            }
+            if (positieVanId[id] < 0) {
+                positieVanId[id] = i;
+            }
+        }
+        SpelerIndex idx = new SpelerIndex(spelers, aantal, positieVanId);
+        index = idx;
+        return idx;
+    }
     
     public ArrayList<Speler> getSpelersMetAnderNiveau() {
     	ArrayList<Speler> result = new ArrayList<>();
@@ -172,6 +286,7 @@ public class Groep {
     	        return o2.getPunten() - (o1.getPunten());
     	    }
     	});
+    	index = null;
     }
 
     public void sorteerRating() {
@@ -181,6 +296,7 @@ public class Groep {
     	        return o2.getRating() - (o1.getRating());
     	    }
     	});
+    	index = null;
     }
     
     public void SpelersNamenopvolgorde(int[][] tri, int indexrow) {    	
@@ -30,26 +30,91 @@ public class Groepen {
     private ArrayList<Groep> groepen;
     private int periode;
     private int ronde;
+
+    /**
+     * Groep per niveau, bij de eerste zoekopdracht opgebouwd. Vervalt bij
+     * iedere wijziging via deze klasse of als het aantal groepen verandert.
+     */
+    private transient volatile NiveauIndex index;
+
+    /**
+     * Onveranderlijke index, in zijn geheel opgebouwd voordat hij wordt
+     * gepubliceerd. Zo kunnen meerdere threads een gepubliceerde versie
+     * tegelijk doorzoeken zonder een half opgebouwde index te zien.
+     */
+    private static final class NiveauIndex {
+        final Groep[] perNiveau;
+        final int aantal;
+
+        NiveauIndex(Groep[] perNiveau, int aantal) {
+            this.perNiveau = perNiveau;
+            this.aantal = aantal;
+        }
+    }
     
     public Groepen() {
         groepen = new ArrayList<>();
     }
     
+    /**
+     * Maak een kopie waarin alleen de groep met het opgegeven niveau een
+     * eigen kopie is; de overige groepen worden gedeeld met het origineel.
+     * Zo kan die ene groep worden gewijzigd zonder het origineel te wijzigen.
+     * @param niveau Niveau van de te wijzigen groep
+     * @return de kopie
+     */
+    public Groepen kopieVoorWijziging(int niveau) {
+        Groepen kopie = new Groepen();
+        kopie.periode = periode;
+        kopie.ronde = ronde;
+        kopie.groepen = new ArrayList<>(groepen.size());
+        for (Groep g : groepen) {
+            kopie.groepen.add(g.getNiveau() == niveau ? new Groep(g) : g);
+        }
+        return kopie;
+    }
+
     public void addGroep(Groep groep) {
         groepen.add(groep);
+        index = null;
     }
     
     public void updateGroep(Groep groep, int id) {
     	groepen.set(id, groep);
+    	index = null;
     }
     
     public Groep getGroepById(int id) {
+        NiveauIndex idx = index;
+        if ((idx == null) || (idx.aantal != groepen.size())) {
+            idx = bouwIndex();
+        }
+        if ((id < 0) || (id >= idx.perNiveau.length)) {
+            return null;
+        }
+        Groep g = idx.perNiveau[id];
+        if ((g != null) && (g.getNiveau() != id)) {
+            // Niveau is buiten Groepen om gewijzigd
+            idx = bouwIndex();
+            g = idx.perNiveau[id];
+        }
+        return g;
+    }
+
+    private NiveauIndex bouwIndex() {
+        int max = -1;
+        for (Groep g : groepen) {
+            max = Math.max(max, g.getNiveau());
+        }
+        Groep[] perNiveau = new Groep[max + 1];
         for (Groep g : groepen) {
-            if (g.getNiveau() == id) {
-                return g;
+            if ((g.getNiveau() >= 0) && (perNiveau[g.getNiveau()] == null)) {
+                perNiveau[g.getNiveau()] = g;
             }
         }
-        return null;
+        NiveauIndex nieuw = new NiveauIndex(perNiveau, groepen.size());
+        index = nieuw;
+        return nieuw;
     }
     
     public ArrayList<Groep>getGroepen() {
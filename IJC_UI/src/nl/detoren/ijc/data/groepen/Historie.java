@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.data.groepen;
+
+import java.util.HashMap;
+
+/**
+ * Historie van alle spelers, opgezocht met de sleutel van de speler.
+ * Partijen moeten in de volgorde waarin ze gespeeld zijn worden toegevoegd.
+ *
+ * @author Leo van der Meulen
+ */
+public class Historie {
+
+    private final int diepte;
+    private final HashMap<Long, SpelerHistorie> perSpeler = new HashMap<>();
+
+    /**
+     * @param diepte Aantal partijen dat per speler wordt bijgehouden
+     */
+    public Historie(int diepte) {
+        this.diepte = diepte;
+    }
+
+    public int getDiepte() {
+        return diepte;
+    }
+
+    /**
+     * Voeg een gespeelde partij toe aan de historie van beide spelers
+     * @param wit Sleutel van de speler met wit
+     * @param zwart Sleutel van de speler met zwart
+     * @param uitslag Uitslag in Toto stijl, zie Wedstrijd
+     */
+    public void voegPartijToe(long wit, long zwart, int uitslag) {
+        byte voorWit;
+        byte voorZwart;
+        switch (uitslag) {
+        case 1:
+            voorWit = SpelerHistorie.WINST;
+            voorZwart = SpelerHistorie.VERLIES;
+            break;
+        case 2:
+            voorWit = SpelerHistorie.VERLIES;
+            voorZwart = SpelerHistorie.WINST;
+            break;
+        case 3:
+            voorWit = SpelerHistorie.REMISE;
+            voorZwart = SpelerHistorie.REMISE;
+            break;
+        default:
+            voorWit = SpelerHistorie.ONBEKEND;
+            voorZwart = SpelerHistorie.ONBEKEND;
+        }
+        maak(wit).voegToe(zwart, voorWit);
+        maak(zwart).voegToe(wit, voorZwart);
+    }
+
+    private SpelerHistorie maak(long sleutel) {
+        SpelerHistorie h = perSpeler.get(sleutel);
+        if (h == null) {
+            h = new SpelerHistorie(diepte);
+            perSpeler.put(sleutel, h);
+        }
+        return h;
+    }
+
+    /**
+     * @param speler De speler
+     * @return Historie van de speler, of null als hij nog niet heeft gespeeld
+     */
+    public SpelerHistorie get(Speler speler) {
+        return perSpeler.get(speler.getSleutel());
+    }
+
+    /**
+     * Geef hoe vaak twee spelers tegen elkaar hebben gespeeld
+     */
+    public int aantalKeerGespeeld(Speler s1, Speler s2) {
+        SpelerHistorie h = get(s1);
+        return h == null ? 0 : h.aantalKeerGespeeld(s2.getSleutel());
+    }
+}
@@ -28,6 +28,12 @@ import java.util.regex.Pattern;
 public class Speler implements Cloneable {
 
     private int id;
+    /**
+     * Vaste sleutel van de speler, blijft gelijk bij hernummeren en
+     * naamswijzigingen. Wordt 1 keer bepaald, bij het maken of inlezen van
+     * de speler; 0 alleen tijdens het inlezen.
+     */
+    private long sleutel;
     private String naam;
     private String initialen;
     private double witvoorkeur;			// kleiner dan 0 is witvoorkeur, kleiner dan 0 zwartvoorkeur
@@ -40,12 +46,18 @@ public class Speler implements Cloneable {
     
     private static final DecimalFormat decimalFormat = new DecimalFormat("#");
 
+    /**
+     * Lege speler voor het inlezen. Na het inlezen van naam en initialen zet
+     * de lezer de opgeslagen sleutel met setSleutel of roept bepaalSleutel aan.
+     */
     public Speler() {
         this(0, "", "", 0, 0, 0, new String[4], 0, false, true);
+        this.sleutel = 0;
     }
 
     public Speler(Speler s) {
         this.id = s.id;
+        this.sleutel = s.sleutel;
         this.naam = s.naam;
         this.initialen = s.initialen;
         this.witvoorkeur = s.witvoorkeur;
@@ -69,6 +81,64 @@ public class Speler implements Cloneable {
         this.punten = punten;
         this.afwezigheidspunt = ap;
         this.aanwezig = aanw;
+        this.sleutel = berekenSleutel(this.naam, initialen);
+    }
+
+    /**
+     * Maak een nieuwe speler met de overige gegevens van speler s, zoals bij
+     * het toevoegen van een speler in het scherm. De sleutel wordt afgeleid
+     * van naam en initialen, net als bij het inlezen van uitslag.txt, zodat
+     * de speler na het volgende inlezen dezelfde sleutel heeft.
+     */
+    public Speler(Speler s, String naam, String initialen) {
+        this(s);
+        this.naam = naam.trim();
+        this.initialen = initialen;
+        this.sleutel = berekenSleutel(this.naam, initialen);
+    }
+
+    /**
+     * @return de vaste sleutel van deze speler, 0 als die nog niet is bepaald
+     */
+    public long getSleutel() {
+        return sleutel;
+    }
+
+    /**
+     * Zet de sleutel zoals die eerder is opgeslagen. Alleen voor het inlezen;
+     * een speler die al een sleutel heeft, houdt die.
+     * @param sleutel De opgeslagen sleutel, 0 als het bestand er geen heeft
+     * @throws IllegalStateException als de speler al een andere sleutel heeft
+     */
+    public void setSleutel(long sleutel) {
+        if ((this.sleutel != 0) && (this.sleutel != sleutel)) {
+            throw new IllegalStateException("Speler " + naam + " heeft al een sleutel");
+        }
+        this.sleutel = sleutel;
+    }
+
+    /**
+     * Leid de sleutel af van naam en initialen als het ingelezen bestand geen
+     * sleutel had (uitslag.txt of een oudere status.json). Zo krijgt dezelfde
+     * speler bij ieder inlezen dezelfde sleutel. Alleen voor het inlezen.
+     */
+    public void bepaalSleutel() {
+        if (sleutel == 0) {
+            sleutel = berekenSleutel(naam, initialen);
+        }
+    }
+
+    /**
+     * FNV-1a hash (64 bits) van naam en initialen
+     */
+    private static long berekenSleutel(String naam, String initialen) {
+        long h = 0xcbf29ce484222325L;
+        String s = naam + "\n" + initialen;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h != 0 ? h : 1;
     }
 
     public int getId() {
@@ -181,12 +251,12 @@ public class Speler implements Cloneable {
 
     /**
      * Wordt dezelfde speler gerepresenteerd door het andere object?
+     * Vergelijkt de sleutel en de groep.
      * @param s
      * @return 
      */
     public boolean gelijkAan(Speler s) {
-        return (this.getNaam().equals(s.getNaam())
-                && this.getInitialen().equals(s.getInitialen())
+        return (this.getSleutel() == s.getSleutel()
                 && this.getGroep() == s.getGroep());
     }
 
@@ -276,7 +346,7 @@ public class Speler implements Cloneable {
         	return ronde;
         }
         for (int i = 0; i < 4; i++) {
-            if (tegenstanders[i].substring(0, 2).equals(ini)) {
+            if (isTegenstander(tegenstanders[i], ini)) {
             	ronde[i]=4-i;
             }
         }
@@ -305,13 +375,21 @@ public class Speler implements Cloneable {
         // ff checken dat het niet de speler zelf is ;-)
         if (initialen.equals(ini)) return true;
         for (int i = 0 + negeerNspelers; i < tegenstanders.length; ++i) {
-            if (tegenstanders[i].substring(0, 2).equals(ini)) {
+            if (isTegenstander(tegenstanders[i], ini)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Hoort de tegenstanderscode (initialen gevolgd door resultaat) bij de
+     * speler met deze initialen? Vergelijkt zonder een substring te maken.
+     */
+    private static boolean isTegenstander(String tgn, String ini) {
+        return ini.length() == 2 && tgn.regionMatches(0, ini, 0, 2);
+    }
+
     public void addTegenstander(String tgn) {
         tegenstanders[0] = tegenstanders[1];
         tegenstanders[1] = tegenstanders[2];
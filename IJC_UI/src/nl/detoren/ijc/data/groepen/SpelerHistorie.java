@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.data.groepen;
+
+/**
+ * De laatste partijen van een speler: de sleutel van de tegenstander en het
+ * resultaat. In tegenstelling tot de tegenstanderslijst van Speler is de
+ * diepte instelbaar en wordt er niets als tekst opgeslagen. De partijen staan
+ * in een ringbuffer; bij een volle buffer vervalt de oudste partij.
+ *
+ * @author Leo van der Meulen
+ */
+public class SpelerHistorie {
+
+    public static final byte ONBEKEND = 0;
+    public static final byte WINST = 1;
+    public static final byte VERLIES = 2;
+    public static final byte REMISE = 3;
+
+    private final long[] tegenstanders;
+    private final byte[] resultaten;
+    /** Positie waar de volgende partij komt */
+    private int volgende = 0;
+    private int aantal = 0;
+
+    /**
+     * @param diepte Maximaal aantal partijen dat wordt bijgehouden
+     */
+    public SpelerHistorie(int diepte) {
+        if (diepte < 1) {
+            throw new IllegalArgumentException("Diepte moet minstens 1 zijn");
+        }
+        tegenstanders = new long[diepte];
+        resultaten = new byte[diepte];
+    }
+
+    /**
+     * Voeg een partij toe
+     * @param tegenstander Sleutel van de tegenstander
+     * @param resultaat WINST, VERLIES, REMISE of ONBEKEND
+     */
+    public void voegToe(long tegenstander, byte resultaat) {
+        tegenstanders[volgende] = tegenstander;
+        resultaten[volgende] = resultaat;
+        volgende = (volgende + 1) % tegenstanders.length;
+        if (aantal < tegenstanders.length) {
+            aantal++;
+        }
+    }
+
+    public int getDiepte() {
+        return tegenstanders.length;
+    }
+
+    public int getAantal() {
+        return aantal;
+    }
+
+    private int positie(int index) {
+        if ((index < 0) || (index >= aantal)) {
+            throw new IndexOutOfBoundsException("Partij " + index + " van " + aantal);
+        }
+        int p = volgende - 1 - index;
+        return p < 0 ? p + tegenstanders.length : p;
+    }
+
+    /**
+     * @param index 0 voor de laatste partij, 1 voor de partij daarvoor, enz.
+     * @return Sleutel van de tegenstander
+     */
+    public long getTegenstander(int index) {
+        return tegenstanders[positie(index)];
+    }
+
+    /**
+     * @param index 0 voor de laatste partij, 1 voor de partij daarvoor, enz.
+     * @return WINST, VERLIES, REMISE of ONBEKEND
+     */
+    public byte getResultaat(int index) {
+        return resultaten[positie(index)];
+    }
+
+    /**
+     * Geef hoe vaak tegen de gegeven speler is gespeeld
+     * @param tegenstander Sleutel van de tegenstander
+     * @return Aantal partijen in de historie
+     */
+    public int aantalKeerGespeeld(long tegenstander) {
+        int n = 0;
+        for (int i = 0; i < aantal; i++) {
+            if (tegenstanders[i] == tegenstander) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
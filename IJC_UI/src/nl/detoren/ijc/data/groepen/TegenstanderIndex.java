@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.data.groepen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index van de eerdere tegenstanders binnen een groep. Spelers worden
+ * genummerd met hun positie in de lijst waarmee de index is gemaakt. Per paar
+ * wordt in een byte bijgehouden op welke posities van de tegenstanderslijst de
+ * andere speler voorkomt, en of beide spelers dezelfde initialen hebben.
+ *
+ * De vragen "is er tegen gespeeld" en "hoe lang geleden" zijn daarmee een
+ * opzoeking zonder nieuwe objecten, met dezelfde uitkomst als
+ * Speler.isGespeeldTegen en Speler.getGespeeldTegen.
+ *
+ * De index is een momentopname: na het wijzigen van de spelers of hun
+ * tegenstanders moet een nieuwe index gemaakt worden.
+ *
+ * @author Leo van der Meulen
+ */
+public class TegenstanderIndex {
+
+    /** Aantal tegenstanders dat per speler wordt bijgehouden */
+    public static final int AANTAL_TEGENSTANDERS = 4;
+
+    /** Bit in het masker voor spelers met dezelfde initialen */
+    private static final int ZELFDE_INITIALEN = 1 << AANTAL_TEGENSTANDERS;
+
+    private static final int TEGENSTANDERS = ZELFDE_INITIALEN - 1;
+
+    private final int n;
+    private final byte[] masker;
+    private final List<Speler> spelers;
+
+    /**
+     * Maak de index voor de gegeven spelers.
+     *
+     * @param spelers De spelers; speler i in deze lijst krijgt nummer i
+     */
+    public TegenstanderIndex(List<Speler> spelers) {
+        this.spelers = spelers;
+        this.n = spelers.size();
+        this.masker = new byte[n * n];
+        HashMap<String, ArrayList<Integer>> perInitialen = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String ini = spelers.get(i).getInitialen();
+            ArrayList<Integer> lijst = perInitialen.get(ini);
+            if (lijst == null) {
+                lijst = new ArrayList<>();
+                perInitialen.put(ini, lijst);
+            }
+            lijst.add(i);
+        }
+        // Dezelfde initialen, waaronder de speler zelf
+        for (ArrayList<Integer> lijst : perInitialen.values()) {
+            for (int i : lijst) {
+                for (int j : lijst) {
+                    masker[i * n + j] |= ZELFDE_INITIALEN;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Speler s = spelers.get(i);
+            String[] tgns = s.getTegenstanders();
+            int aantal = Math.min(tgns.length, AANTAL_TEGENSTANDERS);
+            for (int k = 0; k < aantal; k++) {
+                String tgn = tgns[k];
+                if (tgn == null || tgn.length() < 2) {
+                    continue;
+                }
+                ArrayList<Integer> lijst = perInitialen.get(tgn.substring(0, 2));
+                if (lijst == null) {
+                    continue;
+                }
+                for (int j : lijst) {
+                    masker[i * n + j] |= 1 << k;
+                }
+            }
+        }
+    }
+
+    public int getAantalSpelers() {
+        return n;
+    }
+
+    /**
+     * @return Nummer van de speler in de index, of -1 als de speler er niet in
+     *         staat. Er wordt vergeleken op object, niet op gelijkAan.
+     */
+    public int getIndex(Speler speler) {
+        for (int i = 0; i < n; i++) {
+            if (spelers.get(i) == speler) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Posities in de tegenstanderslijst van speler i waarop speler j staat.
+     * Bit k is gezet voor positie k (0 is de oudste). Voor spelers met
+     * dezelfde initialen is het masker altijd 0, net als bij
+     * Speler.getGespeeldTegen.
+     */
+    public int getMasker(int i, int j) {
+        int m = masker[i * n + j];
+        return (m & ZELFDE_INITIALEN) != 0 ? 0 : m & TEGENSTANDERS;
+    }
+
+    /**
+     * Is er door speler i tegen speler j gespeeld, zonder de oudste
+     * negeerNspelers tegenstanders mee te tellen? Zelfde uitkomst als
+     * Speler.isGespeeldTegen(Speler, int); spelers met dezelfde initialen
+     * gelden altijd als gespeeld.
+     */
+    public boolean isGespeeldTegen(int i, int j, int negeerNspelers) {
+        int m = masker[i * n + j];
+        if ((m & ZELFDE_INITIALEN) != 0) {
+            return true;
+        }
+        if (negeerNspelers >= AANTAL_TEGENSTANDERS) {
+            return false;
+        }
+        return (m & TEGENSTANDERS & (TEGENSTANDERS << Math.max(negeerNspelers, 0))) != 0;
+    }
+
+    /**
+     * Hoeveel partijen geleden is er door speler i tegen speler j gespeeld?
+     *
+     * @return 0 als er niet in de laatste vier partijen tegen gespeeld is,
+     *         anders 1 voor de vorige partij, 2 voor de partij daarvoor, etc.
+     */
+    public int getGespeeldTegen(int i, int j) {
+        int m = getMasker(i, j);
+        for (int k = AANTAL_TEGENSTANDERS - 1; k >= 0; k--) {
+            if ((m & (1 << k)) != 0) {
+                return AANTAL_TEGENSTANDERS - k;
+            }
+        }
+        return 0;
+    }
+}
@@ -28,7 +28,7 @@ public class Groepswedstrijden {
 
     private int niveau;
     private int fuzzymatrix[][];
-	private static int[] trioids;
+	private int[] trioids;
     private ArrayList<Serie> series;
     private ArrayList<Wedstrijd> triowedstrijden;
 
@@ -37,6 +37,29 @@ public class Groepswedstrijden {
         triowedstrijden = new ArrayList<>();
     }
 
+    /**
+     * Kopie met eigen series en wedstrijden, zodat de kopie gewijzigd kan
+     * worden zonder het origineel te wijzigen. Spelers, fuzzy matrix en
+     * trio's worden gedeeld met het origineel.
+     */
+    public Groepswedstrijden(Groepswedstrijden g) {
+        niveau = g.niveau;
+        fuzzymatrix = g.fuzzymatrix;
+        trioids = g.trioids;
+        series = new ArrayList<>();
+        if (g.series != null) {
+            for (Serie s : g.series) {
+                series.add(new Serie(s));
+            }
+        }
+        triowedstrijden = new ArrayList<>();
+        if (g.triowedstrijden != null) {
+            for (Wedstrijd w : g.triowedstrijden) {
+                triowedstrijden.add(new Wedstrijd(w));
+            }
+        }
+    }
+
     public int getNiveau() {
         return niveau;
     }
@@ -78,7 +101,7 @@ public class Groepswedstrijden {
     }
 
     public void setTrioids(int[] trioids) {
-        Groepswedstrijden.trioids= trioids;
+        this.trioids = trioids;
     }
 
     public void addSerie(Serie s) {
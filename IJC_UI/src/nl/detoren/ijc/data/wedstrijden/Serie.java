@@ -16,6 +16,8 @@
 package nl.detoren.ijc.data.wedstrijden;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+
 import nl.detoren.ijc.data.groepen.Speler;
 
 /**
@@ -27,11 +29,33 @@ public class Serie {
     private int nummer;
     private ArrayList<Wedstrijd> wedstrijden;
 
+    /**
+     * Eerste wedstrijd per spelersleutel, bij de eerste zoekopdracht
+     * opgebouwd. Vervalt bij wijzigingen via deze klasse of als het aantal
+     * wedstrijden verandert. Een gevonden wedstrijd wordt altijd
+     * gecontroleerd; als die niet klopt, wordt er gewoon gezocht.
+     */
+    private transient HashMap<Long, Wedstrijd> perSleutel;
+    private transient ArrayList<Wedstrijd> geindexeerd;
+    private transient int geindexeerdAantal;
+
     public Serie() {
         nummer = 0;
         wedstrijden = new ArrayList<>();
     }
 
+    /**
+     * Kopie van een serie met een kopie van iedere wedstrijd, zodat de kopie
+     * gewijzigd kan worden zonder het origineel te wijzigen.
+     */
+    public Serie(Serie s) {
+        nummer = s.nummer;
+        wedstrijden = new ArrayList<>(s.wedstrijden.size());
+        for (Wedstrijd w : s.wedstrijden) {
+            wedstrijden.add(new Wedstrijd(w));
+        }
+    }
+
     public int getNummer() {
         return nummer;
     }
@@ -46,10 +70,12 @@ public class Serie {
 
     public void setWedstrijden(ArrayList<Wedstrijd> wedstrijden) {
         this.wedstrijden = wedstrijden;
+        perSleutel = null;
     }
 
     public void addWedstrijd(Wedstrijd w) {
         wedstrijden.add(w);
+        perSleutel = null;
     }
 
     public void addWedstrijd(Wedstrijd w, boolean vooraan) {
@@ -58,10 +84,12 @@ public class Serie {
         } else {
             wedstrijden.add(w);
         }
+        perSleutel = null;
     }
 
     public void addWestrijd(Wedstrijd w, int locatie) {
         wedstrijden.add(locatie, w);
+        perSleutel = null;
     }
 
     public Wedstrijd getWedstrijd(int index) {
@@ -72,6 +100,13 @@ public class Serie {
     }
 
     public Wedstrijd getWedstrijdVoorSpeler(Speler speler) {
+        if ((perSleutel == null) || (geindexeerd != wedstrijden) || (geindexeerdAantal != wedstrijden.size())) {
+            bouwIndex();
+        }
+        Wedstrijd gevonden = perSleutel.get(speler.getSleutel());
+        if ((gevonden != null) && (gevonden.getWit().gelijkAan(speler) || gevonden.getZwart().gelijkAan(speler))) {
+            return gevonden;
+        }
         for (Wedstrijd w : wedstrijden) {
             if ((w.getWit().gelijkAan(speler) || (w.getZwart().gelijkAan(speler)))) {
             	
@@ -82,14 +117,21 @@ public class Serie {
     }
 
     public Speler getTegenstanderVoorSpeler(Speler speler) {
+        Wedstrijd w = getWedstrijdVoorSpeler(speler);
+        if (w == null) {
+            return null;
+        }
+        return w.getWit().gelijkAan(speler) ? w.getZwart() : w.getWit();
+    }
+
+    private void bouwIndex() {
+        perSleutel = new HashMap<>();
         for (Wedstrijd w : wedstrijden) {
-            if ((w.getWit().gelijkAan(speler))) {
-                return w.getZwart();
-            } else if (w.getZwart().gelijkAan(speler)) {
-                return w.getWit();
-            }
+            perSleutel.putIfAbsent(w.getWit().getSleutel(), w);
+            perSleutel.putIfAbsent(w.getZwart().getSleutel(), w);
         }
-        return null;
+        geindexeerd = wedstrijden;
+        geindexeerdAantal = wedstrijden.size();
     }
 
     /**
@@ -50,6 +50,16 @@ public class Wedstrijd {
         this.uitslag = uitslag;
     }
 
+    /**
+     * Kopie van een wedstrijd. De spelers worden gedeeld met het origineel.
+     */
+    public Wedstrijd(Wedstrijd w) {
+        this.id = w.id;
+        this.wit = w.wit;
+        this.zwart = w.zwart;
+        this.uitslag = w.uitslag;
+    }
+
     public int getId() {
         return id;
     }
@@ -28,6 +28,28 @@ public class Wedstrijden {
     private int ronde;
     private int periode;
 
+    /**
+     * Groepswedstrijden per niveau, bij de eerste zoekopdracht opgebouwd.
+     * Vervalt bij iedere wijziging via deze klasse of als het aantal
+     * groepswedstrijden verandert.
+     */
+    private transient volatile NiveauIndex index;
+
+    /**
+     * Onveranderlijke index, in zijn geheel opgebouwd voordat hij wordt
+     * gepubliceerd. Zo kunnen meerdere threads een gepubliceerde versie
+     * tegelijk doorzoeken zonder een half opgebouwde index te zien.
+     */
+    private static final class NiveauIndex {
+        final Groepswedstrijden[] perNiveau;
+        final int aantal;
+
+        NiveauIndex(Groepswedstrijden[] perNiveau, int aantal) {
+            this.perNiveau = perNiveau;
+            this.aantal = aantal;
+        }
+    }
+
     public int getRonde() {
 		return ronde;
 	}
@@ -47,20 +69,65 @@ public class Wedstrijden {
         return groepswedstrijden;
     }
 
+    /**
+     * Maak een kopie waarin alleen de groepswedstrijden van het opgegeven
+     * niveau een eigen kopie zijn; die van de overige groepen worden gedeeld
+     * met het origineel. Zo kunnen de wedstrijden van die ene groep worden
+     * gewijzigd zonder het origineel te wijzigen.
+     * @param niveau Niveau van de te wijzigen groep
+     * @return de kopie
+     */
+    public Wedstrijden kopieVoorWijziging(int niveau) {
+        Wedstrijden kopie = new Wedstrijden();
+        kopie.periode = periode;
+        kopie.ronde = ronde;
+        kopie.groepswedstrijden = new ArrayList<>(groepswedstrijden.size());
+        for (Groepswedstrijden gw : groepswedstrijden) {
+            kopie.groepswedstrijden.add(gw.getNiveau() == niveau ? new Groepswedstrijden(gw) : gw);
+        }
+        return kopie;
+    }
+
     public void setGroepswedstrijden(ArrayList<Groepswedstrijden> groepswedstrijden) {
         this.groepswedstrijden = groepswedstrijden;
+        index = null;
     }
     
     public void addGroepswedstrijden(Groepswedstrijden gw) {
         groepswedstrijden.add(gw);
+        index = null;
     }
     
     public Groepswedstrijden getGroepswedstrijdenNiveau(int niveau) {
+        NiveauIndex idx = index;
+        if ((idx == null) || (idx.aantal != groepswedstrijden.size())) {
+            idx = bouwIndex();
+        }
+        if ((niveau < 0) || (niveau >= idx.perNiveau.length)) {
+            return null;
+        }
+        Groepswedstrijden w = idx.perNiveau[niveau];
+        if ((w != null) && (w.getNiveau() != niveau)) {
+            // Niveau is buiten Wedstrijden om gewijzigd
+            idx = bouwIndex();
+            w = idx.perNiveau[niveau];
+        }
+        return w;
+    }
+
+    private NiveauIndex bouwIndex() {
+        int max = -1;
+        for (Groepswedstrijden w : groepswedstrijden) {
+            max = Math.max(max, w.getNiveau());
+        }
+        Groepswedstrijden[] perNiveau = new Groepswedstrijden[max + 1];
         for (Groepswedstrijden w : groepswedstrijden) {
-            if (w.getNiveau() == niveau) {
-                return w;
+            if ((w.getNiveau() >= 0) && (perNiveau[w.getNiveau()] == null)) {
+                perNiveau[w.getNiveau()] = w;
             }
         }
-        return null;
+        NiveauIndex nieuw = new NiveauIndex(perNiveau, groepswedstrijden.size());
+        index = nieuw;
+        return nieuw;
     }
 }
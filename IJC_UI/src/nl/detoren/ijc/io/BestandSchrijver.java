@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Schrijft bestanden zo dat een afgebroken schrijfactie het bestaande bestand
+ * niet beschadigt. Er wordt eerst naar een tijdelijk bestand in dezelfde map
+ * geschreven; pas als dat volledig op schijf staat, wordt het in n keer
+ * over het oude bestand heen gezet.
+ *
+ * JSON wordt direct naar het bestand gestreamd, zonder eerst de hele inhoud
+ * als String op te bouwen. Er wordt dezelfde tekenset gebruikt als door
+ * FileReader bij het inlezen. Tekens die niet in die tekenset bestaan, worden
+ * net als door FileWriter vervangen door een vraagteken.
+ *
+ * Het nieuwe bestand krijgt de rechten van het bestand dat het vervangt, of
+ * de standaardrechten als er nog geen bestand was.
+ *
+ * @author Leo van der Meulen
+ */
+public class BestandSchrijver {
+
+	private final static Logger logger = Logger.getLogger(BestandSchrijver.class.getName());
+
+	private static final Gson gson = new Gson();
+
+	private static final int BUFFERGROOTTE = 64 * 1024;
+
+	/**
+	 * Schrijf een object als JSON naar een bestand
+	 *
+	 * @param object
+	 *            Het object
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @throws IOException
+	 */
+	public static void schrijfJson(final Object object, String bestandsnaam) throws IOException {
+		schrijf(bestandsnaam, new Inhoud() {
+			@Override
+			public void schrijfNaar(Writer writer) throws IOException {
+				JsonWriter jsonWriter = new JsonWriter(writer);
+				gson.toJson(object, object.getClass(), jsonWriter);
+				jsonWriter.flush();
+			}
+		});
+	}
+
+	/**
+	 * Schrijf tekst naar een bestand
+	 *
+	 * @param tekst
+	 *            De tekst
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @throws IOException
+	 */
+	public static void schrijfTekst(final String tekst, String bestandsnaam) throws IOException {
+		schrijf(bestandsnaam, new Inhoud() {
+			@Override
+			public void schrijfNaar(Writer writer) throws IOException {
+				writer.write(tekst);
+			}
+		});
+	}
+
+	/**
+	 * Kopieer een bestand, bijvoorbeeld voor een reservekopie met tijdstempel
+	 *
+	 * @param van
+	 *            Bronbestand
+	 * @param naar
+	 *            Doelbestand, wordt overschreven als het al bestaat
+	 * @throws IOException
+	 */
+	public static void kopieer(String van, String naar) throws IOException {
+		Files.copy(Paths.get(van), Paths.get(naar), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private interface Inhoud {
+		void schrijfNaar(Writer writer) throws IOException;
+	}
+
+	private static void schrijf(String bestandsnaam, Inhoud inhoud) throws IOException {
+		Path doel = Paths.get(bestandsnaam).toAbsolutePath();
+		Path tijdelijk = null;
+		try {
+			FileChannel kanaal = null;
+			while (kanaal == null) {
+				// Niet via Files.createTempFile: dat maakt een bestand dat alleen
+				// voor de eigenaar leesbaar is
+				tijdelijk = doel.resolveSibling(doel.getFileName() + "."
+						+ Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE) + ".tmp");
+				try {
+					kanaal = FileChannel.open(tijdelijk, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+				} catch (FileAlreadyExistsException e) {
+					tijdelijk = null;
+				}
+			}
+			try {
+				CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				Writer writer = new BufferedWriter(Channels.newWriter(kanaal, encoder, BUFFERGROOTTE), BUFFERGROOTTE);
+				inhoud.schrijfNaar(writer);
+				writer.flush();
+				kanaal.force(true);
+			} finally {
+				kanaal.close();
+			}
+			kopieerRechten(doel, tijdelijk);
+			try {
+				Files.move(tijdelijk, doel, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				logger.log(Level.WARNING, "Atomisch vervangen van " + bestandsnaam + " niet mogelijk");
+				Files.move(tijdelijk, doel, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			if (tijdelijk != null) {
+				Files.deleteIfExists(tijdelijk);
+			}
+		}
+	}
+
+	/**
+	 * Geef het nieuwe bestand de rechten van het bestaande bestand, als het
+	 * bestandssysteem POSIX rechten kent
+	 */
+	private static void kopieerRechten(Path doel, Path tijdelijk) {
+		PosixFileAttributeView van = Files.getFileAttributeView(doel, PosixFileAttributeView.class);
+		PosixFileAttributeView naar = Files.getFileAttributeView(tijdelijk, PosixFileAttributeView.class);
+		if ((van == null) || (naar == null) || !Files.exists(doel)) {
+			return;
+		}
+		try {
+			Set<PosixFilePermission> rechten = van.readAttributes().permissions();
+			naar.setPermissions(rechten);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Rechten van " + doel + " niet overgenomen: " + e.getMessage());
+		}
+	}
+}
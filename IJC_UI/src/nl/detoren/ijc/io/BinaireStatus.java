@@ -0,0 +1,680 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.io;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
+import nl.detoren.ijc.data.wedstrijden.Serie;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+
+/**
+ * Compact binair formaat voor de status van de applicatie. Opbouw:
+ *
+ * <pre>
+ * "IJCS" versie
+ * automatisch journaalVolgnummer
+ * stringtabel     : alle namen, initialen en tegenstanders komen er 1 keer in
+ * spelergegevens  : de gegevens van een speler, gelijke gegevens 1 keer
+ * spelers         : per speler-object een verwijzing naar zijn gegevens
+ * groepen, wedstrijdgroepen, wedstrijden, resultaatVerwerkt
+ * </pre>
+ *
+ * Groepen en wedstrijden verwijzen met een nummer naar een speler in plaats
+ * van een kopie op te nemen. Spelers die in het geheugen hetzelfde object zijn,
+ * zijn dat na het inlezen weer. Kopieen van een speler met dezelfde gegevens,
+ * zoals in groepen, wedstrijdgroepen en wedstrijden, delen die gegevens in
+ * het bestand, maar blijven na het inlezen losse objecten.
+ *
+ * Getallen worden als varint opgeslagen. Een tegenstander als "MR+" wordt
+ * opgeslagen als de index van "MR" in de stringtabel met het resultaat in
+ * de laagste 3 bits. Een lijst of verwijzing wordt opgeslagen als aantal + 1,
+ * met 0 voor null.
+ *
+ * @author Leo van der Meulen
+ */
+public class BinaireStatus {
+
+	private final static Logger logger = Logger.getLogger(BinaireStatus.class.getName());
+
+	private static final byte[] MAGIC = { 'I', 'J', 'C', 'S' };
+
+	/** Huidige versie van het formaat */
+	public static final int VERSIE = 1;
+
+	/** Resultaatcodes van een tegenstander, in de laagste 3 bits */
+	private static final String RESULTATEN = " +-=";
+	private static final int VOLLEDIG = 4;
+	private static final int GEEN = 5;
+
+	private boolean automatisch = true;
+	private Groepen groepen;
+	private Groepen wedstrijdgroepen;
+	private Wedstrijden wedstrijden;
+	private Groepen resultaatVerwerkt;
+	private long journaalVolgnummer;
+
+	public boolean isAutomatisch() {
+		return automatisch;
+	}
+
+	public void setAutomatisch(boolean automatisch) {
+		this.automatisch = automatisch;
+	}
+
+	public Groepen getGroepen() {
+		return groepen;
+	}
+
+	public void setGroepen(Groepen groepen) {
+		this.groepen = groepen;
+	}
+
+	public Groepen getWedstrijdgroepen() {
+		return wedstrijdgroepen;
+	}
+
+	public void setWedstrijdgroepen(Groepen wedstrijdgroepen) {
+		this.wedstrijdgroepen = wedstrijdgroepen;
+	}
+
+	public Wedstrijden getWedstrijden() {
+		return wedstrijden;
+	}
+
+	public void setWedstrijden(Wedstrijden wedstrijden) {
+		this.wedstrijden = wedstrijden;
+	}
+
+	public Groepen getResultaatVerwerkt() {
+		return resultaatVerwerkt;
+	}
+
+	public void setResultaatVerwerkt(Groepen resultaatVerwerkt) {
+		this.resultaatVerwerkt = resultaatVerwerkt;
+	}
+
+	public long getJournaalVolgnummer() {
+		return journaalVolgnummer;
+	}
+
+	public void setJournaalVolgnummer(long journaalVolgnummer) {
+		this.journaalVolgnummer = journaalVolgnummer;
+	}
+
+	/**
+	 * Schrijf de status naar een bestand. Net als bij BestandSchrijver wordt
+	 * eerst naar een tijdelijk bestand geschreven, dat daarna in een keer het
+	 * oude bestand vervangt.
+	 *
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @throws IOException
+	 */
+	public void schrijf(String bestandsnaam) throws IOException {
+		ByteBuffer inhoud = ByteBuffer.wrap(codeer());
+		Path doel = Paths.get(bestandsnaam).toAbsolutePath();
+		Path tijdelijk = Files.createTempFile(doel.getParent(), doel.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel kanaal = FileChannel.open(tijdelijk, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (inhoud.hasRemaining()) {
+					kanaal.write(inhoud);
+				}
+				kanaal.force(true);
+			}
+			try {
+				Files.move(tijdelijk, doel, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				logger.log(Level.WARNING, "Atomisch vervangen van " + bestandsnaam + " niet mogelijk");
+				Files.move(tijdelijk, doel, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tijdelijk);
+		}
+	}
+
+	/**
+	 * Lees de status uit een bestand
+	 *
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @return De ingelezen status
+	 * @throws IOException
+	 *             als het bestand niet te lezen is of geen geldige status
+	 *             bevat
+	 */
+	public static BinaireStatus lees(String bestandsnaam) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel kanaal = FileChannel.open(Paths.get(bestandsnaam), StandardOpenOption.READ)) {
+			long grootte = kanaal.size();
+			if (grootte > Integer.MAX_VALUE) {
+				throw new IOException(bestandsnaam + " is te groot");
+			}
+			buffer = ByteBuffer.allocate((int) grootte);
+			while (buffer.hasRemaining()) {
+				if (kanaal.read(buffer) < 0) {
+					throw new IOException(bestandsnaam + " is korter dan verwacht");
+				}
+			}
+			buffer.flip();
+		}
+		try {
+			return new Lezer(buffer).lees();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException(bestandsnaam + " is geen geldig statusbestand", e);
+		}
+	}
+
+	/**
+	 * Zet de status om naar de bytes van het bestand
+	 */
+	byte[] codeer() {
+		Schrijver s = new Schrijver();
+		s.schrijfGroepen(groepen);
+		s.schrijfGroepen(wedstrijdgroepen);
+		s.schrijfWedstrijden(wedstrijden);
+		s.schrijfGroepen(resultaatVerwerkt);
+
+		Uitvoer uit = new Uitvoer();
+		uit.bytes(MAGIC, MAGIC.length);
+		uit.varint(VERSIE);
+		uit.varint(automatisch ? 1 : 0);
+		uit.varint(journaalVolgnummer);
+		uit.varint(s.strings.size());
+		for (String str : s.strings) {
+			byte[] b = str.getBytes(StandardCharsets.UTF_8);
+			uit.varint(b.length);
+			uit.bytes(b, b.length);
+		}
+		uit.varint(s.gegevens.size());
+		for (Uitvoer g : s.gegevens) {
+			uit.bytes(g.buffer, g.lengte);
+		}
+		uit.varint(s.spelerGegevens.lengte);
+		uit.bytes(s.spelerGegevens.buffer, s.spelerGegevens.lengte);
+		uit.bytes(s.romp.buffer, s.romp.lengte);
+		return Arrays.copyOf(uit.buffer, uit.lengte);
+	}
+
+	/**
+	 * Groeiende buffer met varint codering
+	 */
+	private static class Uitvoer {
+		private byte[] buffer = new byte[256];
+		private int lengte = 0;
+
+		private void ruimte(int n) {
+			if (lengte + n > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, lengte + n));
+			}
+		}
+
+		void bytes(byte[] b, int n) {
+			ruimte(n);
+			System.arraycopy(b, 0, buffer, lengte, n);
+			lengte += n;
+		}
+
+		void varint(long v) {
+			ruimte(10);
+			while ((v & ~0x7FL) != 0) {
+				buffer[lengte++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			buffer[lengte++] = (byte) v;
+		}
+
+		void zigzag(long v) {
+			varint((v << 1) ^ (v >> 63));
+		}
+
+		void lang(long v) {
+			ruimte(8);
+			for (int i = 56; i >= 0; i -= 8) {
+				buffer[lengte++] = (byte) (v >>> i);
+			}
+		}
+	}
+
+	/**
+	 * Bouwt de romp van het bestand op en verzamelt onderweg de strings en
+	 * spelers waarnaar verwezen wordt.
+	 */
+	private static class Schrijver {
+		private final ArrayList<String> strings = new ArrayList<>();
+		private final HashMap<String, Integer> stringIndex = new HashMap<>();
+		private final ArrayList<Uitvoer> gegevens = new ArrayList<>();
+		private final HashMap<ByteBuffer, Integer> gegevensIndex = new HashMap<>();
+		private final IdentityHashMap<Speler, Integer> spelerIndex = new IdentityHashMap<>();
+		/** Per speler de index van zijn gegevens */
+		private final Uitvoer spelerGegevens = new Uitvoer();
+		private final Uitvoer romp = new Uitvoer();
+
+		private int string(String s) {
+			Integer i = stringIndex.get(s);
+			if (i == null) {
+				i = strings.size();
+				strings.add(s);
+				stringIndex.put(s, i);
+			}
+			return i;
+		}
+
+		private void schrijfString(Uitvoer uit, String s) {
+			uit.varint(s == null ? 0 : string(s) + 1);
+		}
+
+		private void schrijfTegenstander(Uitvoer uit, String t) {
+			if (t == null) {
+				uit.varint(GEEN);
+				return;
+			}
+			int resultaat = t.length() == 3 ? RESULTATEN.indexOf(t.charAt(2)) : -1;
+			if (resultaat >= 0) {
+				uit.varint(((long) string(t.substring(0, 2)) << 3) | resultaat);
+			} else {
+				uit.varint(((long) string(t) << 3) | VOLLEDIG);
+			}
+		}
+
+		private void schrijfWitvoorkeur(Uitvoer uit, double w) {
+			double dubbel = w * 2;
+			long heel = (long) dubbel;
+			if ((heel == dubbel) && (Math.abs(heel) < (1L << 40))
+					&& (Double.doubleToRawLongBits(w) != Double.doubleToRawLongBits(-0.0))) {
+				uit.varint((((heel << 1) ^ (heel >> 63))) << 1);
+			} else {
+				uit.varint(1);
+				uit.lang(Double.doubleToRawLongBits(w));
+			}
+		}
+
+		private int gegevens(Speler s) {
+			Uitvoer uit = new Uitvoer();
+			uit.lang(s.getSleutel());
+			uit.zigzag(s.getId());
+			schrijfString(uit, s.getNaam());
+			schrijfString(uit, s.getInitialen());
+			schrijfWitvoorkeur(uit, s.getWitvoorkeur());
+			uit.zigzag(s.getGroep());
+			uit.zigzag(s.getRating());
+			String[] tgn = s.getTegenstanders();
+			uit.varint(tgn == null ? 0 : tgn.length + 1);
+			if (tgn != null) {
+				for (String t : tgn) {
+					schrijfTegenstander(uit, t);
+				}
+			}
+			uit.zigzag(s.getPunten());
+			uit.varint((s.isAfwezigheidspunt() ? 1 : 0) | (s.isAanwezig() ? 2 : 0));
+			ByteBuffer sleutel = ByteBuffer.wrap(uit.buffer, 0, uit.lengte);
+			Integer i = gegevensIndex.get(sleutel);
+			if (i == null) {
+				i = gegevens.size();
+				gegevens.add(uit);
+				gegevensIndex.put(sleutel, i);
+			}
+			return i;
+		}
+
+		private void schrijfSpeler(Speler s) {
+			if (s == null) {
+				romp.varint(0);
+				return;
+			}
+			Integer i = spelerIndex.get(s);
+			if (i == null) {
+				i = spelerIndex.size();
+				spelerIndex.put(s, i);
+				spelerGegevens.varint(gegevens(s));
+			}
+			romp.varint(i + 1);
+		}
+
+		void schrijfGroepen(Groepen groepen) {
+			if ((groepen == null) || (groepen.getGroepen() == null)) {
+				romp.varint(0);
+				return;
+			}
+			romp.varint(groepen.getGroepen().size() + 1);
+			romp.zigzag(groepen.getPeriode());
+			romp.zigzag(groepen.getRonde());
+			for (Groep groep : groepen.getGroepen()) {
+				romp.zigzag(groep.getNiveau());
+				ArrayList<Speler> spelers = groep.getSpelers();
+				romp.varint(spelers == null ? 0 : spelers.size() + 1);
+				if (spelers != null) {
+					for (Speler s : spelers) {
+						schrijfSpeler(s);
+					}
+				}
+			}
+		}
+
+		private void schrijfWedstrijdenlijst(ArrayList<Wedstrijd> lijst) {
+			romp.varint(lijst == null ? 0 : lijst.size() + 1);
+			if (lijst != null) {
+				for (Wedstrijd w : lijst) {
+					if (w == null) {
+						romp.varint(0);
+						continue;
+					}
+					romp.varint(((w.getUitslag() << 1) ^ (w.getUitslag() >> 31)) + 1L);
+					romp.zigzag(w.getId());
+					schrijfSpeler(w.getWit());
+					schrijfSpeler(w.getZwart());
+				}
+			}
+		}
+
+		private void schrijfInts(int[] waarden) {
+			romp.varint(waarden == null ? 0 : waarden.length + 1);
+			if (waarden != null) {
+				for (int v : waarden) {
+					romp.zigzag(v);
+				}
+			}
+		}
+
+		void schrijfWedstrijden(Wedstrijden wedstrijden) {
+			if ((wedstrijden == null) || (wedstrijden.getGroepswedstrijden() == null)) {
+				romp.varint(0);
+				return;
+			}
+			romp.varint(wedstrijden.getGroepswedstrijden().size() + 1);
+			romp.zigzag(wedstrijden.getPeriode());
+			romp.zigzag(wedstrijden.getRonde());
+			for (Groepswedstrijden gw : wedstrijden.getGroepswedstrijden()) {
+				romp.zigzag(gw.getNiveau());
+				int[][] matrix = gw.getFuzzyMatrix();
+				romp.varint(matrix == null ? 0 : matrix.length + 1);
+				if (matrix != null) {
+					for (int[] rij : matrix) {
+						schrijfInts(rij);
+					}
+				}
+				schrijfInts(gw.getTrioids());
+				ArrayList<Serie> series = gw.getSeries();
+				romp.varint(series == null ? 0 : series.size() + 1);
+				if (series != null) {
+					for (Serie serie : series) {
+						romp.zigzag(serie.getNummer());
+						schrijfWedstrijdenlijst(serie.getWedstrijden());
+					}
+				}
+				schrijfWedstrijdenlijst(gw.getTriowedstrijden());
+			}
+		}
+	}
+
+	/**
+	 * Leest een bestand in het formaat dat Schrijver oplevert
+	 */
+	private static class Lezer {
+		private final ByteBuffer in;
+		private String[] strings;
+		private Speler[] spelers;
+
+		Lezer(ByteBuffer in) {
+			this.in = in;
+		}
+
+		private long varint() {
+			long v = 0;
+			for (int schuif = 0; schuif < 64; schuif += 7) {
+				byte b = in.get();
+				v |= (long) (b & 0x7F) << schuif;
+				if ((b & 0x80) == 0) {
+					return v;
+				}
+			}
+			throw new IllegalArgumentException("Ongeldige varint");
+		}
+
+		private int aantal() {
+			long v = varint();
+			if ((v < 0) || (v > in.limit())) {
+				throw new IllegalArgumentException("Ongeldig aantal " + v);
+			}
+			return (int) v;
+		}
+
+		private long zigzag() {
+			long v = varint();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		private int zigzagInt() {
+			return (int) zigzag();
+		}
+
+		private String string() {
+			int i = aantal();
+			return i == 0 ? null : strings[i - 1];
+		}
+
+		private String tegenstander() {
+			long v = varint();
+			int code = (int) (v & 7);
+			if (code == GEEN) {
+				return null;
+			}
+			String s = strings[(int) (v >>> 3)];
+			return code == VOLLEDIG ? s : s + RESULTATEN.charAt(code);
+		}
+
+		private double witvoorkeur() {
+			long v = varint();
+			if ((v & 1) != 0) {
+				return Double.longBitsToDouble(in.getLong());
+			}
+			long z = v >>> 1;
+			return ((z >>> 1) ^ -(z & 1)) / 2.0;
+		}
+
+		private Speler gegevens() {
+			Speler s = new Speler();
+			s.setSleutel(in.getLong());
+			s.setId(zigzagInt());
+			String naam = string();
+			if (naam != null) {
+				s.setNaam(naam);
+			}
+			s.setInitialen(string());
+			s.setWitvoorkeur(witvoorkeur());
+			s.setGroep(zigzagInt());
+			s.setRating(zigzagInt());
+			int n = aantal();
+			String[] tgn = null;
+			if (n > 0) {
+				tgn = new String[n - 1];
+				for (int i = 0; i < tgn.length; i++) {
+					tgn[i] = tegenstander();
+				}
+			}
+			s.setTegenstanders(tgn);
+			s.setPunten(zigzagInt());
+			int vlaggen = (int) varint();
+			s.setAfwezigheidspunt((vlaggen & 1) != 0);
+			s.setAanwezig((vlaggen & 2) != 0);
+			return s;
+		}
+
+		private Speler speler() {
+			int i = aantal();
+			return i == 0 ? null : spelers[i - 1];
+		}
+
+		BinaireStatus lees() throws IOException {
+			byte[] magic = new byte[MAGIC.length];
+			in.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("Geen statusbestand");
+			}
+			long versie = varint();
+			if (versie > VERSIE) {
+				throw new IOException("Statusbestand heeft onbekende versie " + versie);
+			}
+			BinaireStatus status = new BinaireStatus();
+			status.automatisch = varint() != 0;
+			status.journaalVolgnummer = varint();
+
+			strings = new String[aantal()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] b = new byte[aantal()];
+				in.get(b);
+				strings[i] = new String(b, StandardCharsets.UTF_8);
+			}
+			// Onthoud waar de gegevens staan; elk speler-object leest ze zelf
+			int[] positie = new int[aantal()];
+			for (int i = 0; i < positie.length; i++) {
+				positie[i] = in.position();
+				gegevens();
+			}
+			int lengte = aantal();
+			int einde = in.position() + lengte;
+			ArrayList<Integer> verwijzingen = new ArrayList<>();
+			while (in.position() < einde) {
+				verwijzingen.add(aantal());
+			}
+			spelers = new Speler[verwijzingen.size()];
+			for (int i = 0; i < spelers.length; i++) {
+				in.position(positie[verwijzingen.get(i)]);
+				spelers[i] = gegevens();
+			}
+			in.position(einde);
+
+			status.groepen = leesGroepen();
+			status.wedstrijdgroepen = leesGroepen();
+			status.wedstrijden = leesWedstrijden();
+			status.resultaatVerwerkt = leesGroepen();
+			return status;
+		}
+
+		private Groepen leesGroepen() {
+			int n = aantal();
+			if (n == 0) {
+				return null;
+			}
+			Groepen groepen = new Groepen();
+			groepen.setPeriode(zigzagInt());
+			groepen.setRonde(zigzagInt());
+			for (int g = 0; g < n - 1; g++) {
+				Groep groep = new Groep(zigzagInt());
+				int m = aantal();
+				if (m > 0) {
+					ArrayList<Speler> lijst = new ArrayList<>(m - 1);
+					for (int i = 0; i < m - 1; i++) {
+						lijst.add(speler());
+					}
+					groep.setSpelers(lijst);
+				}
+				groepen.addGroep(groep);
+			}
+			return groepen;
+		}
+
+		private ArrayList<Wedstrijd> leesWedstrijdenlijst() {
+			int n = aantal();
+			if (n == 0) {
+				return null;
+			}
+			ArrayList<Wedstrijd> lijst = new ArrayList<>(n - 1);
+			for (int i = 0; i < n - 1; i++) {
+				long code = varint();
+				if (code == 0) {
+					lijst.add(null);
+					continue;
+				}
+				int uitslag = (int) (((code - 1) >>> 1) ^ -((code - 1) & 1));
+				Wedstrijd w = new Wedstrijd(zigzagInt(), null, null, uitslag);
+				w.setWit(speler());
+				w.setZwart(speler());
+				lijst.add(w);
+			}
+			return lijst;
+		}
+
+		private int[] leesInts() {
+			int n = aantal();
+			if (n == 0) {
+				return null;
+			}
+			int[] waarden = new int[n - 1];
+			for (int i = 0; i < waarden.length; i++) {
+				waarden[i] = zigzagInt();
+			}
+			return waarden;
+		}
+
+		private Wedstrijden leesWedstrijden() {
+			int n = aantal();
+			if (n == 0) {
+				return null;
+			}
+			Wedstrijden wedstrijden = new Wedstrijden();
+			wedstrijden.setPeriode(zigzagInt());
+			wedstrijden.setRonde(zigzagInt());
+			for (int g = 0; g < n - 1; g++) {
+				Groepswedstrijden gw = new Groepswedstrijden();
+				gw.setNiveau(zigzagInt());
+				int rijen = aantal();
+				if (rijen > 0) {
+					int[][] matrix = new int[rijen - 1][];
+					for (int i = 0; i < matrix.length; i++) {
+						matrix[i] = leesInts();
+					}
+					gw.setFuzzyMatrix(matrix);
+				}
+				gw.setTrioids(leesInts());
+				int aantalSeries = aantal();
+				if (aantalSeries == 0) {
+					gw.setSeries(null);
+				}
+				for (int i = 0; i < aantalSeries - 1; i++) {
+					Serie serie = new Serie();
+					serie.setNummer(zigzagInt());
+					serie.setWedstrijden(leesWedstrijdenlijst());
+					gw.addSerie(serie);
+				}
+				gw.setTriowedstrijden(leesWedstrijdenlijst());
+				wedstrijden.addGroepswedstrijden(gw);
+			}
+			return wedstrijden;
+		}
+	}
+}
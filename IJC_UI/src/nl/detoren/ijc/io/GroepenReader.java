@@ -13,16 +13,16 @@
  */
 package nl.detoren.ijc.io;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.gson.Gson;
-
 import nl.detoren.ijc.data.groepen.Groep;
 import nl.detoren.ijc.data.groepen.Groepen;
 import nl.detoren.ijc.data.groepen.Speler;
@@ -36,6 +36,15 @@ public class GroepenReader {
 	private final static Logger logger = Logger.getLogger(GroepenReader.class.getName());
 	//logger.log(Level.INFO, "Logbericht");
 
+    private static final String[] GROEPSNAMEN = { "KEIZERGROEP", "KONINGSGROEP", "DAMEGROEP", "TORENGROEP",
+            "LOPERGROEP", "PAARDENGROEP", "PIONNENGROEP" };
+
+    private static final int[] GROEPSNIVEAUS = { Groep.KEIZERGROEP, Groep.KONINGSGROEP, Groep.DAMEGROEP,
+            Groep.TORENGROEP, Groep.LOPERGROEP, Groep.PAARDENGROEP, Groep.PIONNENGROEP };
+
+    /** Bestanden groter dan dit worden gemapt in plaats van ingelezen */
+    private static final long MAPPEN_VANAF = 1 << 20;
+
     public GroepenReader() {
 
     }
@@ -56,9 +65,11 @@ public class GroepenReader {
     public Groepen leesGroepenJSON(String bestandsnaam) {
 		try {
 			logger.log(Level.INFO, "Lezen groepen in JSON formaat uit : " + bestandsnaam);
-			Gson gson = new Gson();
-			BufferedReader br = new BufferedReader(new FileReader(bestandsnaam));
-			Groepen groepen = gson.fromJson(br, Groepen.class);
+			Groepen groepen = JsonLezer.leesGroepen(bestandsnaam);
+			if (groepen == null) {
+				logger.log(Level.INFO, "Geen groepen in " + bestandsnaam);
+				return null;
+			}
 			logger.log(Level.INFO, "Groepen gelezen met periode " +  groepen.getPeriode() + " en ronde " + groepen.getRonde());
 	        groepen.setRonde(groepen.getRonde()+1);
 	        if (groepen.getRonde() > 8) {
@@ -82,13 +93,40 @@ public class GroepenReader {
     public Groepen leesGroepen(String bestandsnaam) {
 		logger.log(Level.INFO, "Lezen groepen in TXT formaat uit : " + bestandsnaam);
 
-        // Lees het volledige bestand in naar een String array
-        String[] stringArr = leesBestand(bestandsnaam);
+        CharSequence tekst = leesTekst(bestandsnaam);
+        if (tekst == null) {
+            return null;
+        }
+        Regels regels = new Regels(tekst);
+
+        // Zoek in een keer de regel met de stand en de regels met de groepsnamen
+        int stand = -1;
+        int[] kop = new int[GROEPSNAMEN.length];
+        Arrays.fill(kop, -1);
+        for (int r = 0; r < regels.aantal; r++) {
+            int begin = regels.begin[r];
+            int eind = regels.eind[r];
+            if (eind - begin <= 40) {
+                continue;
+            }
+            if ((stand < 0) && bevat(tekst, begin, eind, "STAND NA")) {
+                stand = r;
+            }
+            for (int g = 0; g < GROEPSNAMEN.length; g++) {
+                if ((kop[g] < 0) && bevat(tekst, begin + 30, eind, GROEPSNAMEN[g])) {
+                    kop[g] = r;
+                }
+            }
+        }
+        if (stand < 0) {
+            stand = regels.aantal - 1;
+        }
 
         // Lees iedere groep in en voeg deze toe aan de verzameling groepen
         Groepen groepen = new Groepen();
-        int ronde = leesRonde(stringArr, "STAND NA");
-        int periode = leesPeriode(stringArr, "STAND NA");
+        // Ronde staat in kolom 8,9 en periode in kolom 19,20 van de regel met STAND NA
+        int ronde = getIntegerDeel(tekst, regels.begin[stand], regels.lengte(stand), 8, 2);
+        int periode = getIntegerDeel(tekst, regels.begin[stand], regels.lengte(stand), 19, 2);
         ronde += 1;
         if (ronde > 8) {
         	ronde = 1;
@@ -98,181 +136,302 @@ public class GroepenReader {
 		logger.log(Level.INFO, "Periode " + periode  + " en ronde " + ronde + " als speelronde");
         groepen.setRonde(ronde);
         groepen.setPeriode(periode);
-        groepen.addGroep(leesGroep(stringArr, "KEIZERGROEP", Groep.KEIZERGROEP));
-        groepen.addGroep(leesGroep(stringArr, "KONINGSGROEP", Groep.KONINGSGROEP));
-        groepen.addGroep(leesGroep(stringArr, "DAMEGROEP", Groep.DAMEGROEP));
-        groepen.addGroep(leesGroep(stringArr, "TORENGROEP", Groep.TORENGROEP));
-        groepen.addGroep(leesGroep(stringArr, "LOPERGROEP", Groep.LOPERGROEP));
-        groepen.addGroep(leesGroep(stringArr, "PAARDENGROEP", Groep.PAARDENGROEP));
-        groepen.addGroep(leesGroep(stringArr, "PIONNENGROEP", Groep.PIONNENGROEP));
+        for (int g = 0; g < GROEPSNAMEN.length; g++) {
+            groepen.addGroep(leesGroep(tekst, regels, kop[g], GROEPSNAMEN[g], GROEPSNIVEAUS[g]));
+        }
 		logger.log(Level.INFO, "Groepen gelezen, speel periode " +  groepen.getPeriode() + " en ronde " + groepen.getRonde());
         return groepen;
     }
 
     /**
-     * Lees een bestand in en retourneer dit als Strings.
+     * Lees een bestand in als tekst. Grote bestanden worden in het geheugen
+     * gemapt, kleinere in een keer ingelezen; onder Windows blijft een gemapt
+     * bestand vergrendeld tot de mapping is opgeruimd, en een nieuwe uitslag
+     * moet over uitslag.txt heen geschreven kunnen worden.
+     * Bij een tekenset met een byte per teken (zoals Cp1252) worden de tekens
+     * pas bij het opvragen vertaald; anders wordt het bestand in een keer
+     * gedecodeerd.
      * @param bestandsnaam
-     * @return array of strings met bestandsinhoud
+     * @return De inhoud, of null als het bestand niet gelezen kan worden
      */
-    private String[] leesBestand(String bestandsnaam) {
-        List<String> list = new ArrayList<>();
-        try {
-            BufferedReader in = new BufferedReader(new FileReader(bestandsnaam));
-            String str;
-            while ((str = in.readLine()) != null) {
-                list.add(str);
+    private CharSequence leesTekst(String bestandsnaam) {
+        try (FileChannel kanaal = FileChannel.open(Paths.get(bestandsnaam), StandardOpenOption.READ)) {
+            long grootte = kanaal.size();
+            ByteBuffer buffer;
+            if (grootte > MAPPEN_VANAF) {
+                buffer = kanaal.map(FileChannel.MapMode.READ_ONLY, 0, grootte);
+            } else {
+                buffer = ByteBuffer.allocate((int) grootte);
+                while (buffer.hasRemaining() && (kanaal.read(buffer) >= 0)) {
+                    // lees door tot de buffer vol is
+                }
+                buffer.flip();
+            }
+            Charset tekenset = Charset.defaultCharset();
+            if (tekenset.newEncoder().maxBytesPerChar() == 1.0f) {
+                return new EnkeleByteTekst(buffer, tekenset);
             }
-            in.close();
-            return list.toArray(new String[0]);
+            return tekenset.decode(buffer);
         } catch (IOException e) {
-            System.out.println("Exception :" + e);
+            logger.log(Level.SEVERE, "Lezen van " + bestandsnaam + " mislukt: " + e.getMessage());
         }
         return null;
     }
 
+    /**
+     * Tekst in een tekenset met een byte per teken, direct uit de buffer
+     */
+    private static class EnkeleByteTekst implements CharSequence {
+        private final ByteBuffer buffer;
+        private final char[] tabel;
+
+        EnkeleByteTekst(ByteBuffer buffer, Charset tekenset) {
+            this.buffer = buffer;
+            byte[] alle = new byte[256];
+            for (int i = 0; i < alle.length; i++) {
+                alle[i] = (byte) i;
+            }
+            this.tabel = new String(alle, tekenset).toCharArray();
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return tabel[buffer.get(index) & 0xFF];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            char[] tekens = new char[end - start];
+            for (int i = 0; i < tekens.length; i++) {
+                tekens[i] = charAt(start + i);
+            }
+            return new String(tekens);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+
+    /**
+     * Begin en eind van iedere regel, gesplitst zoals BufferedReader.readLine
+     * dat doet (\n, \r of \r\n)
+     */
+    private static class Regels {
+        private int[] begin = new int[256];
+        private int[] eind = new int[256];
+        private int aantal = 0;
+
+        Regels(CharSequence tekst) {
+            int lengte = tekst.length();
+            int start = 0;
+            int i = 0;
+            while (i < lengte) {
+                char c = tekst.charAt(i);
+                if ((c == '\n') || (c == '\r')) {
+                    voegToe(start, i);
+                    i++;
+                    if ((c == '\r') && (i < lengte) && (tekst.charAt(i) == '\n')) {
+                        i++;
+                    }
+                    start = i;
+                } else {
+                    i++;
+                }
+            }
+            if (start < lengte) {
+                voegToe(start, lengte);
+            }
+        }
+
+        private void voegToe(int b, int e) {
+            if (aantal == begin.length) {
+                begin = Arrays.copyOf(begin, aantal * 2);
+                eind = Arrays.copyOf(eind, aantal * 2);
+            }
+            begin[aantal] = b;
+            eind[aantal] = e;
+            aantal++;
+        }
+
+        int lengte(int r) {
+            return eind[r] - begin[r];
+        }
+    }
+
+    /**
+     * Controleer, zonder onderscheid tussen hoofd- en kleine letters, of de
+     * tekst tussen begin en eind het token bevat
+     */
+    private static boolean bevat(CharSequence tekst, int begin, int eind, String token) {
+        int laatste = eind - token.length();
+        for (int i = begin; i <= laatste; i++) {
+            int j = 0;
+            while ((j < token.length()) && (Character.toUpperCase(tekst.charAt(i + j)) == token.charAt(j))) {
+                j++;
+            }
+            if (j == token.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean bevatPunt(CharSequence tekst, int begin, int eind) {
+        for (int i = begin; i < eind; i++) {
+            if (tekst.charAt(i) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Lees alle spelers van een groep in
-     * Op de start regel meot de groepsnaam staan vanaf kolom 30 (of hoger)
-     * De eerste speler staat twee regels verder
-     * @param data String array met invoerbestand
-     * @param token Tekst om te zoeken waar de specifieke groep begint
+     * Op de start regel moet de groepsnaam staan vanaf kolom 30 (of hoger)
+     * De eerste speler staat drie regels verder
+     * @param tekst Inhoud van het invoerbestand
+     * @param regels Regels van het invoerbestand
+     * @param kop Regel met de groepsnaam, of -1 als die niet gevonden is
+     * @param token Naam van de groep
      * @param type Groepsniveau
      * @return Groep van het gespecificeerde niveau met al zijn spelers
      */
-    private Groep leesGroep(String[] data, String token, int type) {
-		logger.log(Level.INFO, "Zoeken naar tolen \'" +  token + "\' en type " + type);
+    private Groep leesGroep(CharSequence tekst, Regels regels, int kop, String token, int type) {
+		logger.log(Level.INFO, "Zoeken naar token \'" +  token + "\' en type " + type);
         Groep groep = new Groep(type);
-        // Zoek regel met token
-        boolean found = false;
-        int index = 0;
-        while (!found && index < data.length) {
-            found = (data[index].length() > 40) && (data[index].toUpperCase().substring(30).contains(token));
-            index++;
-        }
-        // Lees spelers (begint 3 regels na het vinden van de groepsnaam)
-        // Index is hier n groter dan de index waar he token is gevonden
-        index += 2;
-		logger.log(Level.INFO, "Spelers groep beginnen op regel " + index);
+        int r = (kop < 0 ? regels.aantal : kop) + 3;
+		logger.log(Level.INFO, "Spelers groep beginnen op regel " + r);
         // Zolang er een punt in de regel staat, is er nog een speler gevonden
-        while ((index < data.length) && data[index].contains(".")) {
-        	Speler s= genereerSpeler(data[index++], type);
-    		logger.log(Level.FINE, "Spelerregel : " + data[index-1]);
-    		logger.log(Level.FINE, "Speler      : " + s.toPrintableString());
+        while ((r < regels.aantal) && bevatPunt(tekst, regels.begin[r], regels.eind[r])) {
+            Speler s = genereerSpeler(tekst, regels.begin[r], regels.lengte(r), type);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Spelerregel : " + tekst.subSequence(regels.begin[r], regels.eind[r]));
+                logger.log(Level.FINE, "Speler      : " + s.toPrintableString());
+            }
             groep.addSpeler(s);
+            r++;
         }
         return groep;
     }
+
     /**
-     * Bepaal de gegevens van een speler op basis van de String
-     * met de spelerbeschrijving.
-     * @param desc De string waarin de speler gegevens zitten
-     * @return Speler conversie van string naar speler
+     * Bepaal de gegevens van een speler op basis van de regel
+     * met de spelerbeschrijving. De kolommen worden direct in de tekst
+     * gelezen; alleen naam, initialen en tegenstanders worden een String.
+     * @param tekst Inhoud van het invoerbestand
+     * @param begin Begin van de regel
+     * @param lengte Lengte van de regel
+     * @param groep Eigen groep van de speler
+     * @return Speler conversie van regel naar speler
      */
-    private Speler genereerSpeler(String desc, int groep) {
+    private Speler genereerSpeler(CharSequence tekst, int begin, int lengte, int groep) {
         Speler speler = new Speler();
-        System.out.println(desc);
         // ID
-        speler.setId(getIntegerDeel(desc, 0, 2));
+        speler.setId(getIntegerDeel(tekst, begin, lengte, 0, 2));
         // Naam
-        speler.setNaam(getStringDeel(desc, 4, 31));
+        speler.setNaam(getStringDeel(tekst, begin, lengte, 4, 31));
         // Initialen
-        speler.setInitialen(getStringDeel(desc, 36, 2));
+        speler.setInitialen(getStringDeel(tekst, begin, lengte, 36, 2));
         // afwezigheidspunt
-        speler.setAfwezigheidspunt(getStringDeel(desc, 39, 1).equals("#"));
+        speler.setAfwezigheidspunt((lengte >= 40) && (tekst.charAt(begin + 39) == '#'));
         // Wit voorkeur
-        String tmp = getStringDeel(desc, 41, 1);
-        switch (tmp) {
-            case "w":
-                speler.setWitvoorkeur(getIntegerDeel(desc, 42, 1));
+        char kleur = lengte >= 42 ? tekst.charAt(begin + 41) : ' ';
+        switch (kleur) {
+            case 'w':
+                speler.setWitvoorkeur(getIntegerDeel(tekst, begin, lengte, 42, 1));
                 break;
-            case "z":
-                speler.setWitvoorkeur(-1 * getIntegerDeel(desc, 42, 1));
+            case 'z':
+                speler.setWitvoorkeur(-1 * getIntegerDeel(tekst, begin, lengte, 42, 1));
                 break;
             default:
                 speler.setWitvoorkeur(0);
                 break;
         }
         // Rating
-        speler.setRating(getIntegerDeel(desc, 45, 4));
+        speler.setRating(getIntegerDeel(tekst, begin, lengte, 45, 4));
         // Tegenstanders
         String[] tgn = new String[4];
-        tgn[0] = getStringDeel(desc, 53, 3);
-        tgn[1] = getStringDeel(desc, 56, 3);
-        tgn[2] = getStringDeel(desc, 59, 3);
-        tgn[3] = getStringDeel(desc, 62, 3);
+        tgn[0] = getStringDeel(tekst, begin, lengte, 53, 3);
+        tgn[1] = getStringDeel(tekst, begin, lengte, 56, 3);
+        tgn[2] = getStringDeel(tekst, begin, lengte, 59, 3);
+        tgn[3] = getStringDeel(tekst, begin, lengte, 62, 3);
         speler.setTegenstanders(tgn);
-        // Punten. Extra spatie nodig om gegarandeerd te kunnen lezen
-        speler.setPunten(getIntegerDeel(desc + " ", 65, 5));
+        // Punten. Een extra spatie achter de regel, zodat de punten ook
+        // gelezen kunnen worden als de regel direct na het getal eindigt
+        speler.setPunten(getIntegerDeel(tekst, begin, lengte + 1, 65, 5));
         // Eigen groep
         speler.setGroep(groep);
+        speler.bepaalSleutel();
         return speler;
     }
-    
-    /**
-     * Lees ronde uit bestand. Deze staat op positie 8 of 9 in de regel met 
-     * de tekst STAND NA (case incensitive)
-     * @param data
-     * @param token
-     * @return
-     */
-    private int leesRonde(String[] data, String token) {
-        // Zoek regel met token
-        boolean found = false;
-        int index = 0;
-        while (!found && index < data.length) {
-            found = (data[index].length() > 40) && (data[index].toUpperCase().contains(token));
-            index++;
-        }
-        index -= 1; 										// index is na doorlopen loop 1 te hoog
-        return getIntegerDeel(data[index], 8, 2);			// Ronde staat in kolom 8,9 van deze regel
-    }
-    
-    /**
-     * Lees periode uit bestand. Deze staat op positie 18 of 19 in de regel met 
-     * de tekst STAND NA (case incensitive)
-     * @param data
-     * @param token
-     * @return
-     */
-    private int leesPeriode(String[] data, String token) {
-        // Zoek regel met token
-        boolean found = false;
-        int index = 0;
-        while (!found && index < data.length) {
-            found = (data[index].length() > 40) && (data[index].toUpperCase().contains(token));
-            index++;
-        }
-        index -= 1;
-        return getIntegerDeel(data[index], 19, 2);		// Ronde staat in kolom 19,19 van deze regel
-    }
 
     /**
      * Retourneer een deelstring op basis van offset en lengte.
      * Retourneert een lege string indien de deelstring niet bepaald kan worden
-     * @param input invoerstring
+     * @param tekst invoer
+     * @param begin begin van de regel
+     * @param lengte lengte van de regel
      * @param offset offset waar substring moet worden bepaald
      * @param length aantal in te lezen karakters
      * @return de deelstring
      */
-    private String getStringDeel(String input, int offset, int length) {
-        if ((input != null) && ((offset + length) <= input.length())) {
-            return input.substring(offset, offset + length);
+    private String getStringDeel(CharSequence tekst, int begin, int lengte, int offset, int length) {
+        if ((offset + length) <= lengte) {
+            return tekst.subSequence(begin + offset, begin + offset + length).toString();
         }
         return "";
     }
 
     /**
      * Retourneer het getal (integer) uit de tekst op basis van offset en lengte.
-     * Retourneert '0' indien het getal niet bepaald kan worden
-     * @param input invoerstring
-     * @param offset offset waar substring moet worden bepaald
+     * Retourneert '0' indien het getal niet bepaald kan worden. Tekens voorbij
+     * het eind van de tekst tellen als spatie.
+     * @param tekst invoer
+     * @param begin begin van de regel
+     * @param lengte lengte van de regel
+     * @param offset offset waar het getal moet worden bepaald
      * @param length aantal in te lezen karakters
-     * @return de deelstring
+     * @return het getal
      */
-    private int getIntegerDeel(String input, int offset, int length) {
-        String str = getStringDeel(input, offset, length);
-        str = str.trim();
-        str = (str.startsWith("0")) ? str.substring(1) : str;
-        return !str.equals("") ? Integer.decode(str) : 0;
+    private int getIntegerDeel(CharSequence tekst, int begin, int lengte, int offset, int length) {
+        if ((offset + length) > lengte) {
+            return 0;
+        }
+        int eindeTekst = Math.min(begin + offset + length, tekst.length());
+        int van = begin + offset;
+        int tot = eindeTekst;
+        while ((van < tot) && (tekst.charAt(van) <= ' ')) {
+            van++;
+        }
+        while ((tot > van) && (tekst.charAt(tot - 1) <= ' ')) {
+            tot--;
+        }
+        // Een voorloopnul wordt overgeslagen, zoals altijd al
+        if ((van < tot) && (tekst.charAt(van) == '0')) {
+            van++;
+        }
+        if (van == tot) {
+            return 0;
+        }
+        if (tekst.charAt(van) == '0') {
+            // Meer voorloopnullen; laat Integer.decode de uitkomst bepalen
+            return Integer.decode(tekst.subSequence(van, tot).toString());
+        }
+        int waarde = 0;
+        for (int i = van; i < tot; i++) {
+            char c = tekst.charAt(i);
+            if ((c < '0') || (c > '9') || (tot - van > 9)) {
+                return Integer.decode(tekst.subSequence(van, tot).toString());
+            }
+            waarde = waarde * 10 + (c - '0');
+        }
+        return waarde;
     }
 }
@@ -0,0 +1,321 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import nl.detoren.ijc.data.groepen.Speler;
+
+/**
+ * Journaal van wijzigingen in de status sinds de laatste snapshot. Elke
+ * wijziging wordt als n regel JSON achteraan het bestand toegevoegd, zodat
+ * het vastleggen niet afhangt van de grootte van de status.
+ *
+ * Elke gebeurtenis krijgt een oplopend volgnummer. De snapshot onthoudt het
+ * volgnummer van de laatste verwerkte gebeurtenis; bij het herstellen worden
+ * alleen de gebeurtenissen daarna opnieuw toegepast. Een onvolledige laatste
+ * regel, bijvoorbeeld na een crash tijdens het schrijven, wordt genegeerd en
+ * bij het lezen uit het bestand verwijderd.
+ *
+ * @author Leo van der Meulen
+ */
+public class Journaal {
+
+	private final static Logger logger = Logger.getLogger(Journaal.class.getName());
+
+	private static final Gson gson = new Gson();
+
+	public enum Soort {
+		AANWEZIGHEID, SPELER_TOEGEVOEGD, SPELER_VERWIJDERD, UITSLAG, AUTOMATISCH
+	}
+
+	/**
+	 * En wijziging in de status. Welke velden gevuld zijn, hangt af van de
+	 * soort.
+	 */
+	public static class Gebeurtenis {
+		private long volgnummer;
+		private Soort soort;
+		private int groep;
+		private int locatie;
+		private long sleutel;
+		private long tegenstander;
+		private boolean waarde;
+		private int uitslag;
+		private Speler speler;
+
+		private Gebeurtenis(Soort soort) {
+			this.soort = soort;
+		}
+
+		/**
+		 * Speler aan- of afgemeld
+		 */
+		public static Gebeurtenis aanwezigheid(int groep, int locatie, Speler s, boolean waarde) {
+			Gebeurtenis g = new Gebeurtenis(Soort.AANWEZIGHEID);
+			g.groep = groep;
+			g.locatie = locatie;
+			g.sleutel = s.getSleutel();
+			g.waarde = waarde;
+			return g;
+		}
+
+		/**
+		 * Speler toegevoegd aan een groep op de gegeven locatie
+		 */
+		public static Gebeurtenis spelerToegevoegd(int groep, int locatie, Speler s) {
+			Gebeurtenis g = new Gebeurtenis(Soort.SPELER_TOEGEVOEGD);
+			g.groep = groep;
+			g.locatie = locatie;
+			g.sleutel = s.getSleutel();
+			g.speler = s;
+			return g;
+		}
+
+		/**
+		 * Speler verwijderd uit een groep
+		 */
+		public static Gebeurtenis spelerVerwijderd(int groep, int locatie, Speler s) {
+			Gebeurtenis g = new Gebeurtenis(Soort.SPELER_VERWIJDERD);
+			g.groep = groep;
+			g.locatie = locatie;
+			g.sleutel = s.getSleutel();
+			return g;
+		}
+
+		/**
+		 * Uitslag ingevoerd, in Toto stijl
+		 */
+		public static Gebeurtenis uitslag(int groep, Speler wit, Speler zwart, int uitslag) {
+			Gebeurtenis g = new Gebeurtenis(Soort.UITSLAG);
+			g.groep = groep;
+			g.sleutel = wit.getSleutel();
+			g.tegenstander = zwart.getSleutel();
+			g.uitslag = uitslag;
+			return g;
+		}
+
+		/**
+		 * Automatisch indelen aan- of uitgezet
+		 */
+		public static Gebeurtenis automatisch(boolean waarde) {
+			Gebeurtenis g = new Gebeurtenis(Soort.AUTOMATISCH);
+			g.waarde = waarde;
+			return g;
+		}
+
+		public long getVolgnummer() {
+			return volgnummer;
+		}
+
+		public Soort getSoort() {
+			return soort;
+		}
+
+		public int getGroep() {
+			return groep;
+		}
+
+		public int getLocatie() {
+			return locatie;
+		}
+
+		public long getSleutel() {
+			return sleutel;
+		}
+
+		public long getTegenstander() {
+			return tegenstander;
+		}
+
+		public boolean getWaarde() {
+			return waarde;
+		}
+
+		public int getUitslag() {
+			return uitslag;
+		}
+
+		public Speler getSpeler() {
+			return speler;
+		}
+	}
+
+	private final Path bestand;
+
+	/** Volgnummer van de laatst geschreven of ingelezen gebeurtenis */
+	private long volgnummer = 0;
+
+	/** Aantal gebeurtenissen in het journaal sinds de laatste snapshot */
+	private int aantal = 0;
+
+	public Journaal(String bestandsnaam) {
+		this.bestand = Paths.get(bestandsnaam);
+	}
+
+	/**
+	 * Voeg een gebeurtenis toe aan het journaal. Een fout bij het schrijven
+	 * wordt gelogd; de wijziging zelf is dan alleen in de volgende snapshot
+	 * terug te vinden.
+	 *
+	 * @param g
+	 *            De gebeurtenis
+	 */
+	public synchronized void schrijf(Gebeurtenis g) {
+		g.volgnummer = ++volgnummer;
+		String regel = gson.toJson(g) + "\n";
+		try {
+			Files.write(bestand, regel.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			++aantal;
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Schrijven naar journaal " + bestand + " mislukt: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Lees de gebeurtenissen die na de snapshot zijn vastgelegd
+	 *
+	 * @param vanaf
+	 *            Volgnummer van de laatste gebeurtenis in de snapshot
+	 * @return De gebeurtenissen met een hoger volgnummer, in volgorde
+	 */
+	public synchronized List<Gebeurtenis> lees(long vanaf) {
+		List<Gebeurtenis> gebeurtenissen = new ArrayList<>();
+		volgnummer = Math.max(volgnummer, vanaf);
+		boolean laatsteRegelGeldig = true;
+		try (BufferedReader br = Files.newBufferedReader(bestand, StandardCharsets.UTF_8)) {
+			String regel;
+			int regelnummer = 0;
+			while ((regel = br.readLine()) != null) {
+				++regelnummer;
+				laatsteRegelGeldig = false;
+				if (regel.trim().isEmpty()) {
+					continue;
+				}
+				Gebeurtenis g;
+				try {
+					g = gson.fromJson(regel, Gebeurtenis.class);
+				} catch (JsonParseException e) {
+					logger.log(Level.WARNING, "Regel " + regelnummer + " van journaal " + bestand
+							+ " is onleesbaar en wordt overgeslagen");
+					continue;
+				}
+				if ((g == null) || (g.soort == null)) {
+					continue;
+				}
+				laatsteRegelGeldig = true;
+				volgnummer = Math.max(volgnummer, g.volgnummer);
+				if (g.volgnummer > vanaf) {
+					gebeurtenissen.add(g);
+				}
+			}
+			herstelLaatsteRegel(laatsteRegelGeldig);
+		} catch (NoSuchFileException e) {
+			// Geen wijzigingen sinds de snapshot
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Lezen van journaal " + bestand + " mislukt: " + e.getMessage());
+		}
+		aantal = gebeurtenissen.size();
+		logger.log(Level.INFO, gebeurtenissen.size() + " gebeurtenissen in journaal na volgnummer " + vanaf);
+		return gebeurtenissen;
+	}
+
+	/**
+	 * Zorg dat het journaal op een regelovergang eindigt, anders komt de
+	 * volgende gebeurtenis achter de laatste regel te staan en is ook die niet
+	 * meer te lezen. Een onvolledige laatste regel wordt afgekapt; een geldige
+	 * regel zonder regelovergang wordt afgesloten.
+	 *
+	 * @param laatsteRegelGeldig
+	 *            true als de laatste regel een leesbare gebeurtenis bevat
+	 */
+	private void herstelLaatsteRegel(boolean laatsteRegelGeldig) throws IOException {
+		try (FileChannel kanaal = FileChannel.open(bestand, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long lengte = kanaal.size();
+			ByteBuffer teken = ByteBuffer.allocate(1);
+			long einde = lengte;
+			while (einde > 0) {
+				teken.clear();
+				kanaal.read(teken, einde - 1);
+				if (teken.get(0) == '\n') {
+					break;
+				}
+				--einde;
+			}
+			if (einde == lengte) {
+				return;
+			}
+			if (laatsteRegelGeldig) {
+				kanaal.write(ByteBuffer.wrap(new byte[] { '\n' }), lengte);
+			} else {
+				logger.log(Level.WARNING, "Onvolledige laatste regel van journaal " + bestand + " verwijderd");
+				kanaal.truncate(einde);
+			}
+			kanaal.force(true);
+		}
+	}
+
+	/**
+	 * Leeg het journaal nadat een snapshot met alle gebeurtenissen t/m het
+	 * gegeven volgnummer is weggeschreven. Gebeurtenissen die intussen zijn
+	 * toegevoegd blijven bewaard.
+	 *
+	 * @param totEnMet
+	 *            Volgnummer dat in de snapshot is opgenomen
+	 */
+	public synchronized void wis(long totEnMet) {
+		if (totEnMet != volgnummer) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(bestand);
+			aantal = 0;
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Legen van journaal " + bestand + " mislukt: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return Volgnummer van de laatst vastgelegde gebeurtenis
+	 */
+	public synchronized long getVolgnummer() {
+		return volgnummer;
+	}
+
+	/**
+	 * @return Aantal gebeurtenissen sinds de laatste snapshot
+	 */
+	public synchronized int getAantal() {
+		return aantal;
+	}
+}
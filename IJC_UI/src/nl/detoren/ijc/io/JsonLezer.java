@@ -0,0 +1,433 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
+import nl.detoren.ijc.data.wedstrijden.Serie;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+
+/**
+ * Leest groepen en status in JSON formaat, zoals geschreven door
+ * BestandSchrijver. In plaats van het hele bestand via Gson aan objecten te
+ * binden, worden de tokens een voor een gelezen en worden Groepen, Speler en
+ * Wedstrijd objecten direct opgebouwd.
+ *
+ * Namen, initialen en tegenstanders komen in een statusbestand vele keren
+ * voor (groepen, wedstrijdgroepen, wedstrijden, resultaatVerwerkt). Gelijke
+ * strings worden tijdens het inlezen gedeeld, zodat elke waarde maar 1 keer
+ * in het geheugen staat.
+ *
+ * Onbekende velden en velden met waarde null worden overgeslagen; die
+ * houden de waarde die de constructor ze geeft. Er wordt dezelfde tekenset
+ * gebruikt als door BestandSchrijver bij het schrijven.
+ *
+ * @author Leo van der Meulen
+ */
+public class JsonLezer {
+
+	private static final int BUFFERGROOTTE = 64 * 1024;
+
+	/** Gedeelde strings, alleen geldig tijdens 1 keer inlezen */
+	private final HashMap<String, String> strings = new HashMap<>();
+
+	private JsonLezer() {
+	}
+
+	/**
+	 * Lees groepen uit een JSON bestand
+	 *
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @return De groepen, of null als het bestand leeg is
+	 * @throws IOException
+	 *             als het bestand niet te lezen is of geen geldige JSON bevat
+	 */
+	public static Groepen leesGroepen(String bestandsnaam) throws IOException {
+		try (JsonReader in = open(bestandsnaam)) {
+			if (in.peek() == JsonToken.END_DOCUMENT) {
+				return null;
+			}
+			return new JsonLezer().leesGroepen(in);
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Ongeldige JSON in " + bestandsnaam + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Lees de status uit een JSON bestand. De status wordt in een
+	 * BinaireStatus teruggegeven, zodat hij op dezelfde manier wordt
+	 * overgenomen als een binair statusbestand.
+	 *
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @return De status, of null als het bestand leeg is
+	 * @throws IOException
+	 *             als het bestand niet te lezen is of geen geldige JSON bevat
+	 */
+	public static BinaireStatus leesStatus(String bestandsnaam) throws IOException {
+		try (JsonReader in = open(bestandsnaam)) {
+			if (in.peek() == JsonToken.END_DOCUMENT) {
+				return null;
+			}
+			return new JsonLezer().leesStatus(in);
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Ongeldige JSON in " + bestandsnaam + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static JsonReader open(String bestandsnaam) throws IOException {
+		JsonReader in = new JsonReader(new BufferedReader(
+				new InputStreamReader(Files.newInputStream(Paths.get(bestandsnaam)), Charset.defaultCharset()),
+				BUFFERGROOTTE));
+		in.setLenient(true);
+		return in;
+	}
+
+	private BinaireStatus leesStatus(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		BinaireStatus status = new BinaireStatus();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("automatisch")) {
+				status.setAutomatisch(in.nextBoolean());
+			} else if (naam.equals("groepen")) {
+				status.setGroepen(leesGroepen(in));
+			} else if (naam.equals("wedstrijdgroepen")) {
+				status.setWedstrijdgroepen(leesGroepen(in));
+			} else if (naam.equals("wedstrijden")) {
+				status.setWedstrijden(leesWedstrijden(in));
+			} else if (naam.equals("resultaatVerwerkt")) {
+				status.setResultaatVerwerkt(leesGroepen(in));
+			} else if (naam.equals("journaalVolgnummer")) {
+				status.setJournaalVolgnummer(in.nextLong());
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return status;
+	}
+
+	private Groepen leesGroepen(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Groepen groepen = new Groepen();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("periode")) {
+				groepen.setPeriode(in.nextInt());
+			} else if (naam.equals("ronde")) {
+				groepen.setRonde(in.nextInt());
+			} else if (naam.equals("groepen")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					groepen.addGroep(leesGroep(in));
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return groepen;
+	}
+
+	private Groep leesGroep(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Groep groep = new Groep();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("niveau")) {
+				groep.setNiveau(in.nextInt());
+			} else if (naam.equals("spelers")) {
+				ArrayList<Speler> spelers = new ArrayList<>();
+				in.beginArray();
+				while (in.hasNext()) {
+					spelers.add(leesSpeler(in));
+				}
+				in.endArray();
+				groep.setSpelers(spelers);
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return groep;
+	}
+
+	private Speler leesSpeler(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Speler speler = new Speler();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("id")) {
+				speler.setId(in.nextInt());
+			} else if (naam.equals("sleutel")) {
+				speler.setSleutel(in.nextLong());
+			} else if (naam.equals("naam")) {
+				speler.setNaam(deel(in.nextString()));
+			} else if (naam.equals("initialen")) {
+				speler.setInitialen(deel(in.nextString()));
+			} else if (naam.equals("witvoorkeur")) {
+				speler.setWitvoorkeur(in.nextDouble());
+			} else if (naam.equals("groep")) {
+				speler.setGroep(in.nextInt());
+			} else if (naam.equals("rating")) {
+				speler.setRating(in.nextInt());
+			} else if (naam.equals("tegenstanders")) {
+				speler.setTegenstanders(leesTegenstanders(in));
+			} else if (naam.equals("punten")) {
+				speler.setPunten(in.nextInt());
+			} else if (naam.equals("afwezigheidspunt")) {
+				speler.setAfwezigheidspunt(in.nextBoolean());
+			} else if (naam.equals("aanwezig")) {
+				speler.setAanwezig(in.nextBoolean());
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		// Een oudere status.json heeft nog geen sleutels
+		speler.bepaalSleutel();
+		return speler;
+	}
+
+	private String[] leesTegenstanders(JsonReader in) throws IOException {
+		// Vrijwel altijd 4 tegenstanders, zie Speler
+		String[] tegenstanders = new String[4];
+		int aantal = 0;
+		in.beginArray();
+		while (in.hasNext()) {
+			if (aantal == tegenstanders.length) {
+				tegenstanders = Arrays.copyOf(tegenstanders, aantal * 2);
+			}
+			tegenstanders[aantal++] = isNull(in) ? null : deel(in.nextString());
+		}
+		in.endArray();
+		return aantal == tegenstanders.length ? tegenstanders : Arrays.copyOf(tegenstanders, aantal);
+	}
+
+	private Wedstrijden leesWedstrijden(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Wedstrijden wedstrijden = new Wedstrijden();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("periode")) {
+				wedstrijden.setPeriode(in.nextInt());
+			} else if (naam.equals("ronde")) {
+				wedstrijden.setRonde(in.nextInt());
+			} else if (naam.equals("groepswedstrijden")) {
+				ArrayList<Groepswedstrijden> lijst = new ArrayList<>();
+				in.beginArray();
+				while (in.hasNext()) {
+					lijst.add(leesGroepswedstrijden(in));
+				}
+				in.endArray();
+				wedstrijden.setGroepswedstrijden(lijst);
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return wedstrijden;
+	}
+
+	private Groepswedstrijden leesGroepswedstrijden(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Groepswedstrijden gw = new Groepswedstrijden();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("niveau")) {
+				gw.setNiveau(in.nextInt());
+			} else if (naam.equals("fuzzymatrix")) {
+				ArrayList<int[]> rijen = new ArrayList<>();
+				in.beginArray();
+				while (in.hasNext()) {
+					rijen.add(isNull(in) ? null : leesIntArray(in));
+				}
+				in.endArray();
+				gw.setFuzzyMatrix(rijen.toArray(new int[rijen.size()][]));
+			} else if (naam.equals("trioids")) {
+				gw.setTrioids(leesIntArray(in));
+			} else if (naam.equals("series")) {
+				ArrayList<Serie> series = new ArrayList<>();
+				in.beginArray();
+				while (in.hasNext()) {
+					series.add(leesSerie(in));
+				}
+				in.endArray();
+				gw.setSeries(series);
+			} else if (naam.equals("triowedstrijden")) {
+				gw.setTriowedstrijden(leesWedstrijdLijst(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return gw;
+	}
+
+	private Serie leesSerie(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Serie serie = new Serie();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("nummer")) {
+				serie.setNummer(in.nextInt());
+			} else if (naam.equals("wedstrijden")) {
+				serie.setWedstrijden(leesWedstrijdLijst(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return serie;
+	}
+
+	private ArrayList<Wedstrijd> leesWedstrijdLijst(JsonReader in) throws IOException {
+		ArrayList<Wedstrijd> lijst = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			lijst.add(leesWedstrijd(in));
+		}
+		in.endArray();
+		return lijst;
+	}
+
+	private Wedstrijd leesWedstrijd(JsonReader in) throws IOException {
+		if (isNull(in)) {
+			return null;
+		}
+		Wedstrijd wedstrijd = new Wedstrijd();
+		in.beginObject();
+		while (in.hasNext()) {
+			String naam = in.nextName();
+			if (isNull(in)) {
+				continue;
+			}
+			if (naam.equals("id")) {
+				wedstrijd.setId(in.nextInt());
+			} else if (naam.equals("wit")) {
+				wedstrijd.setWit(leesSpeler(in));
+			} else if (naam.equals("zwart")) {
+				wedstrijd.setZwart(leesSpeler(in));
+			} else if (naam.equals("uitslag")) {
+				wedstrijd.setUitslag(in.nextInt());
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return wedstrijd;
+	}
+
+	private int[] leesIntArray(JsonReader in) throws IOException {
+		int[] waarden = new int[8];
+		int aantal = 0;
+		in.beginArray();
+		while (in.hasNext()) {
+			if (aantal == waarden.length) {
+				waarden = Arrays.copyOf(waarden, aantal * 2);
+			}
+			waarden[aantal++] = in.nextInt();
+		}
+		in.endArray();
+		return Arrays.copyOf(waarden, aantal);
+	}
+
+	/**
+	 * Sla een null waarde over
+	 *
+	 * @return true als de waarde null was
+	 */
+	private static boolean isNull(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Geef de gedeelde instantie van een string
+	 */
+	private String deel(String s) {
+		String bestaand = strings.get(s);
+		if (bestaand != null) {
+			return bestaand;
+		}
+		strings.put(s, s);
+		return s;
+	}
+}
@@ -8,36 +8,53 @@
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
  * GNU General Public License for more details.
  * See: http://www.gnu.org/licenses/gpl-2.0.html
- *  
+ *
  * Problemen in deze code:
- * - TODO Bij verwijderen tweede serie verdwijnt onderste streep speellijst
+ * - ...
  * - ...
  */
 package nl.detoren.ijc.io;
 
 import java.awt.Desktop;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.AreaReference;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import nl.detoren.ijc.data.groepen.Groep;
 import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
 import nl.detoren.ijc.data.wedstrijden.Serie;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+import nl.detoren.ijc.ui.util.Metingen;
 
 /**
  * Sla het wedstrijdschema op in Excel
- * 
+ *
+ * Het sjabloon Empty.xlsx wordt 1 keer per proces ingelezen. Daarbij worden
+ * de rijen van de groepsbladen onthouden en wordt een kopie van het sjabloon
+ * zonder die rijen gemaakt. Bij een export wordt eerst per blad bepaald welke
+ * sjabloonrijen in welke volgorde nodig zijn; daarna worden de rijen via SXSSF
+ * achter elkaar weggeschreven. Er worden dus geen rijen verwijderd of
+ * verschoven en het geheugengebruik hangt niet af van het aantal rijen.
+ *
  * @author Leo van der Meulen
  *
  */
@@ -45,145 +62,397 @@ public class OutputExcel {
 
 	private final static Logger logger = Logger.getLogger(OutputExcel.class.getName());
 
+	private static final String SJABLOON = "Empty.xlsx";
+
+	/** Aantal groepsbladen; het blad van een groep heeft het niveau als index */
+	private static final int AANTAL_GROEPEN = 7;
+
+	/** Eerste rij van de wedstrijden per serie */
+	private static final int[] rowOffset = { 6, 28 };
+
+	/** Eerste rij van de triowedstrijden */
+	private static final int rowOffsetTrio = 50;
+
+	/** Aantal rijen dat SXSSF in het geheugen houdt */
+	private static final int VENSTER = 100;
+
+	private static Sjabloon sjabloon;
+
 	/**
 	 * Create the Excel version of the sheet
 	 * Original Empty file is stored in Empty.xlsx
 	 * Create version with round matches is stored in Indeling.xlsx
-	 * @param round The round to store in the Excel file
-	 * @param playerInfo Full info of the players
+	 * @param wedstrijden The round to store in the Excel file
 	 */
 	public void updateExcel(Wedstrijden wedstrijden) {
 		try {
-			logger.log(Level.INFO, "Wedstrijden wegschrijven naar Excel");
-			int[] rowOffset = { 6, 28 }; // starting row for each serie
-			int rowOffsetTrio = 50; // starting row for trio matches
-			
-			int periode = wedstrijden.getPeriode();
-			int ronde = wedstrijden.getRonde();
-			String rpString = "Periode " + periode + ", Ronde " + ronde;
-			String datum = new SimpleDateFormat("dd-MM-yyyy HH:mm").format(Calendar.getInstance().getTime());
-
-			// Open the empty schedule file, matches are stored in the
-			// second sheet (id = 1)
-			FileInputStream file = new FileInputStream("Empty.xlsx");
-			XSSFWorkbook workbook = new XSSFWorkbook(file);
-
-			ArrayList<Groepswedstrijden> gws = wedstrijden.getGroepswedstrijden();
-			for (Groepswedstrijden gw : gws) {
-				int groepID = gw.getNiveau();
-				int nrSeries = gw.getSeries().size();
-				// Open sheet voor deze groep
-				XSSFSheet sheet = workbook.getSheetAt(groepID);
-				updateCell(sheet, 2, 8, rpString);
-				updateCell(sheet, 2, 4, datum);
-				// Export Series
-				for (int s = 0; s < nrSeries; ++s) { // For each serie
-					Serie serie = gw.getSerie(s);
-					int i = 0;
-					for (Wedstrijd w : serie.getWedstrijden()) {
-						exportWedstrijd(sheet, w, rowOffset[s] + 2*i);
-						i++;
-					}
-				}
-				// Export trio
-				ArrayList<Wedstrijd> trio = gw.getTriowedstrijden();
-				int i = 0;
-				for (Wedstrijd w : trio) {
-					exportWedstrijd(sheet, w, rowOffsetTrio + 2*i);
-					i++;
-				}
-				// Cleanup export sheets
-				// Clean up trios
-				if (trio.isEmpty()) {
-					for (int rowid = 1; rowid < 7; rowid++) {
-						XSSFRow row = sheet.getRow(rowOffsetTrio-2);
-						sheet.removeRow(row);
-						int lastRowNum = sheet.getLastRowNum();
-						sheet.shiftRows(rowOffsetTrio-1, lastRowNum, -1, true, false);
+			String outputFile = "Indeling " + wedstrijden.getPeriode() + "-" + wedstrijden.getRonde() + ".xlsx";
+			schrijfExcel(wedstrijden, outputFile);
+			// And open it in the system editor
+			Desktop.getDesktop().open(new File(outputFile));
+		} catch (Exception e) {
+			System.out.println("Error writing output: " + e.toString());
+		}
+	}
+
+	/**
+	 * Schrijf het wedstrijdschema van een ronde naar een Excel bestand, zonder
+	 * het te openen. Geschikt om meerdere rondes achter elkaar te exporteren;
+	 * het sjabloon wordt maar 1 keer ingelezen.
+	 * @param wedstrijden De wedstrijden van de ronde
+	 * @param bestandsnaam Naam van het Excel bestand
+	 * @throws IOException
+	 */
+	public void schrijfExcel(Wedstrijden wedstrijden, String bestandsnaam) throws IOException {
+		logger.log(Level.INFO, "Wedstrijden wegschrijven naar Excel");
+		long start = System.nanoTime();
+		Sjabloon sj = getSjabloon();
+		String rpString = "Periode " + wedstrijden.getPeriode() + ", Ronde " + wedstrijden.getRonde();
+		String datum = new SimpleDateFormat("dd-MM-yyyy HH:mm").format(Calendar.getInstance().getTime());
+
+		Groepswedstrijden[] perBlad = new Groepswedstrijden[AANTAL_GROEPEN];
+		for (Groepswedstrijden gw : wedstrijden.getGroepswedstrijden()) {
+			if (gw.getSeries().size() > rowOffset.length) {
+				// Het sjabloon heeft per blad ruimte voor rowOffset.length series
+				String fout = Groep.geefNaam(gw.getNiveau()) + " heeft " + gw.getSeries().size()
+						+ " series, het sjabloon heeft ruimte voor " + rowOffset.length;
+				logger.log(Level.SEVERE, fout);
+				throw new IOException(fout);
+			}
+			if (gw.getNiveau() >= 0 && gw.getNiveau() < AANTAL_GROEPEN) {
+				perBlad[gw.getNiveau()] = gw;
+			}
+		}
+
+		SXSSFWorkbook workbook = new SXSSFWorkbook(new XSSFWorkbook(new ByteArrayInputStream(sj.leeg)), VENSTER);
+		try {
+			for (int b = 0; b < sj.bladen.length; b++) {
+				Blad blad = sj.bladen[b];
+				Groepswedstrijden gw = perBlad[b];
+				int[] indeling = gw != null ? bepaalIndeling(blad, gw) : blad.alleRijen();
+				Wedstrijd[] partijen = gw != null ? plaatsWedstrijden(blad, gw, indeling) : new Wedstrijd[indeling.length];
+				Sheet sheet = workbook.getSheetAt(b);
+				for (int i = 0; i < indeling.length; i++) {
+					Row row = schrijfRij(workbook, sheet, blad.rijen[indeling[i]], blad.eerste + i);
+					if (gw != null && indeling[i] == blad.eerste) {
+						updateCell(row, 8, rpString);
+						updateCell(row, 4, datum);
 					}
-				}
-				// Clean up series
-				int aantalWedstrijden = gw.getSerie(0).getWedstrijden().size();
-				int nrRowsToRemove = 10 - aantalWedstrijden;
-				for (int s = nrSeries-1; s >= 0; --s) { // For each serie
-					for (int r = 0; r < nrRowsToRemove; r++) {
-						int row2delete = 10 - r - 1;
-						int lastRowNum = sheet.getLastRowNum();
-						int rowid = (rowOffset[s] + (2 * row2delete));
-						XSSFRow row = sheet.getRow(rowid);
-						sheet.removeRow(row);
-						sheet.shiftRows(rowid+1, lastRowNum, -1, true, false);
-						row = sheet.getRow(rowid+1);
-						sheet.removeRow(row);
-						sheet.shiftRows(rowid+2, lastRowNum, -1, true, false);
+					if (partijen[i] != null) {
+						exportWedstrijd(row, partijen[i]);
 					}
-					
 				}
-				if (nrSeries == 1) {
-					// En serie gespeeld dus tweede serie volledig verwijderen
-					int lastRowNum = sheet.getLastRowNum();
-					for (int r = rowOffset[1] - 3; r < lastRowNum - 3; r++) {
-						XSSFRow row = sheet.getRow(r);
-						sheet.removeRow(row);
-					}
-					int a = rowOffset[1]-3;
-					int b = lastRowNum - 4;
-					int c = (lastRowNum - rowOffset[1] - 4);
-					logger.log(Level.INFO, "shiftrows " + a + "," + b + "," + c);
-					sheet.shiftRows(rowOffset[1]-3, lastRowNum - 4, (lastRowNum - rowOffset[1]), true, false);
+				if (blad.printArea != null) {
+					workbook.setPrintArea(b, blad.printArea.getFirstCell().getCol(),
+							blad.printArea.getLastCell().getCol(), blad.eerste, blad.eerste + indeling.length - 1);
 				}
 			}
-			// Close input file
-			file.close();
+			workbook.setForceFormulaRecalculation(true);
 			// Store Excel to new file
-			String outputFile = "Indeling " + periode + "-" + ronde + ".xlsx";
-			FileOutputStream outFile = new FileOutputStream(new File(outputFile));
-			workbook.write(outFile);
-			// Close output file
+			try (FileOutputStream outFile = new FileOutputStream(new File(bestandsnaam))) {
+				workbook.write(outFile);
+			}
+		} finally {
 			workbook.close();
-			outFile.close();
-			// And open it in the system editor
-			Desktop.getDesktop().open(new File(outputFile));
-		} catch (Exception e) {
-			System.out.println("Error writing output: " + e.toString());
+			workbook.dispose();
 		}
+		Metingen.meetEnSchrijf(Metingen.Stap.EXCEL, start, "bestand=" + bestandsnaam);
 	}
 
 	/**
-	 * Exporteer een wedstrijd naar Excel. Wedstrijd wordt in gespecificeerde
-	 * sheet op de gespecificeerde rij afgedrukt.
-	 * @param sheet
-	 * @param wedstrijd
+	 * Bepaal welke sjabloonrijen in welke volgorde op het blad van een groep
+	 * komen: de kop, per serie de titel en voor iedere wedstrijd een wedstrijd-
+	 * en een tussenrij, de trio en tot slot de onderrand. Tussen twee delen
+	 * komt de lege rij die in het sjabloon boven de titel van het volgende
+	 * deel staat.
+	 * @return Per rij op het blad het nummer van de sjabloonrij
+	 */
+	private int[] bepaalIndeling(Blad blad, Groepswedstrijden gw) {
+		int[] rijen = new int[blad.rijen.length];
+		int n = 0;
+		for (int r = blad.eerste; r < rowOffset[0] - 1; r++) {
+			rijen[n++] = r;
+		}
+		int[] titels = { rowOffset[0] - 1, rowOffset[1] - 1, rowOffsetTrio - 1 };
+		boolean eerste = true;
+		for (int deel = 0; deel < titels.length; deel++) {
+			int aantal = aantalWedstrijden(gw, deel);
+			if (aantal == 0) {
+				continue;
+			}
+			if (!eerste) {
+				rijen = ruimte(rijen, n + 1);
+				rijen[n++] = titels[deel] - 1;
+			}
+			eerste = false;
+			int begin = titels[deel] + 1;
+			int einde = deel + 1 < titels.length ? titels[deel + 1] - 1 : blad.laatste + 1;
+			int capaciteit = Math.max((einde - begin) / 2, 1);
+			rijen = ruimte(rijen, n + 1 + 2 * aantal);
+			rijen[n++] = titels[deel];
+			for (int i = 0; i < aantal; i++) {
+				int r = begin + 2 * Math.min(i, capaciteit - 1);
+				rijen[n++] = r;
+				rijen[n++] = r + 1;
+			}
+		}
+		if (!eerste) {
+			// Laatste tussenrij wordt de onderrand
+			--n;
+		}
+		rijen = ruimte(rijen, n + 1);
+		rijen[n++] = blad.laatste;
+		int[] indeling = new int[n];
+		System.arraycopy(rijen, 0, indeling, 0, n);
+		return indeling;
+	}
+
+	/**
+	 * Geef per rij van de indeling de wedstrijd die erop komt, of null
+	 */
+	private Wedstrijd[] plaatsWedstrijden(Blad blad, Groepswedstrijden gw, int[] indeling) {
+		Wedstrijd[] partijen = new Wedstrijd[indeling.length];
+		int i = 0;
+		for (int deel = 0; deel < 3; deel++) {
+			ArrayList<Wedstrijd> lijst = wedstrijdenVan(gw, deel);
+			if (lijst == null || lijst.isEmpty()) {
+				continue;
+			}
+			// Zoek de titel van dit deel; de wedstrijden volgen direct
+			int titel = deel < 2 ? rowOffset[deel] - 1 : rowOffsetTrio - 1;
+			while (indeling[i] != titel) {
+				i++;
+			}
+			i++;
+			for (Wedstrijd w : lijst) {
+				partijen[i] = w;
+				i += 2;
+			}
+		}
+		return partijen;
+	}
+
+	private static ArrayList<Wedstrijd> wedstrijdenVan(Groepswedstrijden gw, int deel) {
+		if (deel < 2) {
+			Serie serie = deel < gw.getSeries().size() ? gw.getSerie(deel) : null;
+			return serie != null ? serie.getWedstrijden() : null;
+		}
+		return gw.getTriowedstrijden();
+	}
+
+	private static int aantalWedstrijden(Groepswedstrijden gw, int deel) {
+		ArrayList<Wedstrijd> lijst = wedstrijdenVan(gw, deel);
+		return lijst != null ? lijst.size() : 0;
+	}
+
+	private static int[] ruimte(int[] rijen, int nodig) {
+		if (nodig <= rijen.length) {
+			return rijen;
+		}
+		int[] groter = new int[Math.max(nodig, rijen.length * 2)];
+		System.arraycopy(rijen, 0, groter, 0, rijen.length);
+		return groter;
+	}
+
+	/**
+	 * Schrijf een kopie van een sjabloonrij op de gegeven plek
+	 */
+	private Row schrijfRij(SXSSFWorkbook workbook, Sheet sheet, SjabloonRij bron, int rownum) {
+		Row row = sheet.createRow(rownum);
+		if (bron == null) {
+			return row;
+		}
+		row.setHeight(bron.hoogte);
+		for (SjabloonCel c : bron.cellen) {
+			Cell cell = row.createCell(c.kolom);
+			cell.setCellStyle(workbook.getCellStyleAt(c.stijl));
+			switch (c.type) {
+			case STRING:
+				cell.setCellValue(c.tekst);
+				break;
+			case NUMERIC:
+				cell.setCellValue(c.getal);
+				break;
+			case BOOLEAN:
+				cell.setCellValue(c.getal != 0);
+				break;
+			case FORMULA:
+				cell.setCellFormula(c.tekst);
+				break;
+			default:
+				break;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Exporteer een wedstrijd naar Excel. Wedstrijd wordt op de
+	 * gespecificeerde rij afgedrukt.
 	 * @param row
+	 * @param wedstrijd
 	 */
-	private void exportWedstrijd(XSSFSheet sheet, Wedstrijd wedstrijd, int row) {
-		updateCell(sheet, row, 3, wedstrijd.getWit().getNaam());
-		updateCell(sheet, row, 4, "-");
-		updateCell(sheet, row, 5, wedstrijd.getZwart().getNaam());
+	private void exportWedstrijd(Row row, Wedstrijd wedstrijd) {
+		updateCell(row, 3, wedstrijd.getWit().getNaam());
+		updateCell(row, 4, "-");
+		updateCell(row, 5, wedstrijd.getZwart().getNaam());
 	}
+
 	/**
-	 * Update a single cell in the Excel Sheet. The cell is specified by its row and
-	 * column. Row and column numbers start with 0, so column A equals 0, column B
-	 * equals 1, etc.
-	 * @param sheet The Excel sheet to update
-	 * @param row The row number, starting with 0
+	 * Update a single cell in the Excel row. Column numbers start with 0, so
+	 * column A equals 0, column B equals 1, etc.
+	 * @param row The row to update
 	 * @param col The column number, staring with 0
 	 * @param value THe value to store in the cell
 	 */
-	private void updateCell(XSSFSheet sheet, int row, int col, String value) {
-		Cell cell = null;
-
-		// Retrieve the row and create when not valid
-		XSSFRow sheetrow = sheet.getRow(row);
-		if (sheetrow == null) {
-			sheetrow = sheet.createRow(row);
-		}
+	private void updateCell(Row row, int col, String value) {
 		// Retrieve the correct cell from the column
-		cell = sheetrow.getCell(col);
+		Cell cell = row.getCell(col);
 		if (cell == null) {
-			cell = sheetrow.createCell(col);
+			cell = row.createCell(col);
+		} else if (celType(cell) == CellType.FORMULA) {
+			// Formule uit het sjabloon vervangen door de waarde
+			cell.setCellType(CellType.BLANK);
 		}
 		// Update the value of cell
 		cell.setCellValue(value.trim());
 	}
+
+	/**
+	 * Het type van een cel. In POI 3.15 geeft alleen getCellTypeEnum een
+	 * CellType, maar die is al deprecated met het oog op POI 4.
+	 */
+	@SuppressWarnings("deprecation")
+	private static CellType celType(Cell cell) {
+		return cell.getCellTypeEnum();
+	}
+
+	/**
+	 * Geef het ingelezen sjabloon. Het sjabloon wordt opnieuw ingelezen als
+	 * Empty.xlsx sinds de vorige keer is gewijzigd.
+	 */
+	private static synchronized Sjabloon getSjabloon() throws IOException {
+		File bestand = new File(SJABLOON);
+		if (sjabloon == null || sjabloon.gewijzigd != bestand.lastModified()) {
+			logger.log(Level.INFO, "Sjabloon " + SJABLOON + " inlezen");
+			sjabloon = new Sjabloon(bestand);
+		}
+		return sjabloon;
+	}
+
+	/**
+	 * Het ingelezen sjabloon: de rijen van ieder groepsblad en het sjabloon
+	 * zonder die rijen, waarin SXSSF de nieuwe rijen schrijft. Stijlen, kolom-
+	 * breedtes, samengevoegde cellen en de overige bladen blijven daarin staan.
+	 */
+	private static class Sjabloon {
+		private final long gewijzigd;
+		private final Blad[] bladen;
+		private final byte[] leeg;
+
+		Sjabloon(File bestand) throws IOException {
+			gewijzigd = bestand.lastModified();
+			try (FileInputStream file = new FileInputStream(bestand);
+					XSSFWorkbook workbook = new XSSFWorkbook(file)) {
+				bladen = new Blad[Math.min(AANTAL_GROEPEN, workbook.getNumberOfSheets())];
+				for (int b = 0; b < bladen.length; b++) {
+					XSSFSheet sheet = workbook.getSheetAt(b);
+					String printArea = workbook.getPrintArea(b);
+					bladen[b] = new Blad(sheet, printArea);
+					for (int r = sheet.getLastRowNum(); r >= 0; r--) {
+						Row row = sheet.getRow(r);
+						if (row != null) {
+							sheet.removeRow(row);
+						}
+					}
+				}
+				ByteArrayOutputStream uit = new ByteArrayOutputStream();
+				workbook.write(uit);
+				leeg = uit.toByteArray();
+			}
+		}
+	}
+
+	/**
+	 * De rijen van een groepsblad in het sjabloon
+	 */
+	private static class Blad {
+		private final SjabloonRij[] rijen;
+		private final int eerste;
+		private final int laatste;
+		private final AreaReference printArea;
+
+		Blad(XSSFSheet sheet, String printArea) {
+			eerste = Math.max(sheet.getFirstRowNum(), 0);
+			laatste = Math.max(sheet.getLastRowNum(), eerste);
+			rijen = new SjabloonRij[laatste + 1];
+			for (Row row : sheet) {
+				rijen[row.getRowNum()] = new SjabloonRij(row);
+			}
+			if (printArea != null) {
+				// Alleen het gebied na de bladnaam, bv. Pion!$B$3:$J$56
+				this.printArea = new AreaReference(printArea.substring(printArea.lastIndexOf('!') + 1),
+						SpreadsheetVersion.EXCEL2007);
+			} else {
+				this.printArea = null;
+			}
+		}
+
+		int[] alleRijen() {
+			int[] indeling = new int[laatste - eerste + 1];
+			for (int i = 0; i < indeling.length; i++) {
+				indeling[i] = eerste + i;
+			}
+			return indeling;
+		}
+	}
+
+	private static class SjabloonRij {
+		private final short hoogte;
+		private final SjabloonCel[] cellen;
+
+		SjabloonRij(Row row) {
+			hoogte = row.getHeight();
+			ArrayList<SjabloonCel> lijst = new ArrayList<>();
+			for (Cell cell : row) {
+				lijst.add(new SjabloonCel(cell));
+			}
+			cellen = lijst.toArray(new SjabloonCel[lijst.size()]);
+		}
+	}
+
+	private static class SjabloonCel {
+		private final int kolom;
+		private final int stijl;
+		private final CellType type;
+		private final String tekst;
+		private final double getal;
+
+		SjabloonCel(Cell cell) {
+			kolom = cell.getColumnIndex();
+			stijl = cell.getCellStyle().getIndex();
+			type = celType(cell);
+			switch (type) {
+			case STRING:
+				tekst = cell.getStringCellValue();
+				getal = 0;
+				break;
+			case NUMERIC:
+				tekst = null;
+				getal = cell.getNumericCellValue();
+				break;
+			case BOOLEAN:
+				tekst = null;
+				getal = cell.getBooleanCellValue() ? 1 : 0;
+				break;
+			case FORMULA:
+				tekst = cell.getCellFormula();
+				getal = 0;
+				break;
+			default:
+				tekst = null;
+				getal = 0;
+			}
+		}
+	}
 }
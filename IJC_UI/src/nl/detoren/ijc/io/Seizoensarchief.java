@@ -0,0 +1,439 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import nl.detoren.ijc.data.groepen.Historie;
+import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
+import nl.detoren.ijc.data.wedstrijden.Serie;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+
+/**
+ * Archief met de indeling en uitslagen van alle verwerkte rondes van een
+ * seizoen. Bij het verwerken van een ronde wordt die achteraan het bestand
+ * toegevoegd; eerder gearchiveerde rondes worden nooit herschreven.
+ *
+ * Opbouw van het bestand:
+ *
+ * <pre>
+ * "IJCA" versie
+ * per ronde: lengte crc32 periode ronde aantal partij*
+ * partij   : niveau serie wit zwart uitslag  (28 bytes)
+ * </pre>
+ *
+ * Wit en zwart zijn de sleutels van de spelers. Serie is de serie waarin de
+ * partij is gespeeld, beginnend bij 0, of -1 voor een triowedstrijd.
+ *
+ * Het bestand wordt in het geheugen gemapt. Bij het openen wordt per ronde, per
+ * speler en per tweetal spelers bijgehouden op welke positie hun partijen
+ * staan, zodat de onderlinge resultaten van twee spelers direct opgezocht
+ * kunnen worden. Wordt een ronde opnieuw verwerkt, dan telt alleen de laatste
+ * versie. Een onvolledig weggeschreven laatste ronde wordt bij het volgende
+ * toevoegen overschreven.
+ *
+ * @author Leo van der Meulen
+ */
+public class Seizoensarchief {
+
+	private final static Logger logger = Logger.getLogger(Seizoensarchief.class.getName());
+
+	private static final int MAGIC = 0x494A4341; // "IJCA"
+	private static final int VERSIE = 1;
+	private static final int KOP = 8;
+	private static final int RONDEKOP = 12;
+	private static final int PARTIJ = 28;
+
+	/**
+	 * Een partij uit het archief
+	 */
+	public static class Partij {
+		private final int periode;
+		private final int ronde;
+		private final int niveau;
+		private final int serie;
+		private final long wit;
+		private final long zwart;
+		private final int uitslag;
+
+		Partij(int periode, int ronde, int niveau, int serie, long wit, long zwart, int uitslag) {
+			this.periode = periode;
+			this.ronde = ronde;
+			this.niveau = niveau;
+			this.serie = serie;
+			this.wit = wit;
+			this.zwart = zwart;
+			this.uitslag = uitslag;
+		}
+
+		public int getPeriode() {
+			return periode;
+		}
+
+		public int getRonde() {
+			return ronde;
+		}
+
+		public int getNiveau() {
+			return niveau;
+		}
+
+		/**
+		 * @return Serie, beginnend bij 0, of -1 voor een triowedstrijd
+		 */
+		public int getSerie() {
+			return serie;
+		}
+
+		/**
+		 * @return Sleutel van de speler met wit
+		 */
+		public long getWit() {
+			return wit;
+		}
+
+		/**
+		 * @return Sleutel van de speler met zwart
+		 */
+		public long getZwart() {
+			return zwart;
+		}
+
+		/**
+		 * @return Uitslag in Toto stijl, zie Wedstrijd
+		 */
+		public int getUitslag() {
+			return uitslag;
+		}
+
+		@Override
+		public String toString() {
+			return periode + "-" + ronde + " groep " + niveau + ": " + wit + " - " + zwart + " " + uitslag;
+		}
+	}
+
+	private final Path bestand;
+	private MappedByteBuffer inhoud;
+
+	/** Einde van de laatste volledige ronde; hier wordt de volgende geschreven */
+	private int einde;
+
+	/** Positie van elke ronde in het bestand, sleutel periode * 1000 + ronde */
+	private final HashMap<Integer, Integer> rondes = new HashMap<>();
+
+	/**
+	 * Posities van de partijen per speler, als positie van de ronde * 2^32 +
+	 * positie van de partij
+	 */
+	private final HashMap<Long, List<Long>> perSpeler = new HashMap<>();
+
+	/** Posities van de partijen per tweetal spelers, kleinste sleutel eerst */
+	private final HashMap<Long, HashMap<Long, List<Long>>> perTweetal = new HashMap<>();
+
+	private Seizoensarchief(Path bestand) {
+		this.bestand = bestand;
+	}
+
+	/**
+	 * Open het archief. Als het bestand nog niet bestaat, wordt het
+	 * aangemaakt.
+	 *
+	 * @param bestandsnaam
+	 *            Naam van het archief
+	 * @return Het archief
+	 * @throws IOException
+	 */
+	public static Seizoensarchief open(String bestandsnaam) throws IOException {
+		Seizoensarchief archief = new Seizoensarchief(Paths.get(bestandsnaam));
+		archief.laad();
+		return archief;
+	}
+
+	private void laad() throws IOException {
+		try (FileChannel kanaal = FileChannel.open(bestand, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			if (kanaal.size() < KOP) {
+				ByteBuffer kop = ByteBuffer.allocate(KOP);
+				kop.putInt(MAGIC).putInt(VERSIE).flip();
+				kanaal.write(kop, 0);
+				kanaal.force(true);
+			}
+			map(kanaal);
+			if ((inhoud.getInt(0) != MAGIC) || (inhoud.getInt(4) > VERSIE)) {
+				throw new IOException(bestand + " is geen seizoensarchief");
+			}
+			einde = KOP;
+			while (einde < inhoud.limit()) {
+				int lengte = rondeLengte(einde);
+				if (lengte < 0) {
+					logger.log(Level.WARNING, "Onvolledige ronde achteraan " + bestand + " wordt genegeerd");
+					break;
+				}
+				indexeer(einde);
+				einde += lengte;
+			}
+		}
+		logger.log(Level.INFO, rondes.size() + " rondes in seizoensarchief " + bestand);
+	}
+
+	private void map(FileChannel kanaal) throws IOException {
+		inhoud = kanaal.map(FileChannel.MapMode.READ_ONLY, 0, kanaal.size());
+	}
+
+	/**
+	 * Geef de totale lengte van de ronde op de gegeven positie, of -1 als de
+	 * ronde onvolledig of beschadigd is.
+	 */
+	private int rondeLengte(int positie) {
+		if (positie + 8 + RONDEKOP > inhoud.limit()) {
+			return -1;
+		}
+		int lengte = inhoud.getInt(positie);
+		if ((lengte < RONDEKOP) || (lengte > inhoud.limit() - positie - 8)
+				|| (lengte != RONDEKOP + inhoud.getInt(positie + 16) * PARTIJ)) {
+			return -1;
+		}
+		ByteBuffer gegevens = inhoud.duplicate();
+		gegevens.position(positie + 8).limit(positie + 8 + lengte);
+		CRC32 crc = new CRC32();
+		crc.update(gegevens);
+		if ((int) crc.getValue() != inhoud.getInt(positie + 4)) {
+			return -1;
+		}
+		return 8 + lengte;
+	}
+
+	private void indexeer(int positie) {
+		int periode = inhoud.getInt(positie + 8);
+		int ronde = inhoud.getInt(positie + 12);
+		Integer vorige = rondes.put(periode * 1000 + ronde, positie);
+		if (vorige != null) {
+			// Ronde opnieuw verwerkt; de oude partijen tellen niet meer mee
+			verwijderUitIndex(vorige);
+		}
+		int aantal = inhoud.getInt(positie + 16);
+		for (int i = 0; i < aantal; i++) {
+			int p = positie + 8 + RONDEKOP + i * PARTIJ;
+			long wit = inhoud.getLong(p + 8);
+			long zwart = inhoud.getLong(p + 16);
+			Long verwijzing = ((long) positie << 32) | p;
+			lijst(perSpeler, wit).add(verwijzing);
+			lijst(perSpeler, zwart).add(verwijzing);
+			lijst(tweetal(wit, zwart, true), Math.max(wit, zwart)).add(verwijzing);
+		}
+	}
+
+	private void verwijderUitIndex(int positie) {
+		int aantal = inhoud.getInt(positie + 16);
+		for (int i = 0; i < aantal; i++) {
+			int p = positie + 8 + RONDEKOP + i * PARTIJ;
+			long wit = inhoud.getLong(p + 8);
+			long zwart = inhoud.getLong(p + 16);
+			Long verwijzing = ((long) positie << 32) | p;
+			lijst(perSpeler, wit).remove(verwijzing);
+			lijst(perSpeler, zwart).remove(verwijzing);
+			lijst(tweetal(wit, zwart, true), Math.max(wit, zwart)).remove(verwijzing);
+		}
+	}
+
+	private static <K> List<Long> lijst(HashMap<K, List<Long>> index, K sleutel) {
+		List<Long> l = index.get(sleutel);
+		if (l == null) {
+			l = new ArrayList<>();
+			index.put(sleutel, l);
+		}
+		return l;
+	}
+
+	private HashMap<Long, List<Long>> tweetal(long s1, long s2, boolean maak) {
+		long laag = Math.min(s1, s2);
+		HashMap<Long, List<Long>> m = perTweetal.get(laag);
+		if ((m == null) && maak) {
+			m = new HashMap<>();
+			perTweetal.put(laag, m);
+		}
+		return m;
+	}
+
+	private Partij partij(int ronde, int p) {
+		return new Partij(inhoud.getInt(ronde + 8), inhoud.getInt(ronde + 12), inhoud.getInt(p),
+				inhoud.getInt(p + 4), inhoud.getLong(p + 8), inhoud.getLong(p + 16), inhoud.getInt(p + 24));
+	}
+
+	private List<Partij> partijen(List<Long> verwijzingen) {
+		if (verwijzingen == null) {
+			return Collections.emptyList();
+		}
+		List<Partij> lijst = new ArrayList<>(verwijzingen.size());
+		for (long v : verwijzingen) {
+			lijst.add(partij((int) (v >>> 32), (int) v));
+		}
+		return lijst;
+	}
+
+	/**
+	 * Voeg de wedstrijden van een verwerkte ronde toe aan het archief
+	 *
+	 * @param wedstrijden
+	 *            Wedstrijden van de ronde, met uitslagen
+	 * @throws IOException
+	 */
+	public synchronized void voegToe(Wedstrijden wedstrijden) throws IOException {
+		ArrayList<Partij> lijst = new ArrayList<>();
+		for (Groepswedstrijden gw : wedstrijden.getGroepswedstrijden()) {
+			int serie = 0;
+			for (Serie s : gw.getSeries()) {
+				for (Wedstrijd w : s.getWedstrijden()) {
+					voegPartijToe(lijst, wedstrijden, gw.getNiveau(), serie, w);
+				}
+				serie++;
+			}
+			for (Wedstrijd w : gw.getTriowedstrijden()) {
+				voegPartijToe(lijst, wedstrijden, gw.getNiveau(), -1, w);
+			}
+		}
+		int lengte = RONDEKOP + lijst.size() * PARTIJ;
+		ByteBuffer ronde = ByteBuffer.allocate(8 + lengte);
+		ronde.putInt(lengte).putInt(0);
+		ronde.putInt(wedstrijden.getPeriode()).putInt(wedstrijden.getRonde()).putInt(lijst.size());
+		for (Partij p : lijst) {
+			ronde.putInt(p.niveau).putInt(p.serie).putLong(p.wit).putLong(p.zwart).putInt(p.uitslag);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(ronde.array(), 8, lengte);
+		ronde.putInt(4, (int) crc.getValue());
+		ronde.flip();
+
+		try (FileChannel kanaal = FileChannel.open(bestand, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			int positie = einde;
+			while (ronde.hasRemaining()) {
+				kanaal.write(ronde, positie + ronde.position());
+			}
+			kanaal.force(true);
+			map(kanaal);
+			indexeer(positie);
+			einde = positie + 8 + lengte;
+		}
+		logger.log(Level.INFO, "Ronde " + wedstrijden.getPeriode() + "-" + wedstrijden.getRonde() + " met "
+				+ lijst.size() + " partijen gearchiveerd");
+	}
+
+	private static void voegPartijToe(List<Partij> lijst, Wedstrijden wedstrijden, int niveau, int serie,
+			Wedstrijd w) {
+		if ((w == null) || (w.getWit() == null) || (w.getZwart() == null)) {
+			return;
+		}
+		lijst.add(new Partij(wedstrijden.getPeriode(), wedstrijden.getRonde(), niveau, serie,
+				w.getWit().getSleutel(), w.getZwart().getSleutel(), w.getUitslag()));
+	}
+
+	/**
+	 * @return true als de ronde in het archief staat
+	 */
+	public synchronized boolean bevatRonde(int periode, int ronde) {
+		return rondes.containsKey(periode * 1000 + ronde);
+	}
+
+	/**
+	 * Geef alle partijen van een ronde
+	 */
+	public synchronized List<Partij> getRonde(int periode, int ronde) {
+		Integer positie = rondes.get(periode * 1000 + ronde);
+		if (positie == null) {
+			return Collections.emptyList();
+		}
+		int aantal = inhoud.getInt(positie + 16);
+		List<Partij> lijst = new ArrayList<>(aantal);
+		for (int i = 0; i < aantal; i++) {
+			lijst.add(partij(positie, positie + 8 + RONDEKOP + i * PARTIJ));
+		}
+		return lijst;
+	}
+
+	/**
+	 * Geef alle partijen van een speler, in de volgorde waarin de rondes zijn
+	 * verwerkt
+	 */
+	public synchronized List<Partij> getPartijen(Speler speler) {
+		return partijen(perSpeler.get(speler.getSleutel()));
+	}
+
+	/**
+	 * Geef de onderlinge partijen van twee spelers
+	 */
+	public synchronized List<Partij> getOnderlingePartijen(Speler s1, Speler s2) {
+		HashMap<Long, List<Long>> m = tweetal(s1.getSleutel(), s2.getSleutel(), false);
+		return partijen(m == null ? null : m.get(Math.max(s1.getSleutel(), s2.getSleutel())));
+	}
+
+	/**
+	 * Geef hoe vaak twee spelers dit seizoen tegen elkaar hebben gespeeld
+	 */
+	public synchronized int getAantalOnderlingePartijen(Speler s1, Speler s2) {
+		HashMap<Long, List<Long>> m = tweetal(s1.getSleutel(), s2.getSleutel(), false);
+		List<Long> l = m == null ? null : m.get(Math.max(s1.getSleutel(), s2.getSleutel()));
+		return l == null ? 0 : l.size();
+	}
+
+	/**
+	 * Maak de historie van alle spelers uit de rondes van een periode, in
+	 * volgorde van de rondes
+	 *
+	 * @param periode
+	 *            De periode
+	 * @param diepte
+	 *            Aantal partijen dat per speler wordt bijgehouden
+	 * @return De historie
+	 */
+	public synchronized Historie maakHistorie(int periode, int diepte) {
+		ArrayList<Integer> lijst = new ArrayList<>();
+		for (int sleutel : rondes.keySet()) {
+			if (sleutel / 1000 == periode) {
+				lijst.add(sleutel % 1000);
+			}
+		}
+		Collections.sort(lijst);
+		Historie historie = new Historie(diepte);
+		for (int ronde : lijst) {
+			for (Partij p : getRonde(periode, ronde)) {
+				historie.voegPartijToe(p.wit, p.zwart, p.uitslag);
+			}
+		}
+		return historie;
+	}
+
+	/**
+	 * @return Aantal rondes in het archief
+	 */
+	public synchronized int getAantalRondes() {
+		return rondes.size();
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.ui.control;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Voert langdurige taken (inlezen, indelen, exporteren, opslaan) uit buiten
+ * de Swing event thread, zodat de gebruikersinterface niet bevriest.
+ *
+ * Er is precies 1 achtergrondthread: de status van de controller is niet
+ * thread safe, dus taken worden in volgorde van aanbieden na elkaar
+ * uitgevoerd. De wachtrij is begrensd; als die vol is, wordt de taak
+ * geweigerd en krijgt hij direct een mislukt melding.
+ *
+ * Voortgang, klaar en mislukt worden altijd op de event thread aangeroepen.
+ *
+ * @author Leo van der Meulen
+ */
+public class Achtergrondtaken {
+
+    private final static Logger logger = Logger.getLogger(Achtergrondtaken.class.getName());
+
+    /** Maximaal aantal taken dat op uitvoering wacht */
+    private static final int MAX_WACHTEND = 16;
+
+    /**
+     * Een taak voor de achtergrondthread. voerUit draait op de
+     * achtergrondthread; de overige methodes op de event thread.
+     */
+    public static abstract class Taak {
+
+        private final String omschrijving;
+
+        public Taak(String omschrijving) {
+            this.omschrijving = omschrijving;
+        }
+
+        public String getOmschrijving() {
+            return omschrijving;
+        }
+
+        /**
+         * Het eigenlijke werk, op de achtergrondthread
+         */
+        protected abstract void voerUit() throws Exception;
+
+        /**
+         * Meld voortgang vanuit voerUit. Het bericht wordt via de event
+         * thread aan voortgang doorgegeven.
+         */
+        protected final void meldVoortgang(final String bericht) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    voortgang(bericht);
+                }
+            });
+        }
+
+        /**
+         * Voortgang van de taak, op de event thread
+         */
+        protected void voortgang(String bericht) {
+        }
+
+        /**
+         * Taak is geslaagd, op de event thread
+         */
+        protected void klaar() {
+        }
+
+        /**
+         * Taak is mislukt of geweigerd, op de event thread
+         */
+        protected void mislukt(Exception e) {
+        }
+    }
+
+    private final ThreadPoolExecutor uitvoerder;
+
+    /** Wordt vastgehouden zolang een taak wordt uitgevoerd */
+    private final Object vergrendeling = new Object();
+
+    private volatile Thread draad;
+
+    public Achtergrondtaken() {
+        uitvoerder = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_WACHTEND), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "IJC achtergrond");
+                        t.setDaemon(true);
+                        draad = t;
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Bied een taak aan voor uitvoering op de achtergrond
+     *
+     * @param taak
+     *            De taak
+     * @return false als de taak is geweigerd
+     */
+    public boolean voerUit(final Taak taak) {
+        try {
+            uitvoerder.execute(new Runnable() {
+                @Override
+                public void run() {
+                    logger.log(Level.INFO, "Start taak: " + taak.getOmschrijving());
+                    Exception fout = null;
+                    synchronized (vergrendeling) {
+                        try {
+                            taak.voerUit();
+                        } catch (Exception e) {
+                            logger.log(Level.SEVERE, "Taak mislukt: " + taak.getOmschrijving(), e);
+                            fout = e;
+                        }
+                    }
+                    meldAfloop(taak, fout);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.log(Level.WARNING, "Taak geweigerd: " + taak.getOmschrijving());
+            meldAfloop(taak, e);
+            return false;
+        }
+    }
+
+    private static void meldAfloop(final Taak taak, final Exception fout) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (fout == null) {
+                    taak.klaar();
+                } else {
+                    taak.mislukt(fout);
+                }
+            }
+        });
+    }
+
+    /**
+     * Voer werk uit na alle taken die al zijn aangeboden en wacht tot het klaar
+     * is. Bedoeld voor werk dat niet tegelijk met een taak mag gebeuren, zoals
+     * het opslaan bij afsluiten. Is de wachtrij vol, dan wordt alleen gewacht
+     * tot de lopende taak klaar is. Op de achtergrondthread zelf wordt het werk
+     * direct uitgevoerd.
+     *
+     * @param werk
+     *            Het werk
+     */
+    public void voerUitEnWacht(Runnable werk) {
+        if (Thread.currentThread() == draad) {
+            werk.run();
+            return;
+        }
+        try {
+            uitvoerder.submit(werk).get();
+        } catch (RejectedExecutionException e) {
+            synchronized (vergrendeling) {
+                werk.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, "Uitvoeren mislukt: " + e.getCause());
+        }
+    }
+
+    /**
+     * @return true als er een taak loopt of wacht
+     */
+    public boolean isBezig() {
+        return uitvoerder.getActiveCount() > 0 || !uitvoerder.getQueue().isEmpty();
+    }
+}
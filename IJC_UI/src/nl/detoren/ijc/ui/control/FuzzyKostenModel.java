@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen, Lars Dam
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.ui.control;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.data.groepen.Historie;
+import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.data.groepen.SpelerHistorie;
+import nl.detoren.ijc.data.groepen.TegenstanderIndex;
+
+/**
+ * Berekent de fuzzy matrix van een wedstrijdgroep in n keer. De vier
+ * voorwaarden uit GroepenIndeler.MaakFuzzyMatrix (eerdere tegenstanders,
+ * ranking, kleurvoorkeur en doorschuiven) worden per paar direct opgeteld,
+ * in plaats van vier losse matrices op te bouwen en die bij elkaar op te
+ * tellen.
+ *
+ * Bij het aanmaken wordt per speler en per paar bepaald in welke cel van de
+ * tabellen uit FuzzyParameters het paar valt: een masker van de posities in
+ * de tegenstanderslijst (uit TegenstanderIndex), de kleurvoorkeur en of de
+ * speler is doorgeschoven.
+ * Het berekenen met een set parameters kost daarna per paar alleen vier
+ * opzoekingen, zodat veel verschillende wegingen snel achter elkaar
+ * doorgerekend kunnen worden. Het resultaat is een platte int[] van
+ * n x (n+1), met in kolom 0 het ID van de speler, net als de fuzzy matrix.
+ *
+ * Als er een historie is meegegeven, wordt per paar ook geteld hoe vaak de
+ * spelers in die historie tegen elkaar hebben gespeeld. Met de weging
+ * herhaling uit FuzzyParameters komt daar een vijfde term bij.
+ */
+public class FuzzyKostenModel {
+
+	private final int n;
+	private final int[] ids;
+	private final int[] kleur; // 0 t/m 4 voor witvoorkeur -2 t/m 2, 5 als buiten bereik
+	private final int[] doorgeschoven; // 1 als doorgeschoven, anders 0
+	private final byte[] tegenstanders; // [i * n + j] -> bit k als j op positie k bij i staat
+	private final byte[] herhalingen; // [i * n + j] -> aantal partijen tussen i en j in de historie
+
+	/**
+	 * Verzamel de gegevens van alle spelers. De spelers moeten genummerd zijn
+	 * van 1 t/m het aantal spelers; rij i hoort bij de speler met ID i+1.
+	 *
+	 * @param groep
+	 *            De wedstrijdgroep
+	 */
+	public FuzzyKostenModel(Groep groep) {
+		this(groep, null);
+	}
+
+	/**
+	 * Verzamel de gegevens van alle spelers, inclusief het aantal eerdere
+	 * partijen per paar.
+	 *
+	 * @param groep
+	 *            De wedstrijdgroep
+	 * @param historie
+	 *            Historie van de spelers, of null
+	 */
+	public FuzzyKostenModel(Groep groep, Historie historie) {
+		n = groep.getAantalSpelers();
+		Speler[] spelers = new Speler[n];
+		for (Speler s : groep.getSpelers()) {
+			int pos = s.getId() - 1;
+			if (pos >= 0 && pos < n && spelers[pos] == null) {
+				spelers[pos] = s;
+			}
+		}
+		ids = new int[n];
+		kleur = new int[n];
+		doorgeschoven = new int[n];
+		for (int i = 0; i < n; i++) {
+			Speler s = spelers[i];
+			if (s == null) {
+				throw new IllegalArgumentException(
+						"Speler met ID " + (i + 1) + " ontbreekt in " + groep.getNaam());
+			}
+			ids[i] = s.getId();
+			int witvk = (int) s.getWitvoorkeur();
+			kleur[i] = (witvk >= -2 && witvk <= 2) ? witvk + 2 : FuzzyParameters.AANTAL_KLEUREN;
+			doorgeschoven[i] = s.getGroep() != groep.getNiveau() ? 1 : 0;
+		}
+		TegenstanderIndex index = new TegenstanderIndex(Arrays.asList(spelers));
+		tegenstanders = new byte[n * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				tegenstanders[i * n + j] = (byte) index.getMasker(i, j);
+			}
+		}
+		herhalingen = historie != null ? telHerhalingen(spelers, historie) : null;
+	}
+
+	private byte[] telHerhalingen(Speler[] spelers, Historie historie) {
+		HashMap<Long, Integer> positie = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			positie.put(spelers[i].getSleutel(), i);
+		}
+		byte[] aantal = new byte[n * n];
+		for (int i = 0; i < n; i++) {
+			SpelerHistorie h = historie.get(spelers[i]);
+			if (h == null) {
+				continue;
+			}
+			for (int k = 0; k < h.getAantal(); k++) {
+				Integer j = positie.get(h.getTegenstander(k));
+				if ((j != null) && (j != i) && (aantal[i * n + j] < Byte.MAX_VALUE)) {
+					aantal[i * n + j]++;
+				}
+			}
+		}
+		return aantal;
+	}
+
+	public int getAantalSpelers() {
+		return n;
+	}
+
+	/**
+	 * Bereken de kosten van alle paren.
+	 *
+	 * @param serie
+	 *            Serie, beginnend bij 0
+	 * @param parameters
+	 *            De wegingen
+	 * @return Platte matrix van n x (n+1); element [i * (n+1)] is het ID van
+	 *         speler i, element [i * (n+1) + 1 + j] de kosten als speler i
+	 *         tegen speler j speelt
+	 */
+	public int[] bereken(int serie, FuzzyParameters parameters) {
+		int[] tabelTegenstander = parameters.tegenstanderTabel();
+		int[] tabelRanking = parameters.rankingTabel(n);
+		int[] tabelKleur = parameters.kleurTabel();
+		int[] tabelDoorschuiven = parameters.doorschuifTabel(serie);
+		int herhaling = herhalingen != null ? parameters.getHerhaling() : 0;
+		int kleuren = FuzzyParameters.AANTAL_KLEUREN + 1;
+		int breedte = n + 1;
+		int[] kosten = new int[n * breedte];
+		for (int i = 0; i < n; i++) {
+			int rij = i * breedte;
+			kosten[rij] = ids[i];
+			int kleur1 = kleur[i] * kleuren;
+			int door1 = doorgeschoven[i];
+			int tgn = i * n;
+			for (int j = 0; j < n; j++) {
+				if (i != j) {
+					kosten[rij + 1 + j] = tabelTegenstander[tegenstanders[tgn + j]]
+							+ tabelRanking[Math.abs(j - i)]
+							+ tabelKleur[kleur1 + kleur[j]]
+							+ tabelDoorschuiven[door1 + doorgeschoven[j]];
+				}
+			}
+			if (herhaling != 0) {
+				for (int j = 0; j < n; j++) {
+					kosten[rij + 1 + j] += herhaling * herhalingen[tgn + j];
+				}
+			}
+		}
+		return kosten;
+	}
+
+	/**
+	 * Bereken de kosten in het [n][n+1] formaat dat de PairingEngines
+	 * verwachten.
+	 *
+	 * @param serie
+	 *            Serie, beginnend bij 0
+	 * @param parameters
+	 *            De wegingen
+	 * @return De fuzzy matrix
+	 */
+	public int[][] maakMatrix(int serie, FuzzyParameters parameters) {
+		int breedte = n + 1;
+		int[] kosten = bereken(serie, parameters);
+		int[][] matrix = new int[n][];
+		for (int i = 0; i < n; i++) {
+			matrix[i] = new int[breedte];
+			System.arraycopy(kosten, i * breedte, matrix[i], 0, breedte);
+		}
+		return matrix;
+	}
+}
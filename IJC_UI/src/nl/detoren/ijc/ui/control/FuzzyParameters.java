@@ -0,0 +1,318 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen, Lars Dam
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.ui.control;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import nl.detoren.ijc.data.groepen.TegenstanderIndex;
+
+/**
+ * Wegingen van de voorwaarden in de fuzzy matrix. De standaardwaarden zijn de
+ * waarden zoals beschreven bij GroepenIndeler.MaakFuzzyMatrix. Ze kunnen
+ * worden aangepast in fuzzy.json; velden die daar ontbreken houden hun
+ * standaardwaarde. Voorbeeld:
+ *
+ * <pre>
+ * {
+ *   "tegenstander": [20, 20, 90, 140],
+ *   "ranking": [0, 0, 10, 20, 30, 50, 80],
+ *   "rankingMax": 100,
+ *   "kleur": [[100, 75, 50, 25, 0], [75, 60, 35, 10, 25], [50, 25, 20, 35, 50],
+ *             [25, 10, 35, 60, 75], [0, 25, 50, 75, 100]],
+ *   "doorschuiven": [[10, 0, 100], [0, 80, 0]],
+ *   "factoren": [1, 1, 1, 1],
+ *   "herhaling": 0,
+ *   "historieDiepte": 16
+ * }
+ * </pre>
+ *
+ * Met herhaling kan een partij tegen iemand waartegen in deze periode al is
+ * gespeeld extra worden belast, ook als die partij buiten de laatste vier
+ * tegenstanders valt. De weging geldt per eerdere partij tegen die speler.
+ * De historie komt uit het seizoensarchief; historieDiepte is het aantal
+ * partijen dat per speler wordt bekeken. Standaard weegt herhaling niet mee.
+ *
+ * Van de tabellen worden per voorwaarde opzoektabellen gemaakt waarin de
+ * factor al is verwerkt. FuzzyKostenModel berekent de kosten van een paar
+ * daarmee met alleen vier opzoekingen.
+ */
+public class FuzzyParameters {
+
+	private final static Logger logger = Logger.getLogger(FuzzyParameters.class.getName());
+
+	/** Aantal tegenstanders dat per speler wordt bijgehouden */
+	public static final int AANTAL_TEGENSTANDERS = TegenstanderIndex.AANTAL_TEGENSTANDERS;
+
+	/** Aantal waarden van de witvoorkeur in de kleurtabel (-2 t/m 2) */
+	public static final int AANTAL_KLEUREN = 5;
+
+	/**
+	 * Weging per positie in de tegenstanderslijst, de oudste eerst. Standaard
+	 * weegt de laatste tegenstander 140, die daarvoor 90 en de twee oudste 20.
+	 */
+	private int[] tegenstander = { 20, 20, 90, 140 };
+
+	/** Weging per verschil in ranking; bij een groter verschil rankingMax */
+	private int[] ranking = { 0, 0, 10, 20, 30, 50, 80 };
+	private int rankingMax = 100;
+
+	/** Weging voor witvoorkeur speler 1 (rij) en speler 2 (kolom), -2 t/m 2 */
+	private int[][] kleur = {
+			{ 100, 75, 50, 25, 0 },
+			{ 75, 60, 35, 10, 25 },
+			{ 50, 25, 20, 35, 50 },
+			{ 25, 10, 35, 60, 75 },
+			{ 0, 25, 50, 75, 100 } };
+
+	/**
+	 * Weging doorschuiven per serie, naar het aantal doorgeschoven spelers in
+	 * het paar: [geen, een, beide]. Voor series zonder rij weegt doorschuiven
+	 * niet mee.
+	 */
+	private int[][] doorschuiven = {
+			{ 10, 0, 100 },
+			{ 0, 80, 0 } };
+
+	/** Verhouding tussen de vier voorwaarden (mf1 t/m mf4) */
+	private int[] factoren = { 1, 1, 1, 1 };
+
+	/** Weging per eerdere partij tegen dezelfde speler in deze periode */
+	private int herhaling = 0;
+
+	/** Aantal partijen per speler dat voor herhaling wordt bekeken */
+	private int historieDiepte = 16;
+
+	public FuzzyParameters() {
+	}
+
+	public FuzzyParameters(FuzzyParameters p) {
+		this.tegenstander = p.tegenstander.clone();
+		this.ranking = p.ranking.clone();
+		this.rankingMax = p.rankingMax;
+		this.kleur = new int[p.kleur.length][];
+		for (int i = 0; i < kleur.length; i++) {
+			this.kleur[i] = p.kleur[i].clone();
+		}
+		this.doorschuiven = new int[p.doorschuiven.length][];
+		for (int i = 0; i < doorschuiven.length; i++) {
+			this.doorschuiven[i] = p.doorschuiven[i].clone();
+		}
+		this.factoren = p.factoren.clone();
+		this.herhaling = p.herhaling;
+		this.historieDiepte = p.historieDiepte;
+	}
+
+	/**
+	 * Lees de parameters uit een JSON bestand. Als het bestand niet bestaat of
+	 * ongeldig is, worden de standaardwaarden gebruikt.
+	 *
+	 * @param bestandsnaam
+	 *            Naam van het bestand
+	 * @return De parameters
+	 */
+	public static FuzzyParameters lees(String bestandsnaam) {
+		if (!new File(bestandsnaam).exists()) {
+			logger.log(Level.INFO, "Geen " + bestandsnaam + ", standaard fuzzy parameters gebruikt");
+			return new FuzzyParameters();
+		}
+		try (BufferedReader br = new BufferedReader(new FileReader(bestandsnaam))) {
+			logger.log(Level.INFO, "Lees fuzzy parameters uit bestand " + bestandsnaam);
+			FuzzyParameters p = new Gson().fromJson(br, FuzzyParameters.class);
+			if (p == null) {
+				return new FuzzyParameters();
+			}
+			p.valideer();
+			return p;
+		} catch (IOException | JsonParseException | IllegalArgumentException e) {
+			logger.log(Level.SEVERE, "Fout in " + bestandsnaam + ", standaard fuzzy parameters gebruikt: "
+					+ e.getMessage());
+			return new FuzzyParameters();
+		}
+	}
+
+	/**
+	 * Controleer of alle tabellen de juiste afmetingen hebben.
+	 *
+	 * @throws IllegalArgumentException
+	 *             als dat niet zo is
+	 */
+	public void valideer() {
+		if (tegenstander == null || tegenstander.length != AANTAL_TEGENSTANDERS) {
+			throw new IllegalArgumentException("tegenstander moet " + AANTAL_TEGENSTANDERS + " waarden hebben");
+		}
+		if (ranking == null) {
+			throw new IllegalArgumentException("ranking ontbreekt");
+		}
+		if (kleur == null || kleur.length != AANTAL_KLEUREN) {
+			throw new IllegalArgumentException("kleur moet " + AANTAL_KLEUREN + " rijen hebben");
+		}
+		for (int[] rij : kleur) {
+			if (rij == null || rij.length != AANTAL_KLEUREN) {
+				throw new IllegalArgumentException("kleur moet " + AANTAL_KLEUREN + " kolommen hebben");
+			}
+		}
+		if (doorschuiven == null) {
+			throw new IllegalArgumentException("doorschuiven ontbreekt");
+		}
+		for (int[] rij : doorschuiven) {
+			if (rij == null || rij.length != 3) {
+				throw new IllegalArgumentException("doorschuiven moet per serie 3 waarden hebben");
+			}
+		}
+		if (factoren == null || factoren.length != 4) {
+			throw new IllegalArgumentException("factoren moet 4 waarden hebben");
+		}
+		if (historieDiepte < 1) {
+			throw new IllegalArgumentException("historieDiepte moet minstens 1 zijn");
+		}
+	}
+
+	/**
+	 * Opzoektabel voor eerdere tegenstanders, gendexeerd met een masker van 4
+	 * bits: bit k is gezet als de tegenstander op positie k in de lijst staat.
+	 */
+	public int[] tegenstanderTabel() {
+		int[] tabel = new int[1 << AANTAL_TEGENSTANDERS];
+		for (int masker = 0; masker < tabel.length; masker++) {
+			int som = 0;
+			for (int k = 0; k < AANTAL_TEGENSTANDERS; k++) {
+				if ((masker & (1 << k)) != 0) {
+					som += tegenstander[k];
+				}
+			}
+			tabel[masker] = factoren[0] * som;
+		}
+		return tabel;
+	}
+
+	/**
+	 * Opzoektabel voor het verschil in ranking, van 0 t/m aantal - 1.
+	 */
+	public int[] rankingTabel(int aantal) {
+		int[] tabel = new int[Math.max(aantal, 1)];
+		for (int d = 0; d < tabel.length; d++) {
+			tabel[d] = factoren[1] * (d < ranking.length ? ranking[d] : rankingMax);
+		}
+		return tabel;
+	}
+
+	/**
+	 * Opzoektabel voor de kleurvoorkeur, gendexeerd met kleur1 * 6 + kleur2.
+	 * Kleur 0 t/m 4 staat voor witvoorkeur -2 t/m 2; kleur 5 voor een
+	 * witvoorkeur buiten dat bereik, die weegt niet mee.
+	 */
+	public int[] kleurTabel() {
+		int breedte = AANTAL_KLEUREN + 1;
+		int[] tabel = new int[breedte * breedte];
+		for (int k1 = 0; k1 < AANTAL_KLEUREN; k1++) {
+			for (int k2 = 0; k2 < AANTAL_KLEUREN; k2++) {
+				tabel[k1 * breedte + k2] = factoren[2] * kleur[k1][k2];
+			}
+		}
+		return tabel;
+	}
+
+	/**
+	 * Opzoektabel voor doorschuiven in de gegeven serie, gendexeerd met het
+	 * aantal doorgeschoven spelers in het paar.
+	 */
+	public int[] doorschuifTabel(int serie) {
+		int[] tabel = new int[3];
+		if (serie >= 0 && serie < doorschuiven.length) {
+			for (int d = 0; d < 3; d++) {
+				tabel[d] = factoren[3] * doorschuiven[serie][d];
+			}
+		}
+		return tabel;
+	}
+
+	public int[] getTegenstander() {
+		return tegenstander;
+	}
+
+	public void setTegenstander(int[] tegenstander) {
+		this.tegenstander = tegenstander;
+	}
+
+	public int[] getRanking() {
+		return ranking;
+	}
+
+	public void setRanking(int[] ranking) {
+		this.ranking = ranking;
+	}
+
+	public int getRankingMax() {
+		return rankingMax;
+	}
+
+	public void setRankingMax(int rankingMax) {
+		this.rankingMax = rankingMax;
+	}
+
+	public int[][] getKleur() {
+		return kleur;
+	}
+
+	public void setKleur(int[][] kleur) {
+		this.kleur = kleur;
+	}
+
+	public int[][] getDoorschuiven() {
+		return doorschuiven;
+	}
+
+	public void setDoorschuiven(int[][] doorschuiven) {
+		this.doorschuiven = doorschuiven;
+	}
+
+	public int[] getFactoren() {
+		return factoren;
+	}
+
+	/**
+	 * @param factoren
+	 *            mf1 t/m mf4: tegenstanders, ranking, kleur en doorschuiven
+	 */
+	public void setFactoren(int[] factoren) {
+		this.factoren = factoren;
+	}
+
+	public int getHerhaling() {
+		return herhaling;
+	}
+
+	public void setHerhaling(int herhaling) {
+		this.herhaling = herhaling;
+	}
+
+	public int getHistorieDiepte() {
+		return historieDiepte;
+	}
+
+	public void setHistorieDiepte(int historieDiepte) {
+		this.historieDiepte = historieDiepte;
+	}
+}
@@ -13,23 +13,37 @@
  * Problemen in deze code:
  * - TODO Bij oneven aantal spelers in de hoogste groep wordt er een volledig trio ingepland -> Handmatig aanpassen   
  * - TODO Afmelden van speler die is doorgeschoven, werkt nog niet. -> Workaround: Delete in afwezigheidstabel
- * - TODO Parametriseren van Fuzzy waarden
  */
 package nl.detoren.ijc.ui.control;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nl.detoren.ijc.data.groepen.Groep;
 import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.groepen.Historie;
 import nl.detoren.ijc.data.groepen.Speler;
 import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
 import nl.detoren.ijc.data.wedstrijden.Serie;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+import nl.detoren.ijc.ui.util.BandPairingEngine;
+import nl.detoren.ijc.ui.util.BlossomPairingEngine;
+import nl.detoren.ijc.ui.util.Diagnose;
+import nl.detoren.ijc.ui.util.Metingen;
+import nl.detoren.ijc.ui.util.PairingEngine;
 import nl.detoren.ijc.ui.util.Utils;
-import nl.detoren.ijc.ui.util.minimizetriagonal;
 
 /**
  * Deelt de groepen in op basis van aanwezigheid en methode. Mogelijke methoden
@@ -44,8 +58,110 @@ public class GroepenIndeler {
 	public static final int DOORSCHUIVEN = 1;
 	public static final int AANTALDOORSCHUIVEN = 4;
 
+	public static final int MINIMALISATIE_STANDAARD = 0;
+	public static final int MINIMALISATIE_INCREMENTEEL = 1;
+	public static final int MINIMALISATIE_MATCHING = 2;
+
 	private final static Logger logger = Logger.getLogger(GroepenIndeler.class.getName());
 
+	private int minimalisatieMethode = MINIMALISATIE_INCREMENTEEL;
+
+	private FuzzyParameters fuzzyParameters = new FuzzyParameters();
+
+	private long planTijdslimiet = SeriePlanner.STANDAARD_TIJDSLIMIET;
+
+	private Historie historie = null;
+
+	private volatile boolean afgebroken = false;
+
+	/**
+	 * Breek een lopende maakWedstrijdschema af. Groepen waaraan nog niet is
+	 * begonnen, worden niet meer ingedeeld; maakWedstrijdschema gooit dan een
+	 * CancellationException.
+	 */
+	public void breekAf() {
+		afgebroken = true;
+	}
+
+	public boolean isAfgebroken() {
+		return afgebroken;
+	}
+
+	public Historie getHistorie() {
+		return historie;
+	}
+
+	/**
+	 * Stel de historie van de spelers in, voor het belasten van herhaalde
+	 * partijen in de fuzzy matrix.
+	 *
+	 * @param historie
+	 *            Historie, of null om alleen de tegenstanderslijst te gebruiken
+	 */
+	public void setHistorie(Historie historie) {
+		this.historie = historie;
+	}
+
+	public long getPlanTijdslimiet() {
+		return planTijdslimiet;
+	}
+
+	/**
+	 * Stel de maximale rekentijd in voor het inplannen van een serie met
+	 * maakSerie.
+	 *
+	 * @param tijdslimiet
+	 *            Tijdslimiet in milliseconden
+	 */
+	public void setPlanTijdslimiet(long tijdslimiet) {
+		this.planTijdslimiet = tijdslimiet;
+	}
+
+	public FuzzyParameters getFuzzyParameters() {
+		return fuzzyParameters;
+	}
+
+	/**
+	 * Stel de wegingen in voor de fuzzy matrix.
+	 *
+	 * @param parameters
+	 *            Wegingen, bijvoorbeeld gelezen uit fuzzy.json
+	 */
+	public void setFuzzyParameters(FuzzyParameters parameters) {
+		this.fuzzyParameters = parameters;
+	}
+
+	public int getMinimalisatieMethode() {
+		return minimalisatieMethode;
+	}
+
+	/**
+	 * Kies de methode waarmee de fuzzy matrix wordt geminimaliseerd.
+	 *
+	 * @param methode
+	 *            MINIMALISATIE_STANDAARD voor minimizetriagonal,
+	 *            MINIMALISATIE_INCREMENTEEL voor IncrementalMinimizer,
+	 *            MINIMALISATIE_MATCHING voor de exacte BlossomPairingEngine
+	 */
+	public void setMinimalisatieMethode(int methode) {
+		this.minimalisatieMethode = methode;
+	}
+
+	/**
+	 * Maak een nieuwe PairingEngine volgens de gekozen minimalisatiemethode.
+	 * Iedere groep krijgt een eigen instantie.
+	 */
+	private PairingEngine maakPairingEngine(int maxIteraties) {
+		switch (minimalisatieMethode) {
+		case MINIMALISATIE_MATCHING:
+			return new BlossomPairingEngine();
+		case MINIMALISATIE_STANDAARD:
+			return new BandPairingEngine(false, maxIteraties);
+		default:
+			return new BandPairingEngine(true, maxIteraties);
+		}
+	}
+
 	/**
 	 * Maak de groepsindeling voordat de wedstrijden worden bepaald. Spelers die
 	 * afwezig zijn, worden uit de speellijst verwijderd. Indien van toepassing,
@@ -60,6 +176,7 @@ public class GroepenIndeler {
 	 */
 	public Groepen maakGroepsindeling(Groepen aanwezigheidsGroepen) {
 		logger.log(Level.INFO, "Maken groepsindeling voor alle groepen");
+		long start = System.nanoTime();
 		// Er wordt een nieuwe groepen gemaakt, welke stapsgewijs gevuld gaat
 		// worden.
 		int ronde = aanwezigheidsGroepen.getRonde();
@@ -76,7 +193,9 @@ public class GroepenIndeler {
 			wedstrijdGroep.setNiveau(groep.getNiveau());
 			for (Speler speler : groep.getSpelers()) {
 				if (speler.isAanwezig()) {
-					logger.log(Level.FINE, "Toevoegen aan wedstrijdgroep van speler" + speler.getNaam());
+					if (logger.isLoggable(Level.FINE)) {
+						logger.log(Level.FINE, "Toevoegen aan wedstrijdgroep van speler" + speler.getNaam());
+					}
 					wedstrijdGroep.addSpeler(new Speler(speler));
 				}
 			}
@@ -92,6 +211,7 @@ public class GroepenIndeler {
 		// en dubbele nummers in een groep te voorkomen
 		logger.log(Level.INFO, "Hernummeren van spelers");
 		wedstrijdGroepen.hernummerGroepen();
+		Metingen.meetEnSchrijf(Metingen.Stap.GROEPSINDELING, start, "periode=" + periode + ";ronde=" + ronde);
 		return wedstrijdGroepen;
 	}
 
@@ -133,15 +253,20 @@ public class GroepenIndeler {
 		nieuweWedstrijdGroep.setNiveau(aanwezigheidsGroep.getNiveau());
 		for (Speler speler : aanwezigheidsGroep.getSpelers()) {
 			if (speler.isAanwezig() && !groepBevat(doorgeschoven, speler)) {
-				logger.log(Level.FINE, "Toevoegen aan wedstrijdgroep van speler" + speler.getNaam());
+				if (logger.isLoggable(Level.FINE)) {
+					logger.log(Level.FINE, "Toevoegen aan wedstrijdgroep van speler" + speler.getNaam());
+				}
 				nieuweWedstrijdGroep.addSpeler(new Speler(speler));
 			}
 		}
 		// Kopieer doorgescheven spelers uit oude lijst
 		for (Speler speler : origineleWedstrijdGroep.getSpelers()) {
 			if (speler.getGroep() != origineleWedstrijdGroep.getNiveau()) {
-				logger.log(Level.FINE, "Toevoegen aan wedstrijdgroep van doorgeschoven speler" + speler.getNaam());
-				nieuweWedstrijdGroep.addSpeler(speler);
+				if (logger.isLoggable(Level.FINE)) {
+					logger.log(Level.FINE, "Toevoegen aan wedstrijdgroep van doorgeschoven speler" + speler.getNaam());
+				}
+				// Kopie, want renumber wijzigt het ID
+				nieuweWedstrijdGroep.addSpeler(new Speler(speler));
 			}
 		}
 		logger.log(Level.INFO, "Aantal spelers in wedstrijdgroep: " + nieuweWedstrijdGroep.getAantalSpelers());
@@ -151,7 +276,9 @@ public class GroepenIndeler {
 	}
 
 	public boolean groepBevat(ArrayList<Speler> doorgeschoven, Speler speler) {
-		logger.log(Level.INFO, "Speler : " + speler + ", in lijst met grootte " + doorgeschoven.size());
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Speler : " + speler + ", in lijst met grootte " + doorgeschoven.size());
+		}
 		for (Speler s : doorgeschoven) {
 			if (s.gelijkAan(speler))
 				return true;
@@ -176,33 +303,35 @@ public class GroepenIndeler {
 		for (int i = 0; i < groepen.size() - 1; ++i) {
 			logger.log(Level.FINE,
 					"Doorschuiven van groep " + groepen.get(i).getNaam() + " naar " + groepen.get(i).getNaam());
-			ArrayList<Speler> naarGroep = groepen.get(i).getSpelers();
-			ArrayList<Speler> vanGroep = groepen.get(i + 1).getSpelers();
+			Groep naarGroep = groepen.get(i);
+			Groep vanGroep = groepen.get(i + 1);
 			for (int j = 1; j <= aantal; ++j) {
-				Speler s = groepen.get(i + 1).getSpelerByID(j);
-				logger.log(Level.FINE, "Speler : " + (s != null ? s.getNaam() : "null"));
+				Speler s = vanGroep.getSpelerByID(j);
+				if (logger.isLoggable(Level.FINE)) {
+					logger.log(Level.FINE, "Speler : " + (s != null ? s.getNaam() : "null"));
+				}
 				if ((s != null) && s.isAanwezig()) {
 					if ((j == aantal) && (aantal == 1)) {
 						// Alleen doorschuiven als speler 1 niet meer ingehaald
 						// kan worden
-						Speler s2 = groepen.get(i + 1).getSpelerByID(j);
+						Speler s2 = vanGroep.getSpelerByID(j);
 						if (s.getPunten() > (s2.getPunten() + 5)) {
 							logger.log(Level.FINE, "Speler doorgeschoven, niet meer in te halen ");
-							naarGroep.add(new Speler(s));
-							vanGroep.remove(s);
+							naarGroep.addSpeler(new Speler(s));
+							vanGroep.removeSpeler(s);
 
 						}
 					} else if (j == aantal) {
-						if (naarGroep.size() % 2 != 0) {
+						if (naarGroep.getAantalSpelers() % 2 != 0) {
 							logger.log(Level.FINE,
 									"Speler doorgeschoven, laatste doorschuiver maar door om even aantal ");
-							naarGroep.add(new Speler(s));
-							vanGroep.remove(s);
+							naarGroep.addSpeler(new Speler(s));
+							vanGroep.removeSpeler(s);
 						}
 					} else {
 						logger.log(Level.FINE, "Speler doorgeschoven, niet laatste dus altijd");
-						naarGroep.add(new Speler(s));
-						vanGroep.remove(s);
+						naarGroep.addSpeler(new Speler(s));
+						vanGroep.removeSpeler(s);
 
 					}
 				}
@@ -251,22 +380,23 @@ public class GroepenIndeler {
 	 */
 	public int bepaalMinimaalVerschil(Groep groep, int periode, int ronde, int serie) {
 		int aantal = groep.getSpelers().size();
-		logger.log(Level.INFO, "Periode " + periode + " ronde " + ronde + " serie " + serie);
-		logger.log(Level.INFO, "groep " + groep.getNaam() + " met grootte " + aantal);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Periode " + periode + " ronde " + ronde + " serie " + serie);
+			logger.log(Level.FINE, "groep " + groep.getNaam() + " met grootte " + aantal);
+		}
 		int resultaat;
 		if (groep.getNiveau() == Groep.KEIZERGROEP) {
 			resultaat = ((periode == 1) && (ronde == 1) && (serie == 1)) ? (aantal / 2) : 1;
-			logger.log(Level.FINE, "Keizergroep: Minimaal verschil = " + resultaat);
 		} else if (ronde > 1) {
-			logger.log(Level.FINE, "Ronde > 1: Minimaal verschil = " + serie);
 			resultaat = serie;
 		} else {
 			resultaat = (serie == 1 ? (aantal / 2) : (serie == 2 ? 1 : 2));
-			logger.log(Level.FINE, "Ronde = 1 : Minimaal verschil = " + resultaat);
 		}
-		String log = groep.getNaam() + "in periode " + periode + ", ronde " + ronde;
-		log += ", serie " + serie + "-> minimaal verschil = " + resultaat;
-		logger.log(Level.INFO, log);
+		if (logger.isLoggable(Level.FINE)) {
+			String log = groep.getNaam() + "in periode " + periode + ", ronde " + ronde;
+			log += ", serie " + serie + "-> minimaal verschil = " + resultaat;
+			logger.log(Level.FINE, log);
+		}
 		return resultaat;
 	}
 
@@ -283,20 +413,20 @@ public class GroepenIndeler {
 	 * @return
 	 */
 	public int bepaalAantalSeries(int groep, int periode, int ronde) {
-		logger.log(Level.INFO, "Vaststellen aantal te spelen series");
+		logger.log(Level.FINE, "Vaststellen aantal te spelen series");
 		if (groep == Groep.KEIZERGROEP) {
 			if ((periode == 1) && (ronde == 1)) {
-				logger.log(Level.INFO, "Keizergroep, periode 1 en ronde 1. # series = 2");
+				logger.log(Level.FINE, "Keizergroep, periode 1 en ronde 1. # series = 2");
 				return 2;
 			}
-			logger.log(Level.INFO, "Keizergroep, niet (periode 1 en ronde 1). # series = 1");
+			logger.log(Level.FINE, "Keizergroep, niet (periode 1 en ronde 1). # series = 1");
 			return 1;
 		}
 		if ((periode == 1) && (ronde == 1)) {
-			logger.log(Level.INFO, "Niet Keizergroep, periode 1 en ronde 1. # series = 3");
+			logger.log(Level.FINE, "Niet Keizergroep, periode 1 en ronde 1. # series = 3");
 			return 3;
 		}
-		logger.log(Level.INFO, "Niet Keizergroep, niet (periode 1 en ronde 1). # series = 2");
+		logger.log(Level.FINE, "Niet Keizergroep, niet (periode 1 en ronde 1). # series = 2");
 		return 2;
 	}
 
@@ -309,26 +439,63 @@ public class GroepenIndeler {
 	 * @return
 	 */
 	public Wedstrijden maakWedstrijdschema(Groepen groepen) {
-		int periode = groepen.getPeriode();
-		int ronde = groepen.getRonde();
+		final int periode = groepen.getPeriode();
+		final int ronde = groepen.getRonde();
 		logger.log(Level.INFO, "Maken wedstrijden voor periode " + periode + " ronde " + ronde);
+		long start = System.nanoTime();
 		Wedstrijden wedstrijden = new Wedstrijden();
-		System.out.println("--------------------------------------------------------------");
-		for (Groep groep : groepen.getGroepen()) {
-			System.out.println(groep.toPrintableString());
+		if (Diagnose.isTrace()) {
+			Diagnose.trace("--------------------------------------------------------------");
+			for (Groep groep : groepen.getGroepen()) {
+				Diagnose.trace(groep.toPrintableString());
+			}
+			Diagnose.trace("-------------------------------------------------------------");
 		}
-		System.out.println("-------------------------------------------------------------");
-		for (Groep groepOrg : groepen.getGroepen()) {
-			logger.log(Level.INFO, "Maken wedstrijden voor groep " + groepOrg.getNaam());
-			Groepswedstrijden gws = maakWedstrijdenVoorGroep(periode, ronde, groepOrg);
+		for (Groepswedstrijden gws : planGroepen(periode, ronde, groepen.getGroepen())) {
 			wedstrijden.addGroepswedstrijden(gws);
 			logger.log(Level.INFO, "Aantal wedstrijden " + gws.getWedstrijden().size());
 		}
 		wedstrijden.setPeriode(periode);
 		wedstrijden.setRonde(ronde);
+		Metingen.meetEnSchrijf(Metingen.Stap.WEDSTRIJDSCHEMA, start,
+				"periode=" + periode + ";ronde=" + ronde + ";groepen=alle");
 		return wedstrijden;
 	}
 
+	/**
+	 * Bepaal de wedstrijden voor de opgegeven groepen. Groepen zijn
+	 * onafhankelijk van elkaar en worden parallel ingedeeld. Het resultaat is
+	 * in dezelfde volgorde als de groepen.
+	 */
+	private List<Groepswedstrijden> planGroepen(final int periode, final int ronde, List<Groep> groepen) {
+		ArrayList<ForkJoinTask<Groepswedstrijden>> taken = new ArrayList<>();
+		for (final Groep groepOrg : groepen) {
+			if (logger.isLoggable(Level.FINE)) {
+				logger.log(Level.FINE, "Maken wedstrijden voor groep " + groepOrg.getNaam());
+			}
+			taken.add(ForkJoinPool.commonPool().submit(new Callable<Groepswedstrijden>() {
+				@Override
+				public Groepswedstrijden call() {
+					if (afgebroken) {
+						throw new CancellationException("Indelen afgebroken");
+					}
+					return maakWedstrijdenVoorGroep(periode, ronde, groepOrg);
+				}
+			}));
+		}
+		ArrayList<Groepswedstrijden> resultaat = new ArrayList<>(taken.size());
+		for (ForkJoinTask<Groepswedstrijden> taak : taken) {
+			if (afgebroken) {
+				for (ForkJoinTask<Groepswedstrijden> t : taken) {
+					t.cancel(false);
+				}
+				throw new CancellationException("Indelen afgebroken");
+			}
+			resultaat.add(taak.join());
+		}
+		return resultaat;
+	}
+
 	/**
 	 * Update wedstrijden voor n groep. Wedstrijden voor alle andere groepen
 	 * blijven ongewijzigd.
@@ -343,24 +510,89 @@ public class GroepenIndeler {
 	 *         groep
 	 */
 	public Wedstrijden updateWedstrijdschema(Wedstrijden wedstrijden, Groepen wedstrijdgroepen, int groepID) {
+		return updateWedstrijdschema(wedstrijden, wedstrijdgroepen, Collections.singleton(groepID));
+	}
+
+	/**
+	 * Update wedstrijden voor een aantal groepen. Wedstrijden voor alle andere
+	 * groepen blijven ongewijzigd. De opgegeven groepen worden parallel
+	 * ingedeeld, net als bij maakWedstrijdschema.
+	 * 
+	 * @param wedstrijden
+	 *            Huidige wedstrijden voor alle groepen
+	 * @param wedstrijdgroepen
+	 *            Huidige wedstrijdgroepen voor all groepen
+	 * @param groepIDs
+	 *            ID's van de groepen om opnieuw te bepalen
+	 * @return update van wedstrijden met nieuwe wedstrijden voor de opgegeven
+	 *         groepen
+	 */
+	public Wedstrijden updateWedstrijdschema(Wedstrijden wedstrijden, Groepen wedstrijdgroepen,
+			Collection<Integer> groepIDs) {
 		int periode = wedstrijdgroepen.getPeriode();
 		int ronde = wedstrijdgroepen.getRonde();
-		logger.log(Level.INFO, "Update wedstrijden voor groep " + groepID + " periode " + periode + " ronde " + ronde);
+		logger.log(Level.INFO, "Update wedstrijden voor groepen " + groepIDs + " periode " + periode + " ronde " + ronde);
+		long start = System.nanoTime();
+		ArrayList<Groep> teBepalen = new ArrayList<>();
+		for (Groepswedstrijden gw : wedstrijden.getGroepswedstrijden()) {
+			if (groepIDs.contains(gw.getNiveau())) {
+				teBepalen.add(wedstrijdgroepen.getGroepById(gw.getNiveau()));
+			}
+		}
+		List<Groepswedstrijden> nieuw = planGroepen(periode, ronde, teBepalen);
 		Wedstrijden wedstrijdenNieuw = new Wedstrijden();
 		wedstrijdenNieuw.setPeriode(periode);
 		wedstrijdenNieuw.setRonde(ronde);
+		int i = 0;
 		for (Groepswedstrijden gw : wedstrijden.getGroepswedstrijden()) {
-			if (gw.getNiveau() == groepID) {
-				Groep wsGroep = wedstrijdgroepen.getGroepById(groepID);
-				Groepswedstrijden nieuw = maakWedstrijdenVoorGroep(periode, ronde, wsGroep);
-				wedstrijdenNieuw.addGroepswedstrijden(nieuw);
+			if (groepIDs.contains(gw.getNiveau())) {
+				wedstrijdenNieuw.addGroepswedstrijden(nieuw.get(i++));
 			} else {
 				wedstrijdenNieuw.addGroepswedstrijden(gw);
 			}
 		}
+		Metingen.meetEnSchrijf(Metingen.Stap.WEDSTRIJDSCHEMA, start,
+				"periode=" + periode + ";ronde=" + ronde + ";groepen=" + groepIDs);
 		return wedstrijdenNieuw;
 	}
 
+	/**
+	 * Bepaal welke wedstrijdgroepen verschillen tussen twee indelingen. Een
+	 * groep is gewijzigd als er andere spelers in zitten of als de volgorde
+	 * anders is. Zo worden ook groepen gevonden die alleen door het
+	 * doorschuiven zijn veranderd.
+	 * 
+	 * @param oud
+	 *            Vorige wedstrijdgroepen
+	 * @param nieuw
+	 *            Nieuwe wedstrijdgroepen
+	 * @return niveaus van de gewijzigde groepen
+	 */
+	public Set<Integer> bepaalGewijzigdeGroepen(Groepen oud, Groepen nieuw) {
+		Set<Integer> gewijzigd = new TreeSet<>();
+		for (Groep groep : nieuw.getGroepen()) {
+			Groep vorige = oud.getGroepById(groep.getNiveau());
+			if ((vorige == null) || !zelfdeSpelers(vorige, groep)) {
+				gewijzigd.add(groep.getNiveau());
+			}
+		}
+		return gewijzigd;
+	}
+
+	private static boolean zelfdeSpelers(Groep a, Groep b) {
+		if (a.getAantalSpelers() != b.getAantalSpelers()) {
+			return false;
+		}
+		for (int i = 0; i < a.getAantalSpelers(); ++i) {
+			Speler s = a.getSpelers().get(i);
+			Speler t = b.getSpelers().get(i);
+			if (!s.gelijkAan(t) || (s.getId() != t.getId())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Bepaal voor een groep de te spelen wedstrijden
 	 * 
@@ -370,11 +602,14 @@ public class GroepenIndeler {
 	 * @return
 	 */
 	private Groepswedstrijden maakWedstrijdenVoorGroep(int periode, int ronde, Groep wedstrijdgroep) {
+		long start = System.nanoTime();
 		// Maak clone van de Groep om ongewenste updates te voorkomen
 		Groep groep = new Groep();
 		groep.setNiveau(wedstrijdgroep.getNiveau());
 		for (Speler s : wedstrijdgroep.getSpelers()) {
-			logger.log(Level.FINE, "Toevoegen van speler " + s.getNaam());
+			if (logger.isLoggable(Level.FINE)) {
+				logger.log(Level.FINE, "Toevoegen van speler " + s.getNaam());
+			}
 			groep.addSpeler(new Speler(s));
 		}
 		if ((groep.getNiveau() == Groep.KEIZERGROEP) && (ronde < 7) && (ronde > 1)) {
@@ -382,13 +617,17 @@ public class GroepenIndeler {
 			// 2,3,4,5 of 6
 			groep.sorteerRating();
 		}
-		logger.log(Level.INFO, "Bepalen wedstrijden voor groep " + wedstrijdgroep.getNaam() + " periode " + periode
-				+ " ronde " + ronde);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Bepalen wedstrijden voor groep " + wedstrijdgroep.getNaam() + " periode "
+					+ periode + " ronde " + ronde);
+		}
 		// Maak wedstrijden
 		Groepswedstrijden gws = new Groepswedstrijden();
 		gws.setNiveau(groep.getNiveau());
 		int speelrondes = bepaalAantalSeries(groep.getNiveau(), periode, ronde);
-		logger.log(Level.INFO, "Aantal speelrondes " + speelrondes);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Aantal speelrondes " + speelrondes);
+		}
 
 		// Trucje voor 5 speler in een wedstrijdgroep:
 		// ALS 5 spelers in 2 ronden, dupliceer spelers naar 10 en plan
@@ -407,12 +646,21 @@ public class GroepenIndeler {
 		int trioloc = 0;
 		int[] trio = {0,1,2};
 		int indexrow = 1;
-		int order[] = new int[groep.getAantalSpelers()];
+		// Kwaliteit van de indeling, voor Metingen
+		int bandsom = 0;
+		int herhalingen = 0;
+		int kleurOnbalans = 0;
+		int iteraties = 0;
+		int swaps = 0;
+		int aantalWedstrijden = 0;
 		for (int i = 0; i < speelrondes; i++) {
-			System.out.print(
-					"Creating serie " + Integer.toString(i + 1) + " voor groep " + groep.getNaam() + "\n");
+			if (Diagnose.isTrace()) {
+				Diagnose.trace("Creating serie %d voor groep %s", i + 1, groep.getNaam());
+			}
+			long stapStart = System.nanoTime();
 			int[][] matrix = MaakFuzzyMatrix(groep, i);
-			Utils.printMatrix(matrix);
+			Metingen.meet(Metingen.Stap.FUZZYMATRIX, stapStart);
+			Diagnose.traceMatrix(null, matrix);
 			if (i > 0) {
 				if (!(trioloc == 0)) {
 					// Stap 2 Trio spelers verwijderen uit matrix
@@ -422,8 +670,7 @@ public class GroepenIndeler {
 					// juiste indices
 					int[][] matrix2 = Utils.removerowandcolumnfrom2D(matrix, trio, indexrow);
 					//
-					// System.out.print("Reduced Matrix\n");
-					 Utils.printMatrix(matrix2);
+					Diagnose.traceMatrix("Reduced Matrix", matrix2);
 					gws.setFuzzyMatrix(matrix2);
 				} else {
 					gws.setFuzzyMatrix(matrix);
@@ -435,24 +682,34 @@ public class GroepenIndeler {
 			int[] order2 = new int[fmatrix.length];
 			int ordertest[] = new int[groep.getAantalSpelers()];
 
-			logger.log(Level.INFO, "FuzzyMatrix created.");
-			System.out.print("Trigonalization of Matrix\n");
-			minimizetriagonal triagonal = new minimizetriagonal();
-			triagonal.setA(gws.getFuzzyMatrix());
-			triagonal.setOrder(order);
-			triagonal.setIterations(groep.getAantalSpelers());
-			triagonal.Iterminimizetriagonal();
-			order = minimizetriagonal.getOrder();
-			int[][] tri = minimizetriagonal.getA();
-			Utils.printMatrix(tri);
-			if (groep.getNaam().equals("Pionnengroep")) {
-				groep.SpelersNamenopvolgorde(tri,indexrow);
-				//groep.SpelersNamenopvolgorde(ordertest);
+			logger.log(Level.FINE, "FuzzyMatrix created.");
+			PairingEngine engine = maakPairingEngine(groep.getAantalSpelers());
+			stapStart = System.nanoTime();
+			int[][] tri = engine.optimaliseer(gws.getFuzzyMatrix(), indexrow);
+			Metingen.meet(Metingen.Stap.MINIMALISATIE, stapStart);
+			bandsom += Utils.triagonalsum(tri, indexrow);
+			iteraties += engine.getIteraties();
+			swaps += engine.getSwaps();
+			gws.setFuzzyMatrix(tri);
+			Diagnose.traceMatrix("Trigonalization of Matrix", tri);
+			if (Diagnose.isTrace() && groep.getNaam().equals("Pionnengroep")) {
+				// Zelfde uitvoer als groep.SpelersNamenopvolgorde(tri, indexrow)
+				for (int p = 0; p < tri.length; p++) {
+					Speler sp = groep.getSpelers().get(tri[p][indexrow - 1] - 1);
+					Diagnose.trace("Speler ID " + sp.getId() + " met naam " + sp.getNaam() + " staat op plaats " + p + ".");
+				}
 			}
-			System.out.print("Deze groep " + groep.getNaam() + " heeft " + tri.length + " spelers.\n");
-			trioloc = minimizetriagonal.gettrio(tri,1);
+			final Groep traceGroep = groep;
+			final int traceAantal = tri.length;
+			Diagnose.trace(new Supplier<String>() {
+				@Override
+				public String get() {
+					return "Deze groep " + traceGroep.getNaam() + " heeft " + traceAantal + " spelers.";
+				}
+			});
+			trioloc = engine.getTrio();
 			if (i==0) {
-				System.out.print("Geen trio in deze groep.\n");
+				Diagnose.trace("Geen trio in deze groep.");
 			}
 			if (!(trioloc == 0)) {
 				trio[0]=tri[trioloc-1][0];
@@ -473,9 +730,11 @@ public class GroepenIndeler {
 					Wedstrijd w = new Wedstrijd(wedstrijdnr, s1, s2, 0);
 					s.addWedstrijd(w, true);
 					wedstrijdnr++;
-					System.out.printf("Wedstrijd tussen " + groep.getSpelerByID(tri[k][0]).getNaam()
-							+ " (wit) met index " + tri[k][0] + " en " + groep.getSpelerByID(tri[k + 1][0]).getNaam() + " (zwart)"
-									+ " met index " + tri[k+1][0] + "\n");
+					if (Diagnose.isTrace()) {
+						Diagnose.trace("Wedstrijd tussen " + groep.getSpelerByID(tri[k][0]).getNaam()
+								+ " (wit) met index " + tri[k][0] + " en " + groep.getSpelerByID(tri[k + 1][0]).getNaam() + " (zwart)"
+										+ " met index " + tri[k+1][0]);
+					}
 				}
 			} else {
 				for (int k = 0; k < trioloc - 2; k += 2) {
@@ -486,9 +745,11 @@ public class GroepenIndeler {
 					Wedstrijd w = new Wedstrijd(wedstrijdnr, s1, s2, 0);
 					s.addWedstrijd(w, true);
 					wedstrijdnr++;
-					System.out.printf("Wedstrijd tussen " + groep.getSpelerByID(tri[k][0]).getNaam()
-							+ " (wit) met index " + tri[k][0] + " en " + groep.getSpelerByID(tri[k + 1][0]).getNaam() + " (zwart)"
-									+ " met index " + tri[k+1][0] +  " \n");
+					if (Diagnose.isTrace()) {
+						Diagnose.trace("Wedstrijd tussen " + groep.getSpelerByID(tri[k][0]).getNaam()
+								+ " (wit) met index " + tri[k][0] + " en " + groep.getSpelerByID(tri[k + 1][0]).getNaam() + " (zwart)"
+										+ " met index " + tri[k+1][0]);
+					}
 				}
 				for (int k = trioloc + 2; k <= fmatrix.length - 1; k += 2) {
 					Speler s1 = groep.getSpelerByID(tri[k][0]); // Speler
@@ -497,9 +758,11 @@ public class GroepenIndeler {
 																				// zwart
 					Wedstrijd w = new Wedstrijd(wedstrijdnr, s1, s2, 0);
 					s.addWedstrijd(w, true);
-					System.out.printf("Wedstrijd tussen " + groep.getSpelerByID(tri[k][0]).getNaam()
-							+ " (wit) met index " +  tri[k][0] +  " en " + groep.getSpelerByID(tri[k + 1][0]).getNaam() + " (zwart)"
-									+ " met index " + tri[k+1][0] + "\n");
+					if (Diagnose.isTrace()) {
+						Diagnose.trace("Wedstrijd tussen " + groep.getSpelerByID(tri[k][0]).getNaam()
+								+ " (wit) met index " +  tri[k][0] +  " en " + groep.getSpelerByID(tri[k + 1][0]).getNaam() + " (zwart)"
+										+ " met index " + tri[k+1][0]);
+					}
 					wedstrijdnr++;
 				}
 				// trio
@@ -507,33 +770,48 @@ public class GroepenIndeler {
 					gws.addTrioWedstrijd(new Wedstrijd(2 * (wedstrijdnr - 1) + 1,
 							groep.getSpelerByID(tri[trioloc - 1][0]),
 							groep.getSpelerByID(tri[trioloc][0]), 0));
-					System.out.printf("Wedstrijd uit trio tussen"
-							+ groep.getSpelerByID(tri[trioloc - 1][0]).getNaam() + " (wit) met index " + tri[i][0]
-									+ " en "	+ groep.getSpelerByID(tri[trioloc][0]).getNaam() + " (zwart) met index "
-									+ tri[i+1][0] + "\n");
+					if (Diagnose.isTrace()) {
+						Diagnose.trace("Wedstrijd uit trio tussen"
+								+ groep.getSpelerByID(tri[trioloc - 1][0]).getNaam() + " (wit) met index " + tri[i][0]
+										+ " en "	+ groep.getSpelerByID(tri[trioloc][0]).getNaam() + " (zwart) met index "
+										+ tri[i+1][0]);
+					}
 					gws.addTrioWedstrijd(
 							new Wedstrijd(2 * (wedstrijdnr - 1) + 2, groep.getSpelerByID(tri[trioloc][0]),
 									groep.getSpelerByID(tri[trioloc + 1][0]), 0));
-					System.out.printf("Wedstrijd uit trio tussen"
-							+ groep.getSpelerByID(tri[trioloc][0]).getNaam() + " (wit) met index " + tri[i][0]
-									+ " en " + groep.getSpelerByID(tri[trioloc + 1][0]).getNaam() + " (zwart) met index "
-									+  tri[i+1][0] + "\n");
+					if (Diagnose.isTrace()) {
+						Diagnose.trace("Wedstrijd uit trio tussen"
+								+ groep.getSpelerByID(tri[trioloc][0]).getNaam() + " (wit) met index " + tri[i][0]
+										+ " en " + groep.getSpelerByID(tri[trioloc + 1][0]).getNaam() + " (zwart) met index "
+										+  tri[i+1][0]);
+					}
 					gws.addTrioWedstrijd(new Wedstrijd(2 * (wedstrijdnr - 1) + 3,
 							groep.getSpelerByID(tri[trioloc - 1][0]),
 							groep.getSpelerByID(tri[trioloc + 1][0]), 0));
-					System.out.printf("Wedstrijd uit trio tussen"
-							+ groep.getSpelerByID(tri[trioloc + 1][0]).getNaam() + " (wit) met index " + tri[i][0]
-									+ " en " + groep.getSpelerByID(tri[trioloc - 1][0]).getNaam() + " (zwart) met index"
-									+ tri[i+1][0] + "\n");
+					if (Diagnose.isTrace()) {
+						Diagnose.trace("Wedstrijd uit trio tussen"
+								+ groep.getSpelerByID(tri[trioloc + 1][0]).getNaam() + " (wit) met index " + tri[i][0]
+										+ " en " + groep.getSpelerByID(tri[trioloc - 1][0]).getNaam() + " (zwart) met index"
+										+ tri[i+1][0]);
+					}
 				}
 				// Einde trio
 			}
 			if (s != null) {
+				// Herhalingen tellen voordat de tegenstanders worden bijgewerkt
+				herhalingen += telHerhalingen(s.getWedstrijden());
+				kleurOnbalans += telKleurOnbalans(s.getWedstrijden());
+				aantalWedstrijden += s.getWedstrijden().size();
+				if (i == 0) {
+					herhalingen += telHerhalingen(gws.getTriowedstrijden());
+					kleurOnbalans += telKleurOnbalans(gws.getTriowedstrijden());
+					aantalWedstrijden += gws.getTriowedstrijden().size();
+				}
 				s.renumber(i); // Hernummer wedstrijden.
 				gws.addSerie(s);
-				logger.log(Level.INFO, "Voeg Serie toe");
+				logger.log(Level.FINE, "Voeg Serie toe");
 				groep = updateSpelers(groep, s);
-				logger.log(Level.INFO, "Update Spelers");
+				logger.log(Level.FINE, "Update Spelers");
 				// update gegevens tegenstanders en witvoorkeur
 			}
 		}
@@ -581,91 +859,54 @@ public class GroepenIndeler {
 		// // update gegevens tegenstanders en witvoorkeur
 		// }
 		// }
+		long duur = Metingen.meet(Metingen.Stap.GROEP, start);
+		Metingen.legGroepVast(Groep.geefNaam(groep.getNiveau()), duur, bandsom, herhalingen, kleurOnbalans, iteraties,
+				swaps, aantalWedstrijden);
 		return gws;
 	}
 
-	public Serie maakSerie(Groep groep, boolean[] gepland, int aantalSpelers, int minverschil, int ignoreTgn,
-			int ronde) {
-		Serie serie = new Serie();
-		int mv = minverschil;
-		while (mv >= 0) {
-			Serie s = planSerie(serie, groep.getSpelers(), gepland, aantalSpelers, minverschil, ignoreTgn,
-					groep.getNiveau(), 1, ronde);
-			if (s != null) {
-				return s;
+	/**
+	 * Tel de wedstrijden tegen een tegenstander uit de laatste vier partijen
+	 */
+	private static int telHerhalingen(List<Wedstrijd> wedstrijden) {
+		int aantal = 0;
+		for (Wedstrijd w : wedstrijden) {
+			if (w.getWit().isGespeeldTegen(w.getZwart())) {
+				aantal++;
 			}
-			mv--;
 		}
-		return null;
+		return aantal;
 	}
 
-	private Serie planSerie(Serie serie, ArrayList<Speler> spelers, boolean[] gepland, int teplannen, int minverschil,
-			int ignoreTgn, int niveau, int diepte, int ronde) {
-		for (int i = 0; i < diepte; ++i) {
-			System.out.print("  ");
-		}
-		System.out.print("vanaf:" + eersteOngeplandeSpeler(gepland, 0) + "#" + teplannen + "mv:" + minverschil);
-		System.out.print(",itn:" + ignoreTgn + ",niv:" + niveau + "\n");
-
-		// Laatste ronde?
-		if (teplannen < 2) {
-			return new Serie();
-		}
-		// Eerst doorgeschoven spelers inplannen
-		// Maar deze speciale behandeling geldt alleen de eerste ronde
-		int doorgeschovenID = laatsteOngeplandeDoorgeschovenspeler(spelers, gepland, niveau);
-		if ((doorgeschovenID >= 0) && (ronde == 1)) {
-			int zoekId = doorgeschovenID - 1;
-			while (zoekId != -1) {
-				int partner = laatsteOngeplandeSpeler(gepland, zoekId);
-				if (partner == -1) {
-					return null;
-				}
-				Speler s1 = spelers.get(doorgeschovenID);
-				Speler s2 = spelers.get(partner);
-				if (!s1.isGespeeldTegen(s2, minverschil) && (s2.getGroep() != s1.getGroep())) {
-					gepland[doorgeschovenID] = true;
-					gepland[partner] = true;
-					Serie s = planSerie(serie, spelers, gepland, teplannen - 2, minverschil, ignoreTgn, niveau,
-							diepte + 1, ronde);
-					if (s != null) {
-						Wedstrijd w = new Wedstrijd(diepte, s1, s2, 0);
-						s.addWedstrijd(w, true);
-						return s;
-					}
-					gepland[doorgeschovenID] = false;
-					gepland[partner] = false;
-				}
-				zoekId = partner - 1;
+	/**
+	 * Tel de spelers die de kleur krijgen tegen hun voorkeur in: wit met een
+	 * voorkeur voor zwart of zwart met een voorkeur voor wit
+	 */
+	private static int telKleurOnbalans(List<Wedstrijd> wedstrijden) {
+		int aantal = 0;
+		for (Wedstrijd w : wedstrijden) {
+			if (w.getWit().getWitvoorkeur() < 0) {
+				aantal++;
 			}
-		} else {
-			// Inplannen 'gewone' speler
-			int plannenID = eersteOngeplandeSpeler(gepland, 0);
-			int zoekID = plannenID + 1;
-			while (zoekID < gepland.length) {
-				int partner = eersteOngeplandeSpeler(gepland, zoekID);
-				if (partner == -1) {
-					return null;
-				}
-				Speler s1 = spelers.get(plannenID);
-				Speler s2 = spelers.get(partner);
-				if (!s1.isGespeeldTegen(s2, ignoreTgn) && (s2.getId() - s1.getId() >= minverschil)) {
-					gepland[plannenID] = true;
-					gepland[partner] = true;
-					Serie s = planSerie(serie, spelers, gepland, teplannen - 2, minverschil, ignoreTgn, niveau,
-							diepte + 1, ronde);
-					if (s != null) {
-						Wedstrijd w = new Wedstrijd(s1.getId() * 100 + s2.getId(), s1, s2, 0);
-						s.addWedstrijd(w, true);
-						return s;
-					}
-					gepland[plannenID] = false;
-					gepland[partner] = false;
-				}
-				zoekID = partner + 1;
+			if (w.getZwart().getWitvoorkeur() > 0) {
+				aantal++;
 			}
 		}
-		return null;
+		return aantal;
+	}
+
+	/**
+	 * Plan een serie in met backtracking, zie SeriePlanner. Als er met
+	 * minverschil geen serie mogelijk is, wordt het verschil verlaagd. Als de
+	 * tijdslimiet verloopt, is het resultaat een gedeeltelijke serie.
+	 *
+	 * @return De serie, of null als er geen serie mogelijk is
+	 */
+	public Serie maakSerie(Groep groep, boolean[] gepland, int aantalSpelers, int minverschil, int ignoreTgn,
+			int ronde) {
+		SeriePlanner planner = new SeriePlanner(groep);
+		planner.setTijdslimiet(planTijdslimiet);
+		return planner.plan(gepland, aantalSpelers, minverschil, ignoreTgn, ronde);
 	}
 
 	/**
@@ -707,23 +948,6 @@ public class GroepenIndeler {
 		return -1;
 	}
 
-	/**
-	 * Vind eerste ongeplande speler zoekende vanaf onderen
-	 * 
-	 * @param spelers
-	 * @param gepland
-	 * @param niveau
-	 * @return
-	 */
-	private int laatsteOngeplandeDoorgeschovenspeler(ArrayList<Speler> spelers, boolean[] gepland, int niveau) {
-		for (int i = (gepland.length - 1); i > 0; --i) {
-			if (!gepland[i] && spelers.get(i).getGroep() != niveau) {
-				return i;
-			}
-		}
-		return -1;
-	}
-
 	public int[][] MaakFuzzyMatrix(Groep wedstrijdgroep, int serie) {
 		/**
 		 * FuzzyMatrix wordt gebruik voor het snel vaststellen van beste match
@@ -777,278 +1001,14 @@ public class GroepenIndeler {
 		 * 
 		 * Het is nog mogelijk de verhoudingen in zwaarte van de voorwaarden aan
 		 * te passen met de volgende parameters. mf1 mf2 mf3 mf4
+		 * 
+		 * De genoemde wegingen zijn de standaardwaarden. Zowel de wegingen als
+		 * mf1 t/m mf4 zijn in te stellen via FuzzyParameters (fuzzy.json).
+		 * De berekening zelf gebeurt in FuzzyKostenModel, in een enkele
+		 * doorloop over alle paren.
 		 */
-		int matrix1[][] = new int[wedstrijdgroep.getAantalSpelers()][wedstrijdgroep.getAantalSpelers()+1];
-		int matrix2[][] = new int[wedstrijdgroep.getAantalSpelers()][wedstrijdgroep.getAantalSpelers()+1];
-		int matrix3[][] = new int[wedstrijdgroep.getAantalSpelers()][wedstrijdgroep.getAantalSpelers()+1];
-		int matrix4[][] = new int[wedstrijdgroep.getAantalSpelers()][wedstrijdgroep.getAantalSpelers()+1];
-		int matrix[][] = new int[wedstrijdgroep.getAantalSpelers()][wedstrijdgroep.getAantalSpelers()+1];
-		double mf1 = 1;
-		double mf2 = 1;
-		double mf3 = 1;
-		double mf4 = 1;
-		int i, j, weging = 0;
-		int tegenstanders[] = new int[4];
-		// matrix1 : Niet tegen dezelfde tegenstander
-		System.out.print("Initializing Matrix1\n");
-		for (i = 1; i <= wedstrijdgroep.getAantalSpelers(); i++) {
-			matrix1[i-1][0] = wedstrijdgroep.getSpelerByID(i).getId();
-			for (j = 1; j <= wedstrijdgroep.getAantalSpelers(); j++) {
-				// logger.log(Level.INFO, "Speler 1 ID : " +
-				// wedstrijdgroep.getSpelerByID(i));
-				// logger.log(Level.INFO, "Speler 2 ID : " +
-				// wedstrijdgroep.getSpelerByID(j));
-				weging = 0;
-				if (i == j) {
-					weging = 0;
-				} else {
-					if (serie == 0) {
-						tegenstanders = wedstrijdgroep.getSpelerByID(i)
-								.getGespeeldTegen(wedstrijdgroep.getSpelerByID(j));
-					} else {
-						tegenstanders = wedstrijdgroep.getSpelerByID(i)
-								.getGespeeldTegen(wedstrijdgroep.getSpelerByID(j));
-					}
-					for (int k = 0; k < 4; k++) {
-						if (tegenstanders[k] == 1) {
-							weging += 140;
-							System.out.print(wedstrijdgroep.getSpelerByID(i).getNaam() + " heeft " + tegenstanders[k]
-									+ " ronden eerder al gespeeld tegen " + wedstrijdgroep.getSpelerByID(j).getNaam()
-									+ "\n");
-						}
-						if (tegenstanders[k] == 2) {
-							weging += 90;
-							System.out.print(wedstrijdgroep.getSpelerByID(i).getNaam() + " heeft " + tegenstanders[k]
-									+ " ronden eerder al gespeeld tegen " + wedstrijdgroep.getSpelerByID(j).getNaam()
-									+ "\n");
-						}
-						if ((tegenstanders[k] > 2) && (tegenstanders[k] < 5)) {
-							weging += 20;
-							System.out.print(wedstrijdgroep.getSpelerByID(i).getNaam() + " heeft " + tegenstanders[k]
-									+ " ronden eerder al gespeeld tegen " + wedstrijdgroep.getSpelerByID(j).getNaam()
-									+ "\n");
-						}
-					}
-				}
-				matrix1[i - 1][j] = weging;
-			}
-		}
-		//Utils.printMatrix(matrix1);
-		// matrix2 : Geen speler die een veel hogere of lagere ranking heeft.
-		System.out.print("Initializing Matrix2\n");
-		for (i = 1; i <= wedstrijdgroep.getAantalSpelers(); i++) {
-			matrix2[i-1][0] = 0;
-			for (j = 1; j <= wedstrijdgroep.getAantalSpelers(); j++) {
-				switch (Math.abs(j - i)) {
-				case 0:
-				case 1:
-					matrix2[i - 1][j] = 0;
-					break;
-				case 2:
-					matrix2[i - 1][j] = 10;
-					break;
-				case 3:
-					matrix2[i - 1][j] = 20;
-					break;
-				case 4:
-					matrix2[i - 1][j] = 30;
-					break;
-					case 5:
-					matrix2[i - 1][j] = 50;
-					break;
-				case 6:
-					matrix2[i - 1][j] = 80;
-					break;
-				default:
-					//matrix2[i - 1][j] = 200;
-					matrix2[i - 1][j] = 100;
-					break;
-				}
-			}
-		}
-		//Utils.printMatrix(matrix2);
-		// matrix 3 : Iedere tegenstander moet zoveel mogelijk evenveel met wit
-		// als zwart spelen
-		System.out.print("Initializing Matrix3\n");
-		for (i = 1; i <= wedstrijdgroep.getAantalSpelers(); i++) {
-			matrix3[i-1][0] = 0;
-			int witv1 = (int) wedstrijdgroep.getSpelerByID(i).getWitvoorkeur();
-			for (j = 1; j <= wedstrijdgroep.getAantalSpelers(); j++) {
-				int witv2 = (int) wedstrijdgroep.getSpelerByID(j).getWitvoorkeur();
-				if (i == j) {
-					matrix3[i - 1][j] = 0;
-				} else {
-					switch (witv1) {
-					case -2:
-						switch (witv2) {
-						case -2:
-							matrix3[i - 1][j] = 100;
-							break;
-						case -1:
-							matrix3[i - 1][j] = 75;
-							break;
-						case 0:
-							matrix3[i - 1][j] = 50;
-							break;
-						case 1:
-							matrix3[i - 1][j] = 25;
-							break;
-						case 2:
-							matrix3[i - 1][j] = 0;
-							break;
-						}
-						break;
-					case -1:
-						switch (witv2) {
-						case -2:
-							matrix3[i - 1][j] = 75;
-							break;
-						case -1:
-							matrix3[i - 1][j] = 60;
-							break;
-						case 0:
-							matrix3[i - 1][j] = 35;
-							break;
-						case 1:
-							matrix3[i - 1][j] = 10;
-							break;
-						case 2:
-							matrix3[i - 1][j] = 25;
-							break;
-						}
-						break;
-					case 0:
-						switch (witv2) {
-						case -2:
-							matrix3[i - 1][j] = 50;
-							break;
-						case -1:
-							matrix3[i - 1][j] = 25;
-							break;
-						case 0:
-							matrix3[i - 1][j] = 20;
-							break;
-						case 1:
-							matrix3[i - 1][j] = 35;
-							break;
-						case 2:
-							matrix3[i - 1][j] = 50;
-							break;
-						}
-						break;
-					case 1:
-						switch (witv2) {
-						case -2:
-							matrix3[i - 1][j] = 25;
-							break;
-						case -1:
-							matrix3[i - 1][j] = 10;
-							break;
-						case 0:
-							matrix3[i - 1][j] = 35;
-							break;
-						case 1:
-							matrix3[i - 1][j] = 60;
-							break;
-						case 2:
-							matrix3[i - 1][j] = 75;
-							break;
-						}
-						break;
-					case 2:
-						switch (witv2) {
-						case -2:
-							matrix3[i - 1][j] = 0;
-							break;
-						case -1:
-							matrix3[i - 1][j] = 25;
-							break;
-						case 0:
-							matrix3[i - 1][j] = 50;
-							break;
-						case 1:
-							matrix3[i - 1][j] = 75;
-							break;
-						case 2:
-							matrix3[i - 1][j] = 100;
-							break;
-						}
-						break;
-					}
-					;
-				}
-			}
-		}
-		//Utils.printMatrix(matrix3);
-		// matrix 4 : De doorschuivende speler speelt bij voorkeur tegen iemand
-		// van zijn eigen groep.
-		System.out.print("Initializing Matrix4\n");
-		for (i = 1; i <= wedstrijdgroep.getAantalSpelers(); i++) {
-			matrix4[i-1][0] = 0;
-			for (j = 1; j <= wedstrijdgroep.getAantalSpelers(); j++) {
-				if (i == j) {
-					matrix4[i - 1][j] = 0;
-				} else {
-					switch (serie) {
-					case 0:
-						if (wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-								&& wedstrijdgroep.getSpelersMetAnderNiveau()
-										.contains(wedstrijdgroep.getSpelerByID(j))) {
-							matrix4[i - 1][j] = 100;
-						} else {
-							if (wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-									&& !(wedstrijdgroep.getSpelersMetAnderNiveau()
-											.contains(wedstrijdgroep.getSpelerByID(j)))) {
-								matrix4[i - 1][j] = 0;
-							}
-						}
-						if (!wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-								&& wedstrijdgroep.getSpelersMetAnderNiveau()
-										.contains(wedstrijdgroep.getSpelerByID(j))) {
-							matrix4[i - 1][j] = 0;
-						} else {
-							if (!wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-									&& !wedstrijdgroep.getSpelersMetAnderNiveau()
-											.contains(wedstrijdgroep.getSpelerByID(j))) {
-								matrix4[i - 1][j] = 10;
-							}
-						}
-						break;
-					case 1:
-						if (wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-								&& wedstrijdgroep.getSpelersMetAnderNiveau()
-										.contains(wedstrijdgroep.getSpelerByID(j))) {
-							matrix4[i - 1][j] = 0;
-						} else {
-							if (wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-									&& !wedstrijdgroep.getSpelersMetAnderNiveau()
-											.contains(wedstrijdgroep.getSpelerByID(j))) {
-								matrix4[i - 1][j] = 80;
-							}
-						}
-						if (!wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-								&& wedstrijdgroep.getSpelersMetAnderNiveau()
-										.contains(wedstrijdgroep.getSpelerByID(j))) {
-							matrix4[i - 1][j] = 80;
-						} else {
-							if (!wedstrijdgroep.getSpelersMetAnderNiveau().contains(wedstrijdgroep.getSpelerByID(i))
-									&& !wedstrijdgroep.getSpelersMetAnderNiveau()
-											.contains(wedstrijdgroep.getSpelerByID(j))) {
-								matrix4[i - 1][j] = 0;
-							}
-						}
-						break;
-					}
-				}
-			}
-		}
-		//Utils.printMatrix(matrix4);
-		matrix = Utils.add2DArrays(mf1, matrix1, mf2, matrix2);
-		matrix = Utils.add2DArrays(1, matrix, mf3, matrix3);
-		matrix = Utils.add2DArrays(1, matrix, mf4, matrix4);
-		//System.out.print("Output Matrix\n");
-		//Utils.printMatrix(matrix);
-		return matrix;
+		FuzzyKostenModel model = new FuzzyKostenModel(wedstrijdgroep, historie);
+		return model.maakMatrix(serie, fuzzyParameters);
 	}
 
 	/**
@@ -1072,10 +1032,10 @@ public class GroepenIndeler {
 					speler.addTegenstander(wedstrijd.getWit().getInitialen());
 					speler.setWitvoorkeur(speler.getWitvoorkeur() + 1.1);
 				} else {
-					System.out.println("Hmmm, speler niet gevonden....\n");
+					Diagnose.trace("Hmmm, speler niet gevonden....");
 				}
 			} else {
-				System.out.println("Hmmm, geen wedstrijd voor speler niet gevonden.... Zit misschien in een trio.\n");
+				Diagnose.trace("Hmmm, geen wedstrijd voor speler niet gevonden.... Zit misschien in een trio.");
 			}
 		}
 		return groep;
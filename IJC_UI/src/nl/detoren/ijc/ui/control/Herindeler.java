@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.ui.control;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+
+/**
+ * Plant het automatisch opnieuw indelen na wijzigingen in de aanwezigheid.
+ *
+ * Tijdens het aanmelden komen veel wijzigingen kort na elkaar. In plaats van
+ * na elke wijziging alle groepen en het hele schema opnieuw te bepalen, wacht
+ * de herindeler tot er een korte tijd geen wijziging meer is geweest en deelt
+ * dan 1 keer in op de achtergrond. Een wijziging tijdens het indelen breekt
+ * de lopende indeling af; die is dan toch al verouderd.
+ *
+ * Alleen groepen waarvan de wedstrijdgroep is veranderd worden opnieuw
+ * ingedeeld; de wedstrijden van de overige groepen worden overgenomen.
+ *
+ * Er wordt ingedeeld op een toestand van de controller; omdat die niet meer
+ * wijzigt, is daarvoor geen lock nodig. Alleen het resultaat van de laatste
+ * aanvraag wordt gepubliceerd: wedstrijdgroepen en wedstrijden worden samen
+ * vervangen. Daarna worden de luisteraars op de event thread aangeroepen.
+ *
+ * @author Leo van der Meulen
+ */
+public class Herindeler {
+
+    private final static Logger logger = Logger.getLogger(Herindeler.class.getName());
+
+    /** Wachttijd na de laatste wijziging, in milliseconden */
+    public static final long STANDAARD_VERTRAGING = 400;
+
+    private final IJCController controller;
+
+    private final ScheduledExecutorService planner;
+
+    private final CopyOnWriteArrayList<Runnable> luisteraars = new CopyOnWriteArrayList<>();
+
+    private long vertraging = STANDAARD_VERTRAGING;
+
+    /** Ophogen maakt alle eerdere aanvragen ongeldig */
+    private long generatie = 0;
+
+    private ScheduledFuture<?> gepland;
+
+    private GroepenIndeler lopend;
+
+    public Herindeler(IJCController controller) {
+        this.controller = controller;
+        this.planner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "IJC herindeling");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public synchronized long getVertraging() {
+        return vertraging;
+    }
+
+    public synchronized void setVertraging(long vertraging) {
+        this.vertraging = vertraging;
+    }
+
+    /**
+     * Vraag een nieuwe indeling aan. Een eerder geplande indeling wordt
+     * uitgesteld en een lopende indeling wordt afgebroken.
+     */
+    public synchronized void plan() {
+        final long aanvraag = stopLopend();
+        gepland = planner.schedule(new Runnable() {
+            @Override
+            public void run() {
+                deelIn(aanvraag);
+            }
+        }, vertraging, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Annuleer geplande en lopende indelingen, bijvoorbeeld omdat er met de
+     * hand wordt ingedeeld of omdat automatisch indelen uit is gezet.
+     */
+    public synchronized void annuleer() {
+        stopLopend();
+    }
+
+    /**
+     * Voer een geplande indeling direct uit en wacht tot die klaar is; een
+     * lopende indeling wordt afgewacht. Voor acties die de laatste indeling
+     * nodig hebben, zoals exporteren, uitslagen verwerken en afsluiten.
+     *
+     * Niet aanroepen met de lock van de controller: het indelen heeft die
+     * lock nodig.
+     */
+    public void voerUitEnWacht() {
+        ScheduledFuture<?> wacht;
+        synchronized (this) {
+            if ((gepland != null) && gepland.cancel(false)) {
+                final long aanvraag = generatie;
+                gepland = planner.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        deelIn(aanvraag);
+                    }
+                }, 0, TimeUnit.MILLISECONDS);
+                wacht = gepland;
+            } else if ((gepland != null) && !gepland.isDone()) {
+                wacht = gepland;
+            } else if (lopend != null) {
+                // De planner heeft 1 thread, dit wacht op de lopende indeling
+                wacht = planner.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }, 0, TimeUnit.MILLISECONDS);
+            } else {
+                return;
+            }
+        }
+        try {
+            wacht.get();
+        } catch (CancellationException e) {
+            // Vervangen door een nieuwere aanvraag of geannuleerd
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, "Automatisch indelen mislukt: " + e.getCause());
+        }
+    }
+
+    /**
+     * @return true als er een indeling gepland staat of loopt
+     */
+    public synchronized boolean isBezig() {
+        return (gepland != null && !gepland.isDone()) || lopend != null;
+    }
+
+    /**
+     * Laat een luisteraar weten wanneer een nieuwe indeling is gepubliceerd.
+     * De luisteraar wordt op de event thread aangeroepen.
+     */
+    public void addLuisteraar(Runnable luisteraar) {
+        luisteraars.add(luisteraar);
+    }
+
+    public void removeLuisteraar(Runnable luisteraar) {
+        luisteraars.remove(luisteraar);
+    }
+
+    private long stopLopend() {
+        ++generatie;
+        if (gepland != null) {
+            gepland.cancel(false);
+            gepland = null;
+        }
+        if (lopend != null) {
+            lopend.breekAf();
+        }
+        return generatie;
+    }
+
+    private synchronized boolean isActueel(long aanvraag) {
+        return aanvraag == generatie;
+    }
+
+    private synchronized boolean start(long aanvraag, GroepenIndeler indeler) {
+        if (aanvraag != generatie) {
+            return false;
+        }
+        lopend = indeler;
+        return true;
+    }
+
+    private synchronized void gestopt(GroepenIndeler indeler) {
+        if (lopend == indeler) {
+            lopend = null;
+        }
+    }
+
+    /**
+     * Voer een aangevraagde indeling uit, op de thread van de planner. Onder
+     * de lock van de controller worden alleen de toestand en de gewijzigde
+     * groepen opgevraagd; het indelen zelf gebeurt zonder lock.
+     */
+    private void deelIn(long aanvraag) {
+        GroepenIndeler indeler;
+        Toestand basis;
+        Set<Integer> gewijzigd;
+        synchronized (controller) {
+            basis = controller.getToestand();
+            if (!controller.isAutomatisch() || basis.getGroepen() == null) {
+                return;
+            }
+            indeler = controller.maakIndeler();
+            gewijzigd = controller.getGewijzigdeGroepen();
+        }
+        if (!start(aanvraag, indeler)) {
+            return;
+        }
+        logger.log(Level.INFO, "Automatisch opnieuw indelen");
+        Groepen wedstrijdgroepen;
+        Wedstrijden wedstrijden;
+        try {
+            wedstrijdgroepen = indeler.maakGroepsindeling(basis.getGroepen());
+            if ((gewijzigd != null) && kanBijwerken(basis.getWedstrijden(), wedstrijdgroepen)) {
+                // Door het doorschuiven kunnen ook andere groepen veranderen
+                gewijzigd.addAll(indeler.bepaalGewijzigdeGroepen(basis.getWedstrijdgroepen(), wedstrijdgroepen));
+                logger.log(Level.INFO, "Opnieuw indelen van groepen " + gewijzigd);
+                wedstrijden = indeler.updateWedstrijdschema(basis.getWedstrijden(), wedstrijdgroepen, gewijzigd);
+            } else {
+                wedstrijden = indeler.maakWedstrijdschema(wedstrijdgroepen);
+            }
+        } catch (CancellationException e) {
+            logger.log(Level.INFO, "Verouderde indeling afgebroken");
+            return;
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Automatisch indelen mislukt", e);
+            return;
+        } finally {
+            gestopt(indeler);
+        }
+        synchronized (controller) {
+            if (!isActueel(aanvraag) || !controller.isAutomatisch()
+                    || !controller.publiceerIndeling(basis, wedstrijdgroepen, wedstrijden)) {
+                logger.log(Level.INFO, "Verouderde indeling niet gepubliceerd");
+                return;
+            }
+        }
+        meldLuisteraars();
+    }
+
+    /**
+     * De vorige wedstrijden kunnen alleen worden bijgewerkt als ze voor
+     * dezelfde ronde en dezelfde groepen zijn gemaakt.
+     */
+    private static boolean kanBijwerken(Wedstrijden vorige, Groepen wedstrijdgroepen) {
+        return (vorige.getPeriode() == wedstrijdgroepen.getPeriode())
+                && (vorige.getRonde() == wedstrijdgroepen.getRonde())
+                && (vorige.getGroepswedstrijden().size() == wedstrijdgroepen.getAantalGroepen());
+    }
+
+    private void meldLuisteraars() {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                for (Runnable luisteraar : luisteraars) {
+                    luisteraar.run();
+                }
+            }
+        });
+    }
+}
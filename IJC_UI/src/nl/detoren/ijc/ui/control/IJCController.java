@@ -13,26 +13,42 @@
  */
 package nl.detoren.ijc.ui.control;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.gson.Gson;
-
 import nl.detoren.ijc.data.groepen.Groep;
 import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.groepen.Historie;
 import nl.detoren.ijc.data.groepen.Speler;
 import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
 import nl.detoren.ijc.data.wedstrijden.Serie;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+import nl.detoren.ijc.io.BestandSchrijver;
+import nl.detoren.ijc.io.BinaireStatus;
 import nl.detoren.ijc.io.GroepenReader;
+import nl.detoren.ijc.io.Journaal;
+import nl.detoren.ijc.io.JsonLezer;
+import nl.detoren.ijc.io.Journaal.Gebeurtenis;
 import nl.detoren.ijc.io.OutputExcel;
+import nl.detoren.ijc.io.Seizoensarchief;
+import nl.detoren.ijc.ui.util.Diagnose;
+import nl.detoren.ijc.ui.util.Metingen;
 
 /**
  * Main controller class voor afhandeling van de groepen en wedstrijden
@@ -46,22 +62,88 @@ public class IJCController {
     
     private static final String defaultInputfile = "uitslag.txt";
 
+    private static final String fuzzyParametersfile = "fuzzy.json";
+
+    private static final String statusbestand = "status.ijc";
+
+    /** Status in JSON, als export en voor het inlezen van oudere statusbestanden */
+    private static final String statusJsonbestand = "status.json";
+
+    private static final String journaalbestand = "status.journaal";
+
+    private static final String archiefbestand = "seizoen.ijca";
+
+    /** Na zoveel gebeurtenissen in het journaal wordt een nieuwe snapshot gemaakt */
+    private static final int SNAPSHOT_INTERVAL = 250;
+
+    /** Serie waarmee bij het bewerken van het speelschema de triowedstrijden worden bedoeld */
+    public static final int TRIOSERIE = 3;
+
     private class Status {
         private boolean automatisch = true;
         private Groepen groepen;
         private Groepen wedstrijdgroepen;
         private Wedstrijden wedstrijden;
         private Groepen resultaatVerwerkt;
+        /** Volgnummer van de laatste gebeurtenis uit het journaal die hierin is verwerkt */
+        private long journaalVolgnummer;
     }
     private Status status;
 
+    private FuzzyParameters fuzzyParameters;
+
+    private final Journaal journaal = new Journaal(journaalbestand);
+
+    /**
+     * Schrijft snapshots na elkaar op een eigen thread, zodat het schrijven
+     * en de fsync niet onder de lock van de controller gebeuren.
+     */
+    private final ExecutorService snapshotSchrijver = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "IJC snapshot");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /** Snapshot die nog geschreven moet worden; een nieuwere vervangt hem */
+    private final AtomicReference<BinaireStatus> wachtendeSnapshot = new AtomicReference<>();
+
+    /** Taak die de wachtende snapshot schrijft, onder de lock van de controller */
+    private Future<?> snapshotTaak;
+
+    private Seizoensarchief archief;
+
+    private final Achtergrondtaken achtergrond = new Achtergrondtaken();
+
+    private final Herindeler herindeler;
+
+    /**
+     * De laatst gepubliceerde toestand. status is de werkversie van de
+     * schrijvers (onder de lock van de controller); lezers gebruiken alleen
+     * deze toestand en hebben geen lock nodig.
+     */
+    private final AtomicReference<Toestand> toestand = new AtomicReference<>(Toestand.LEEG);
+
+    /**
+     * Groepen waarvan de wedstrijdgroep is gewijzigd sinds de wedstrijden
+     * zijn bepaald. Bij automatisch indelen worden alleen deze groepen (en
+     * de groepen die door het doorschuiven meeveranderen) opnieuw ingedeeld.
+     */
+    private final Set<Integer> gewijzigdeGroepen = new TreeSet<>();
+
+    /** true als de wedstrijden niet meer bij de wedstrijdgroepen horen */
+    private boolean alleGroepenGewijzigd = true;
 
     protected IJCController() {
     	status = new Status();
     	status.groepen = null;
     	status.wedstrijden = null;
     	status.wedstrijdgroepen = null;
-
+    	fuzzyParameters = FuzzyParameters.lees(fuzzyParametersfile);
+    	herindeler = new Herindeler(this);
+    	Metingen.start();
     }
 
     public static IJCController getInstance() {
@@ -77,7 +159,44 @@ public class IJCController {
     }
 
     public void setAutomatisch(boolean automatisch) {
-        this.status.automatisch = automatisch;
+        synchronized (this) {
+        	this.status.automatisch = automatisch;
+        	if (!automatisch) {
+        		herindeler.annuleer();
+        	}
+        	journaliseer(Gebeurtenis.automatisch(automatisch));
+        }
+    }
+
+    public FuzzyParameters getFuzzyParameters() {
+        return fuzzyParameters;
+    }
+
+    public void setFuzzyParameters(FuzzyParameters fuzzyParameters) {
+        this.fuzzyParameters = fuzzyParameters;
+    }
+
+    /**
+     * Maak een GroepenIndeler met de ingestelde fuzzy parameters
+     */
+    GroepenIndeler maakIndeler() {
+    	GroepenIndeler indeler = new GroepenIndeler();
+    	indeler.setFuzzyParameters(fuzzyParameters);
+    	if (fuzzyParameters.getHerhaling() != 0) {
+    		indeler.setHistorie(maakHistorie());
+    	}
+    	return indeler;
+    }
+
+    /**
+     * Historie van de spelers in de huidige periode, uit het seizoensarchief
+     */
+    private Historie maakHistorie() {
+    	Seizoensarchief a = getSeizoensarchief();
+    	if ((a == null) || (status.groepen == null)) {
+    		return null;
+    	}
+    	return a.maakHistorie(status.groepen.getPeriode(), fuzzyParameters.getHistorieDiepte());
     }
 
     public void leesGroepen() {
@@ -105,6 +224,9 @@ public class IJCController {
 			status.resultaatVerwerkt = null;
 			if (status.groepen.getRonde() == 1)
 				resetAanwezigheidspunt();
+			publiceer();
+			// Het journaal hoort bij de vorige groepen; begin met een nieuwe snapshot
+			planSnapshot();
 		}
 	}
 	
@@ -122,7 +244,8 @@ public class IJCController {
 	}
 
 	/**
-	 * Lees het status export bestand
+	 * Lees het status export bestand en pas de wijzigingen uit het journaal
+	 * toe die na het maken van dat bestand zijn vastgelegd.
 	 * @return true, als bestand gevonden en ingelezen
 	 */
 	public boolean leesStatusBestand() {
@@ -134,49 +257,260 @@ public class IJCController {
 				status.wedstrijdgroepen = null;
 				status.wedstrijden = null;
 				status.resultaatVerwerkt = null;
+				publiceer();
 	        	logger.log(Level.INFO, "Status bestand niet ingelezen");
 				return false;
 			}
+			herstelJournaal();
+			publiceer();
+			if (journaal.getAantal() > 0) {
+				// Leg de herstelde status vast en begin met een leeg journaal
+				planSnapshot();
+			}
 		}
     	logger.log(Level.INFO, "Statusbestand ingelezen");
 		return true;
 	}
 
+	/**
+	 * Pas de gebeurtenissen uit het journaal toe op de ingelezen snapshot.
+	 * Iedere nieuwe indeling levert een snapshot op, dus uitslagen in het
+	 * journaal horen bij de wedstrijden uit de snapshot. Is de aanwezigheid
+	 * gewijzigd en staat automatisch indelen aan, dan wordt na het herstellen
+	 * opnieuw ingedeeld, zoals ook voor de crash zou zijn gebeurd.
+	 */
+	private void herstelJournaal() {
+		boolean indelingVerouderd = false;
+		int toegepast = 0;
+		for (Gebeurtenis g : journaal.lees(status.journaalVolgnummer)) {
+			switch (g.getSoort()) {
+			case AANWEZIGHEID: {
+				Speler s = zoekSpeler(status.groepen.getGroepById(g.getGroep()), g.getLocatie(), g.getSleutel());
+				if (s == null) {
+					break;
+				}
+				s.setAanwezig(g.getWaarde());
+				indelingVerouderd = true;
+				++toegepast;
+				break;
+			}
+			case SPELER_TOEGEVOEGD: {
+				Groep gr = status.groepen.getGroepById(g.getGroep());
+				if ((gr == null) || (g.getSpeler() == null) || (g.getLocatie() < 0)
+						|| (g.getLocatie() > gr.getAantalSpelers())) {
+					break;
+				}
+				gr.addSpeler(g.getSpeler(), g.getLocatie());
+				indelingVerouderd = true;
+				++toegepast;
+				break;
+			}
+			case SPELER_VERWIJDERD: {
+				Groep gr = status.groepen.getGroepById(g.getGroep());
+				Speler s = zoekSpeler(gr, g.getLocatie(), g.getSleutel());
+				if (s == null) {
+					break;
+				}
+				gr.removeSpeler(s, gr.getSpelers().indexOf(s));
+				indelingVerouderd = true;
+				++toegepast;
+				break;
+			}
+			case UITSLAG: {
+				Wedstrijd w = zoekWedstrijd(g.getGroep(), g.getSleutel(), g.getTegenstander());
+				if (w == null) {
+					break;
+				}
+				w.setUitslag(g.getUitslag());
+				++toegepast;
+				break;
+			}
+			case AUTOMATISCH:
+				status.automatisch = g.getWaarde();
+				++toegepast;
+				break;
+			}
+		}
+		if (toegepast > 0) {
+			logger.log(Level.INFO, toegepast + " wijzigingen uit journaal hersteld");
+		}
+		if (indelingVerouderd && status.automatisch) {
+			herindeler.plan();
+		}
+	}
+
+	/**
+	 * Zoek een speler op de locatie waar hij bij het vastleggen stond. Is de
+	 * groep intussen gewijzigd, dan wordt op sleutel gezocht.
+	 */
+	private Speler zoekSpeler(Groep groep, int locatie, long sleutel) {
+		if ((groep == null) || (groep.getSpelers() == null)) {
+			return null;
+		}
+		if ((locatie >= 0) && (locatie < groep.getAantalSpelers())) {
+			Speler s = groep.getSpelers().get(locatie);
+			if ((s != null) && (s.getSleutel() == sleutel)) {
+				return s;
+			}
+		}
+		for (Speler s : groep.getSpelers()) {
+			if (s.getSleutel() == sleutel) {
+				return s;
+			}
+		}
+		logger.log(Level.WARNING, "Speler uit journaal niet gevonden in " + groep.getNaam());
+		return null;
+	}
+
+	/**
+	 * Zoek een wedstrijd op de sleutels van wit en zwart
+	 */
+	private Wedstrijd zoekWedstrijd(int niveau, long wit, long zwart) {
+		if (status.wedstrijden == null) {
+			return null;
+		}
+		Groepswedstrijden gw = status.wedstrijden.getGroepswedstrijdenNiveau(niveau);
+		if (gw != null) {
+			for (Wedstrijd w : gw.getWedstrijden()) {
+				if ((w.getWit().getSleutel() == wit) && (w.getZwart().getSleutel() == zwart)) {
+					return w;
+				}
+			}
+		}
+		logger.log(Level.WARNING, "Wedstrijd uit journaal niet gevonden in " + Groep.geefNaam(niveau));
+		return null;
+	}
+
+	/**
+	 * Leg een wijziging vast in het journaal. Na SNAPSHOT_INTERVAL wijzigingen
+	 * wordt de volledige status opgeslagen en het journaal geleegd. Alleen
+	 * aanroepen onder de lock van de controller.
+	 */
+	private void journaliseer(Gebeurtenis g) {
+		journaal.schrijf(g);
+		if (journaal.getAantal() >= SNAPSHOT_INTERVAL) {
+			planSnapshot();
+		}
+	}
+
+	/**
+	 * Nieuwe wedstrijden staan niet in het journaal, maar uitslagen die daarna
+	 * worden vastgelegd verwijzen er wel naar. Leg de wedstrijden daarom vast
+	 * met een snapshot, zodat die uitslagen na een crash terug te vinden zijn.
+	 * Het schrijven gebeurt op de achtergrond. Alleen aanroepen onder de lock
+	 * van de controller, na publiceer.
+	 */
+	private void wedstrijdenVastleggen() {
+		planSnapshot();
+	}
+
+	/**
+	 * Plan een snapshot van de werkversie. De verwijzingen en het volgnummer
+	 * van het journaal worden nu vastgelegd; het schrijven gebeurt op de
+	 * snapshot thread. Dat kan zonder lock, want groepen en wedstrijden
+	 * worden na het publiceren niet meer gewijzigd. Staat er nog een snapshot
+	 * te wachten, dan wordt alleen de nieuwste geschreven. Alleen aanroepen
+	 * onder de lock van de controller, nadat de werkversie klaar is.
+	 * @return de taak die de snapshot schrijft
+	 */
+	private Future<?> planSnapshot() {
+		status.journaalVolgnummer = journaal.getVolgnummer();
+		if (wachtendeSnapshot.getAndSet(naarBinair()) == null) {
+			snapshotTaak = snapshotSchrijver.submit(new Runnable() {
+				@Override
+				public void run() {
+					schrijfSnapshot(wachtendeSnapshot.getAndSet(null));
+				}
+			});
+		}
+		return snapshotTaak;
+	}
+
+	/**
+	 * Schrijf een snapshot en leeg daarna het journaal, als er intussen geen
+	 * nieuwe gebeurtenissen zijn bijgekomen. Op de snapshot thread.
+	 */
+	private void schrijfSnapshot(BinaireStatus b) {
+		try {
+			logger.log(Level.INFO, "Sla status op in bestand " + statusbestand);
+			b.schrijf(statusbestand);
+			journaal.wis(b.getJournaalVolgnummer());
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Status niet opgeslagen: " + e.getMessage());
+		}
+	}
+
+    /**
+     * De huidige toestand. Groepen, wedstrijdgroepen en wedstrijden in de
+     * toestand horen bij elkaar; wie meerdere ervan nodig heeft, vraagt de
+     * toestand 1 keer op in plaats van de losse getters te gebruiken.
+     *
+     * @return de laatst gepubliceerde toestand
+     */
+    public Toestand getToestand() {
+        return toestand.get();
+    }
+
+    /**
+     * Publiceer de werkversie als nieuwe toestand. Alleen aanroepen onder de
+     * lock van de controller.
+     */
+    private void publiceer() {
+    	toestand.set(toestand.get().volgende(status.groepen, status.wedstrijdgroepen, status.wedstrijden));
+    }
+
     /**
      * Groepen zoals ingelezen met aanwezigheid bijgewerkt.
      *
      * @return
      */
     public Groepen getGroepen() {
-        return status.groepen;
+        return toestand.get().getGroepen();
     }
 
     public Groep getGroepByID(int id) {
-        return status.groepen.getGroepById(id);
+        return getGroepen().getGroepById(id);
     }
 
     public int getAantalGroepen() {
-        return status.groepen.getAantalGroepen();
+        return getGroepen().getAantalGroepen();
     }
 
     public Groepen getWedstrijdgroepen() {
-        return status.wedstrijdgroepen;
+        return toestand.get().getWedstrijdgroepen();
     }
 
     public Groep getWedstrijdGroepByID(int id) {
-        return status.wedstrijdgroepen.getGroepById(id);
+        return getWedstrijdgroepen().getGroepById(id);
     }
 
     public int getAantalWedstrijdGroepen() {
-        return status.wedstrijdgroepen.getAantalGroepen();
+        return getWedstrijdgroepen().getAantalGroepen();
     }
 
     public Wedstrijden getWedstrijden() {
-        return status.wedstrijden;
+        return toestand.get().getWedstrijden();
     }
 
     public void setWedstrijden(Wedstrijden w) {
-    	status.wedstrijden = w;
+        synchronized (this) {
+        	status.wedstrijden = w;
+        	alleGroepenGewijzigd = true;
+        	publiceer();
+        	wedstrijdenVastleggen();
+        }
+    }
+
+    /**
+     * Het speelschema is met de hand bewerkt. Die wijzigingen staan niet in
+     * het journaal en worden daarom met een snapshot vastgelegd.
+     */
+    public void speelschemaBewerkt() {
+        synchronized (this) {
+        	logger.log(Level.INFO, "Speelschema met de hand bewerkt");
+        	publiceer();
+        	wedstrijdenVastleggen();
+        }
     }
 
     /**
@@ -188,11 +522,14 @@ public class IJCController {
     public void maakGroepsindeling() {
         synchronized (this) {
         	logger.log(Level.INFO, "Maak groepsindeling");
-        	status.wedstrijdgroepen = new GroepenIndeler().maakGroepsindeling(status.groepen);
+        	herindeler.annuleer();
+        	status.wedstrijdgroepen = maakIndeler().maakGroepsindeling(status.groepen);
+        	alleGroepenGewijzigd = true;
             if (status.automatisch) {
                 maakWedstrijden();
                 logger.log(Level.INFO, "Maak Wedstrijden");
             }
+            publiceer();
         }
     }
     
@@ -204,7 +541,12 @@ public class IJCController {
     public void maakGroepsindeling(int groepID) {
     	synchronized (this) {
         	logger.log(Level.INFO, "Maak groepsindeling voor groep " + groepID);
-    		status.wedstrijdgroepen = new GroepenIndeler().maakGroepsindeling(status.groepen, status.wedstrijdgroepen, groepID);
+    		// De indeler vervangt de groep; doe dat in een kopie, niet in de
+    		// gepubliceerde toestand
+    		Groepen kopie = status.wedstrijdgroepen.kopieVoorWijziging(groepID);
+    		status.wedstrijdgroepen = maakIndeler().maakGroepsindeling(status.groepen, kopie, groepID);
+    		gewijzigdeGroepen.add(groepID);
+    		publiceer();
 		}
     }
     /**
@@ -213,7 +555,11 @@ public class IJCController {
     public void maakWedstrijden() {
         synchronized (this) {
         	logger.log(Level.INFO, "Maak wedstrijden voor alle groepen");
-        	status.wedstrijden = new GroepenIndeler().maakWedstrijdschema(status.wedstrijdgroepen);
+        	herindeler.annuleer();
+        	status.wedstrijden = maakIndeler().maakWedstrijdschema(status.wedstrijdgroepen);
+        	wedstrijdenBijgewerkt();
+        	publiceer();
+        	wedstrijdenVastleggen();
             printWedstrijden();
         }
     }
@@ -224,32 +570,84 @@ public class IJCController {
     public void maakWedstrijden(int groepID) {
         synchronized (this) {
         	logger.log(Level.INFO, "Maak wedstrijden voor groep " + groepID);
-        	status.wedstrijden = new GroepenIndeler().updateWedstrijdschema(status.wedstrijden, status.wedstrijdgroepen, groepID);
+        	status.wedstrijden = maakIndeler().updateWedstrijdschema(status.wedstrijden, status.wedstrijdgroepen, groepID);
+        	gewijzigdeGroepen.remove(groepID);
+        	publiceer();
+        	wedstrijdenVastleggen();
+            printWedstrijden();
+        }
+    }
+
+    private void wedstrijdenBijgewerkt() {
+    	gewijzigdeGroepen.clear();
+    	alleGroepenGewijzigd = false;
+    }
+
+    /**
+     * Groepen die opnieuw ingedeeld moeten worden omdat hun wedstrijdgroep is
+     * gewijzigd sinds de wedstrijden zijn bepaald.
+     * @return kopie van de gewijzigde groepen, of null als alle groepen
+     *         opnieuw ingedeeld moeten worden
+     */
+    Set<Integer> getGewijzigdeGroepen() {
+        synchronized (this) {
+        	if (alleGroepenGewijzigd || (status.wedstrijden == null) || (status.wedstrijdgroepen == null)) {
+        		return null;
+        	}
+        	return new TreeSet<>(gewijzigdeGroepen);
+        }
+    }
+
+    /**
+     * Vervang wedstrijdgroepen en wedstrijden door een op de achtergrond
+     * gemaakte indeling. Beide worden samen vervangen, zodat de schermen nooit
+     * groepen van de ene en wedstrijden van een andere indeling zien.
+     * @param basis De toestand waarvan de indeling is gemaakt
+     * @return false als de groepen intussen zijn gewijzigd; er is dan niets
+     *         gepubliceerd
+     */
+    boolean publiceerIndeling(Toestand basis, Groepen wedstrijdgroepen, Wedstrijden wedstrijden) {
+        synchronized (this) {
+        	if (status.groepen != basis.getGroepen()) {
+        		return false;
+        	}
+        	logger.log(Level.INFO, "Publiceer nieuwe indeling");
+        	status.wedstrijdgroepen = wedstrijdgroepen;
+        	status.wedstrijden = wedstrijden;
+        	wedstrijdenBijgewerkt();
+        	publiceer();
+        	wedstrijdenVastleggen();
             printWedstrijden();
+            return true;
         }
     }
 
     /**
-     * Print wedstrijden op het scherm, opgedeeld per serie
+     * Print wedstrijden naar het tracebestand, opgedeeld per serie. Zonder
+     * tracebestand (zie Diagnose) gebeurt er niets.
      */
     public void printWedstrijden() {
+    	if (!Diagnose.isTrace()) {
+    		return;
+    	}
     	logger.log(Level.INFO, "Print wedstrijden");
-        System.out.print("\nWedstrijden Periode " + status.wedstrijden.getPeriode());
-        System.out.println(" Ronde " + status.wedstrijden.getRonde() + "\n-----------");
+        Diagnose.trace("");
+        Diagnose.trace("Wedstrijden Periode " + status.wedstrijden.getPeriode() + " Ronde " + status.wedstrijden.getRonde());
+        Diagnose.trace("-----------");
         for (Groepswedstrijden gw : status.wedstrijden.getGroepswedstrijden()) {
-            System.out.println("  " + Groep.geefNaam(gw.getNiveau()));
+            Diagnose.trace("  " + Groep.geefNaam(gw.getNiveau()));
             int i = 1;
             for (Serie serie : gw.getSeries()) {
-                System.out.println("    Serie " + i);
+                Diagnose.trace("    Serie " + i);
                 for (Wedstrijd w : serie.getWedstrijden()) {
-                    System.out.println("      " + w.toString());
+                    Diagnose.trace("      " + w.toString());
                 }
                 ++i;
             }
             if (!gw.getTriowedstrijden().isEmpty()) {
-                System.out.println("    Trio");
+                Diagnose.trace("    Trio");
                 for (Wedstrijd w : gw.getTriowedstrijden()) {
-                    System.out.println("      " + w.toString());
+                    Diagnose.trace("      " + w.toString());
                 }
 
             }
@@ -266,11 +664,17 @@ public class IJCController {
         synchronized (this) {
         	logger.log(Level.INFO, "Speler " + index + " in groep " + groep.getNaam() + " is " + (waarde ? "niet aanwezig" : "aanwezig"));
             if (groep != null) {
-                Speler s = groep.getSpelers().get(index);
+                // De groep kan uit een oudere toestand komen; wijzig een kopie
+                // van de huidige
+                Groep gr = wijzigGroep(groep.getNiveau());
+                Speler s = gr.getSpelers().get(index);
                 if (s != null) {
                     s.setAanwezig(waarde);
+                    journaliseer(Gebeurtenis.aanwezigheid(gr.getNiveau(), index, s, waarde));
+                    gewijzigdeGroepen.add(gr.getNiveau());
+                    publiceer();
                     if (status.automatisch) {
-                        maakGroepsindeling();
+                        herindeler.plan();
                     }
                 }
             }
@@ -278,6 +682,110 @@ public class IJCController {
 
     }
 
+    /**
+     * Vervang de groepen in de werkversie door een kopie waarin de opgegeven
+     * groep gewijzigd mag worden. De gepubliceerde toestand blijft ongewijzigd
+     * totdat publiceer wordt aangeroepen.
+     * @param niveau Niveau van de te wijzigen groep
+     * @return de eigen kopie van de groep
+     */
+    private Groep wijzigGroep(int niveau) {
+    	status.groepen = status.groepen.kopieVoorWijziging(niveau);
+    	return status.groepen.getGroepById(niveau);
+    }
+
+    /**
+     * Vervang de wedstrijden in de werkversie door een kopie waarin de
+     * wedstrijden van de opgegeven groep gewijzigd mogen worden, zie
+     * Wedstrijden.kopieVoorWijziging.
+     * @param niveau Niveau van de te wijzigen groep
+     * @return de eigen kopie van de groepswedstrijden, of null als de groep
+     *         geen wedstrijden heeft
+     */
+    private Groepswedstrijden wijzigGroepswedstrijden(int niveau) {
+    	if ((status.wedstrijden == null) || (status.wedstrijden.getGroepswedstrijdenNiveau(niveau) == null)) {
+    		return null;
+    	}
+    	status.wedstrijden = status.wedstrijden.kopieVoorWijziging(niveau);
+    	return status.wedstrijden.getGroepswedstrijdenNiveau(niveau);
+    }
+
+    /**
+     * De wedstrijden van een serie in de werkversie, om te wijzigen
+     * @param niveau Niveau van de groep
+     * @param serie Serie, of TRIOSERIE voor de triowedstrijden
+     * @param maak true om een ontbrekende serie aan te maken
+     * @return de eigen kopie van de wedstrijden, of null
+     */
+    private ArrayList<Wedstrijd> wijzigSerie(int niveau, int serie, boolean maak) {
+    	Groepswedstrijden gw = wijzigGroepswedstrijden(niveau);
+    	if (gw == null) {
+    		return null;
+    	}
+    	if (serie == TRIOSERIE) {
+    		return gw.getTriowedstrijden();
+    	}
+    	Serie s = gw.getSerie(serie);
+    	if ((s == null) && maak) {
+    		s = new Serie();
+    		s.setNummer(serie);
+    		gw.addSerie(s);
+    	}
+    	return s == null ? null : s.getWedstrijden();
+    }
+
+    /**
+     * Een wedstrijd uit het speelschema in de werkversie, om te wijzigen
+     * @return de eigen kopie van de wedstrijd, of null als die er niet is
+     */
+    private Wedstrijd wijzigWedstrijd(int niveau, int serie, int index) {
+    	ArrayList<Wedstrijd> lijst = wijzigSerie(niveau, serie, false);
+    	if ((lijst == null) || (index < 0) || (index >= lijst.size())) {
+    		return null;
+    	}
+    	return lijst.get(index);
+    }
+
+    /**
+     * Zoek een wedstrijd in de werkversie en geef een kopie die gewijzigd mag
+     * worden. De wedstrijd kan uit een oudere toestand komen; wordt hij niet
+     * zelf gevonden, dan wordt gezocht op de sleutels van wit en zwart.
+     * @return de eigen kopie van de wedstrijd, of null als die er niet is
+     */
+    private Wedstrijd wijzigWedstrijd(int niveau, Wedstrijd w) {
+    	Groepswedstrijden gw = status.wedstrijden == null ? null : status.wedstrijden.getGroepswedstrijdenNiveau(niveau);
+    	if (gw == null) {
+    		return null;
+    	}
+    	for (int zoekOpSleutel = 0; zoekOpSleutel < 2; ++zoekOpSleutel) {
+    		for (int serie = 0; serie < gw.getSeries().size(); ++serie) {
+    			int index = positie(gw.getSerie(serie).getWedstrijden(), w, zoekOpSleutel == 1);
+    			if (index >= 0) {
+    				return wijzigWedstrijd(niveau, serie, index);
+    			}
+    		}
+    		int index = positie(gw.getTriowedstrijden(), w, zoekOpSleutel == 1);
+    		if (index >= 0) {
+    			return wijzigWedstrijd(niveau, TRIOSERIE, index);
+    		}
+    	}
+    	return null;
+    }
+
+    private static int positie(ArrayList<Wedstrijd> lijst, Wedstrijd w, boolean opSleutel) {
+    	if (lijst == null) {
+    		return -1;
+    	}
+    	for (int i = 0; i < lijst.size(); ++i) {
+    		Wedstrijd x = lijst.get(i);
+    		if (opSleutel ? (x.getWit().getSleutel() == w.getWit().getSleutel())
+    				&& (x.getZwart().getSleutel() == w.getZwart().getSleutel()) : x == w) {
+    			return i;
+    		}
+    	}
+    	return -1;
+    }
+
     /** 
      * Voeg een speler toe aan een groep
      * @param groepID Groep waaraan toe te voegen
@@ -286,57 +794,254 @@ public class IJCController {
      */
     public void addSpeler(int groepID, Speler s, int locatie) {
     	logger.log(Level.INFO, "Voeg speler " + s.getInitialen() + " toe aan groep " + groepID + ", locatie " + locatie);
-        Groep gr = status.groepen.getGroepById(groepID);
-        gr.addSpeler(s, locatie);
-        if (status.automatisch) {
-            maakGroepsindeling();
+        synchronized (this) {
+            Groep gr = wijzigGroep(groepID);
+            gr.addSpeler(s, locatie);
+            journaliseer(Gebeurtenis.spelerToegevoegd(groepID, locatie, s));
+            gewijzigdeGroepen.add(groepID);
+            publiceer();
+            if (status.automatisch) {
+                herindeler.plan();
+            }
         }
     }
     
+    /**
+     * Neem de bewerkte gegevens van een speler over. De speler wordt gezocht
+     * op locatie en sleutel en in een kopie van de groep gewijzigd; de
+     * gepubliceerde speler blijft ongewijzigd. Bewerkingen staan niet in het
+     * journaal en worden daarom met een snapshot vastgelegd.
+     * @param groepID Groep van de speler
+     * @param gegevens Kopie van de speler met de bewerkte gegevens
+     * @param locatie Locatie van de speler in de groep
+     */
+    public void wijzigSpeler(int groepID, Speler gegevens, int locatie) {
+    	logger.log(Level.INFO, "Wijzig speler " + gegevens.getInitialen() + " in groep " + groepID + ", locatie " + locatie);
+        synchronized (this) {
+            Groep gr = wijzigGroep(groepID);
+            Speler s = zoekSpeler(gr, locatie, gegevens.getSleutel());
+            if (s == null) {
+            	return;
+            }
+            s.setNaam(gegevens.getNaam());
+            s.setInitialen(gegevens.getInitialen());
+            s.setRating(gegevens.getRating());
+            s.setPunten(gegevens.getPunten());
+            s.setTegenstanders(gegevens.getTegenstanders());
+            gewijzigdeGroepen.add(groepID);
+            publiceer();
+            planSnapshot();
+            if (status.automatisch) {
+                herindeler.plan();
+            }
+        }
+    }
+
     public void verwijderSpeler(int groepID, Speler s, int locatie) {
     	logger.log(Level.INFO, "Verwijder speler " + s.getInitialen() + " uit groep " + groepID + ", locatie " + locatie);
-        Groep gr = status.groepen.getGroepById(groepID);
-        gr.removeSpeler(s, locatie);
-        if (status.automatisch) {
-            maakGroepsindeling();
+        synchronized (this) {
+            Groep gr = wijzigGroep(groepID);
+            Speler verwijderd = gr.getSpelers().get(locatie);
+            gr.removeSpeler(verwijderd, locatie);
+            journaliseer(Gebeurtenis.spelerVerwijderd(groepID, locatie, verwijderd));
+            gewijzigdeGroepen.add(groepID);
+            publiceer();
+            if (status.automatisch) {
+                herindeler.plan();
+            }
         }
     }
 
     public void verwijderWedstrijdSpeler(int groepID, Speler s, int locatie) {
     	logger.log(Level.INFO, "Verwijder speler " + s.getInitialen() + " uit wedstrijdgroep " + groepID + ", locatie " + locatie);
-        Groep gr = status.wedstrijdgroepen.getGroepById(groepID);
-        gr.removeSpeler(s, locatie);
-        gr.renumber();
-        if (status.automatisch) {
-            maakGroepsindeling();
+        synchronized (this) {
+            status.wedstrijdgroepen = status.wedstrijdgroepen.kopieVoorWijziging(groepID);
+            Groep gr = status.wedstrijdgroepen.getGroepById(groepID);
+            gr.removeSpeler(gr.getSpelers().get(locatie), locatie);
+            gr.renumber();
+            gewijzigdeGroepen.add(groepID);
+            publiceer();
+            if (status.automatisch) {
+                herindeler.plan();
+            }
+        }
+    }
+    /**
+     * Leg de uitslag van een wedstrijd vast
+     * @param niveau Niveau van de wedstrijdgroep
+     * @param w De wedstrijd
+     * @param uitslag012 Uitslag als 0 (0-1), 1 (1-0) of 2 (remise)
+     */
+    public void setUitslag(int niveau, Wedstrijd w, int uitslag012) {
+        synchronized (this) {
+            Wedstrijd kopie = wijzigWedstrijd(niveau, w);
+            if (kopie == null) {
+            	logger.log(Level.WARNING, "Wedstrijd " + w + " niet gevonden in " + Groep.geefNaam(niveau));
+            	return;
+            }
+            kopie.setUitslag012(uitslag012);
+            journaliseer(Gebeurtenis.uitslag(niveau, kopie.getWit(), kopie.getZwart(), kopie.getUitslag()));
+            publiceer();
+        }
+    }
+
+    /**
+     * Zet een speler uit de wedstrijdgroep in een wedstrijd van het speelschema
+     * @param niveau Niveau van de groep
+     * @param serie Serie, of TRIOSERIE voor de triowedstrijden
+     * @param index Positie van de wedstrijd in de serie
+     * @param spelerID ID van de speler in de wedstrijdgroep
+     * @param wit true als de speler met wit speelt
+     */
+    public void setWedstrijdSpeler(int niveau, int serie, int index, int spelerID, boolean wit) {
+        synchronized (this) {
+            Groep groep = status.wedstrijdgroepen == null ? null : status.wedstrijdgroepen.getGroepById(niveau);
+            Speler s = groep == null ? null : groep.getSpelerByID(spelerID);
+            if (s == null) {
+            	return;
+            }
+            Wedstrijd w = wijzigWedstrijd(niveau, serie, index);
+            if (w == null) {
+            	return;
+            }
+            if (wit) {
+            	w.setWit(s);
+            } else {
+            	w.setZwart(s);
+            }
+            publiceer();
+        }
+    }
+
+    /**
+     * Wissel wit en zwart van een wedstrijd in het speelschema
+     */
+    public void wisselWedstrijdSpelers(int niveau, int serie, int index) {
+        synchronized (this) {
+            Wedstrijd w = wijzigWedstrijd(niveau, serie, index);
+            if (w != null) {
+            	w.setSpelers(w.getZwart(), w.getWit());
+            	publiceer();
+            }
+        }
+    }
+
+    /**
+     * Vervang beide spelers van een wedstrijd in het speelschema door een dummy
+     */
+    public void wisWedstrijdSpelers(int niveau, int serie, int index) {
+        synchronized (this) {
+            Wedstrijd w = wijzigWedstrijd(niveau, serie, index);
+            if (w != null) {
+            	w.setSpelers(Speler.dummySpeler(niveau), Speler.dummySpeler(niveau));
+            	publiceer();
+            }
+        }
+    }
+
+    /**
+     * Voeg een wedstrijd tussen twee dummy spelers toe aan het speelschema.
+     * Een ontbrekende serie wordt aangemaakt.
+     * @param index Positie van de nieuwe wedstrijd in de serie
+     */
+    public void voegWedstrijdToe(int niveau, int serie, int index) {
+        synchronized (this) {
+            ArrayList<Wedstrijd> lijst = wijzigSerie(niveau, serie, true);
+            if (lijst == null) {
+            	return;
+            }
+            Wedstrijd w = new Wedstrijd(0, Speler.dummySpeler(niveau), Speler.dummySpeler(niveau), 0);
+            if ((index >= 0) && (index <= lijst.size())) {
+            	lijst.add(index, w);
+            } else {
+            	lijst.add(w);
+            }
+            publiceer();
+        }
+    }
+
+    /**
+     * Verwijder een wedstrijd uit het speelschema
+     */
+    public void verwijderWedstrijd(int niveau, int serie, int index) {
+        synchronized (this) {
+            ArrayList<Wedstrijd> lijst = wijzigSerie(niveau, serie, false);
+            if ((lijst != null) && (index >= 0) && (index < lijst.size())) {
+            	lijst.remove(index);
+            	publiceer();
+            }
         }
     }
+
     /**
-     * Verwerk uitslagen tot een nieuwe stand en sla deze op
+     * Verwerk uitslagen tot een nieuwe stand en sla deze op. Het afsluiten van
+     * de ronde levert altijd een nieuwe snapshot op. Alles gebeurt onder de
+     * lock van de controller, zodat groepen en wedstrijden bij elkaar horen en
+     * niemand de stand opslaat terwijl die nog wordt gemaakt.
      */
     public void verwerkUitslagen() {
-    	logger.log(Level.INFO, "Verwerk uitslagen");
-    	Uitslagverwerker uv = new Uitslagverwerker();
-    	status.resultaatVerwerkt =  uv.verwerkUitslag(status.groepen, status.wedstrijden);
-    	status.resultaatVerwerkt.sorteerGroepen();
-    	System.out.println(status.resultaatVerwerkt.toPrintableString());
-    	logger.log(Level.INFO, "en sla uitslagen en status op");
-    	saveUitslag(status.groepen.getPeriode(), status.groepen.getRonde(), status.resultaatVerwerkt.toPrintableString());
-    	saveState(false);
+        synchronized (this) {
+        	logger.log(Level.INFO, "Verwerk uitslagen");
+        	Groepen groepen = status.groepen;
+        	Wedstrijden wedstrijden = status.wedstrijden;
+        	Uitslagverwerker uv = new Uitslagverwerker();
+        	Groepen resultaat = uv.verwerkUitslag(groepen, wedstrijden);
+        	resultaat.sorteerGroepen();
+        	// Pas de volledige stand in de status zetten
+        	status.resultaatVerwerkt = resultaat;
+        	if (Diagnose.isTrace()) {
+        		Diagnose.trace(resultaat.toPrintableString());
+        	}
+        	logger.log(Level.INFO, "en sla uitslagen en status op");
+        	saveUitslag(groepen.getPeriode(), groepen.getRonde(), resultaat.toPrintableString());
+        	archiveerRonde();
+        	publiceer();
+        	planSnapshot();
+        }
+    }
+
+    /**
+     * Voeg de wedstrijden van deze ronde toe aan het seizoensarchief
+     */
+    private void archiveerRonde() {
+    	Seizoensarchief a = getSeizoensarchief();
+    	if ((a != null) && (status.wedstrijden != null)) {
+    		try {
+    			a.voegToe(status.wedstrijden);
+    		} catch (IOException e) {
+    			logger.log(Level.SEVERE, "Ronde niet gearchiveerd: " + e.getMessage());
+    		}
+    	}
+    }
+
+    /**
+     * Het archief met alle verwerkte rondes van het seizoen, voor het
+     * opvragen van onderlinge resultaten.
+     * @return Het archief, of null als het niet geopend kan worden
+     */
+    public Seizoensarchief getSeizoensarchief() {
+    	synchronized (this) {
+    		if (archief == null) {
+    			try {
+    				archief = Seizoensarchief.open(archiefbestand);
+    			} catch (IOException e) {
+    				logger.log(Level.SEVERE, "Seizoensarchief niet geopend: " + e.getMessage());
+    			}
+    		}
+    		return archief;
+    	}
     }
     
     public void saveUitslag(int periode, int ronde, String uitslag) {
 		try {
 			String bestandsnaam = "Uitslag" + periode + "-" + ronde; 
 	    	logger.log(Level.INFO, "Sla uitslag op in bestand " + bestandsnaam);
-			FileWriter writer = new FileWriter(bestandsnaam + ".txt");
-			writer.write(uitslag);
-			writer.close();
-			Gson gson = new Gson();
-			String jsonString = gson.toJson(status.resultaatVerwerkt);
-			writer = new FileWriter(bestandsnaam + ".json");
-			writer.write(jsonString);
-			writer.close();
+			BestandSchrijver.schrijfTekst(uitslag, bestandsnaam + ".txt");
+			Groepen resultaat;
+			synchronized (this) {
+				resultaat = status.resultaatVerwerkt;
+			}
+			BestandSchrijver.schrijfJson(resultaat, bestandsnaam + ".json");
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -344,51 +1049,175 @@ public class IJCController {
     }
 
     /**
-     * Save state of the application to disk
+     * Save state of the application to disk. Na een geslaagde snapshot wordt
+     * het journaal geleegd. De snapshot wordt op de snapshot thread
+     * geschreven; deze methode wacht tot dat klaar is, zonder de lock van de
+     * controller vast te houden.
      * @param  unique if true, a unique file is created
      */
 	public void saveState(boolean unique) {
+		Future<?> taak;
+		synchronized (this) {
+			taak = planSnapshot();
+		}
 		try {
-			String bestandsnaam = "status.json";
-			logger.log(Level.INFO, "Sla status op in bestand " + bestandsnaam);
-			Gson gson = new Gson();
-			String jsonString = gson.toJson(status);
-			// write converted json data to a file
-			FileWriter writer = new FileWriter(bestandsnaam);
-			writer.write(jsonString);
-			writer.close();
-
+			taak.get();
 			if (unique) {
 				String s = new SimpleDateFormat("yyyyMMdd_HHmmss").format(Calendar.getInstance().getTime());
-				bestandsnaam = "status" + s + ".json";
-				logger.log(Level.INFO, "Sla status op in bestand " + bestandsnaam);
-				// write converted json data to a file
-				writer = new FileWriter(bestandsnaam);
-				writer.write(jsonString);
-				writer.close();
+				String kopie = "status" + s + ".ijc";
+				logger.log(Level.INFO, "Sla status op in bestand " + kopie);
+				// copy the file just written instead of serializing again
+				BestandSchrijver.kopieer(statusbestand, kopie);
 			}
-
-		} catch (IOException e) {
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | IOException e) {
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Exporteer de status als JSON
+	 * @param bestandsnaam Naam van het bestand
+	 */
+	public void exportStatus(String bestandsnaam) {
+		Status s;
+		synchronized (this) {
+			s = kopieStatus();
+		}
+		try {
+			logger.log(Level.INFO, "Exporteer status naar bestand " + bestandsnaam);
+			// Gepubliceerde groepen en wedstrijden worden niet meer gewijzigd,
+			// dus de kopie kan zonder lock worden weggeschreven
+			BestandSchrijver.schrijfJson(s, bestandsnaam);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void exportStatus() {
+		exportStatus(statusJsonbestand);
+	}
+
+	/**
+	 * Lees de status in. Als er nog geen binair statusbestand is, wordt
+	 * status.json gelezen; bij het volgende opslaan wordt dat omgezet.
+	 */
 	public void leesStatus() {
+		if (new File(statusbestand).exists()) {
+			try {
+		    	logger.log(Level.INFO, "Lees status uit bestand " + statusbestand);
+				vanBinair(BinaireStatus.lees(statusbestand));
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Status niet ingelezen: " + e.getMessage());
+			}
+			return;
+		}
 		try {
-			String bestandsnaam = "status.json";
+			String bestandsnaam = statusJsonbestand;
 	    	logger.log(Level.INFO, "Lees status uit bestand " + bestandsnaam);
-			Gson gson = new Gson();
-			BufferedReader br = new BufferedReader(new FileReader(bestandsnaam));
-			status = gson.fromJson(br, Status.class);
-		} catch (IOException e) {
+			BinaireStatus b = JsonLezer.leesStatus(bestandsnaam);
+			if (b != null) {
+				vanBinair(b);
+			}
+		} catch (FileNotFoundException | NoSuchFileException e) {
 			// Could not read status
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Status niet ingelezen: " + e.getMessage());
 		}
 	}
+
+	/**
+	 * Kopie van de werkversie, alleen de verwijzingen. Alleen aanroepen onder
+	 * de lock van de controller.
+	 */
+	private Status kopieStatus() {
+		Status s = new Status();
+		s.automatisch = status.automatisch;
+		s.groepen = status.groepen;
+		s.wedstrijdgroepen = status.wedstrijdgroepen;
+		s.wedstrijden = status.wedstrijden;
+		s.resultaatVerwerkt = status.resultaatVerwerkt;
+		s.journaalVolgnummer = status.journaalVolgnummer;
+		return s;
+	}
+
+	private BinaireStatus naarBinair() {
+		BinaireStatus b = new BinaireStatus();
+		b.setAutomatisch(status.automatisch);
+		b.setGroepen(status.groepen);
+		b.setWedstrijdgroepen(status.wedstrijdgroepen);
+		b.setWedstrijden(status.wedstrijden);
+		b.setResultaatVerwerkt(status.resultaatVerwerkt);
+		b.setJournaalVolgnummer(status.journaalVolgnummer);
+		return b;
+	}
+
+	private void vanBinair(BinaireStatus b) {
+		Status s = new Status();
+		s.automatisch = b.isAutomatisch();
+		s.groepen = b.getGroepen();
+		s.wedstrijdgroepen = b.getWedstrijdgroepen();
+		s.wedstrijden = b.getWedstrijden();
+		s.resultaatVerwerkt = b.getResultaatVerwerkt();
+		s.journaalVolgnummer = b.getJournaalVolgnummer();
+		status = s;
+	}
     
     public void exportToExcel() {
+    	wachtOpHerindeling();
     	logger.log(Level.INFO, "Creeer Excel bestand met wedstrijden");
     	OutputExcel oe = new OutputExcel();
-    	oe.updateExcel(status.wedstrijden);
+    	oe.updateExcel(getWedstrijden());
+    }
+
+    /**
+     * Voer een taak uit buiten de Swing event thread. Taken worden na elkaar
+     * uitgevoerd, zie Achtergrondtaken.
+     * @param taak De taak
+     * @return false als de taak is geweigerd omdat er te veel taken wachten
+     */
+    public boolean voerUitOpAchtergrond(Achtergrondtaken.Taak taak) {
+    	return achtergrond.voerUit(taak);
+    }
+
+    /**
+     * Voer een nog geplande automatische indeling direct uit en wacht tot die
+     * is gepubliceerd. Aanroepen voordat de wedstrijden worden gebruikt, en
+     * niet binnen een synchronized blok op de controller.
+     */
+    public void wachtOpHerindeling() {
+    	herindeler.voerUitEnWacht();
+    }
+
+    /**
+     * @return true als er een achtergrondtaak loopt of wacht
+     */
+    public boolean isBezig() {
+    	return achtergrond.isBezig() || herindeler.isBezig();
+    }
+
+    /**
+     * Laat een luisteraar weten dat er automatisch opnieuw is ingedeeld na
+     * een wijziging in de aanwezigheid. Wordt op de event thread aangeroepen.
+     * @param luisteraar De luisteraar
+     */
+    public void addHerindelingLuisteraar(Runnable luisteraar) {
+    	herindeler.addLuisteraar(luisteraar);
+    }
+
+    /**
+     * Sla de status op nadat alle aangeboden taken klaar zijn en wacht daarop.
+     * Bedoeld voor het afsluiten van de applicatie.
+     */
+    public void saveStateNaTaken() {
+    	wachtOpHerindeling();
+    	achtergrond.voerUitEnWacht(new Runnable() {
+			@Override
+			public void run() {
+				saveState(false);
+			}
+		});
     }
     
 }
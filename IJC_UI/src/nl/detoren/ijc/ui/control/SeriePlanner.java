@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen, Lars Dam
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.ui.control;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.detoren.ijc.data.groepen.Groep;
+import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.data.groepen.TegenstanderIndex;
+import nl.detoren.ijc.data.wedstrijden.Serie;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
+import nl.detoren.ijc.ui.util.Metingen;
+
+/**
+ * Plant een serie in met backtracking, zoals voorheen
+ * GroepenIndeler.planSerie. De volgorde waarin paren worden geprobeerd is
+ * gelijk gebleven, zodat ook de gevonden serie gelijk is. Daarbovenop:
+ *
+ * - Mislukte deelproblemen worden onthouden. Het resultaat van een stap hangt
+ * alleen af van welke spelers al gepland zijn, dus een stand die eenmaal is
+ * mislukt wordt niet opnieuw doorzocht.
+ * - Een stand waarin een ongeplande speler met geen enkele andere ongeplande
+ * speler meer kan spelen, wordt direct afgewezen.
+ * - Er is een tijdslimiet. Als die verloopt, wordt de serie met de meeste
+ * wedstrijden die tot dan toe is gevonden teruggegeven.
+ *
+ * Een SeriePlanner hoort bij een groep en is niet thread safe.
+ */
+public class SeriePlanner {
+
+	private final static Logger logger = Logger.getLogger(SeriePlanner.class.getName());
+
+	/** Standaard tijdslimiet in milliseconden */
+	public static final long STANDAARD_TIJDSLIMIET = 2000;
+
+	/** Maximaal aantal onthouden mislukte standen */
+	private static final int MAX_MISLUKT = 250000;
+
+	private final ArrayList<Speler> spelers;
+	private final TegenstanderIndex tegenstanders;
+	private final int n;
+	private final int niveau;
+	private final BitSet doorgeschoven;
+
+	private long tijdslimiet = STANDAARD_TIJDSLIMIET;
+
+	// Toestand van de lopende zoektocht
+	private int ronde;
+	private int minverschil;
+	private int ignoreTgn;
+	private BitSet[] mogelijk;
+	private HashSet<BitSet> mislukt;
+	private BitSet gepland;
+	private int[] paren; // per wedstrijd: wit, zwart en wedstrijdnummer
+	private int aantalParen;
+	private int[] besteParen;
+	private int besteAantal;
+	private long deadline;
+	private long bezocht;
+	private boolean tijdOp;
+	private boolean volledig;
+
+	public SeriePlanner(Groep groep) {
+		this.spelers = groep.getSpelers();
+		this.tegenstanders = new TegenstanderIndex(spelers);
+		this.n = spelers.size();
+		this.niveau = groep.getNiveau();
+		this.doorgeschoven = new BitSet(n);
+		for (int i = 0; i < n; i++) {
+			if (spelers.get(i).getGroep() != niveau) {
+				doorgeschoven.set(i);
+			}
+		}
+	}
+
+	public long getTijdslimiet() {
+		return tijdslimiet;
+	}
+
+	/**
+	 * @param tijdslimiet
+	 *            Maximale rekentijd voor plan() in milliseconden
+	 */
+	public void setTijdslimiet(long tijdslimiet) {
+		this.tijdslimiet = tijdslimiet;
+	}
+
+	/**
+	 * @return true als de laatste aanroep van plan() een volledige serie heeft
+	 *         opgeleverd, false als het een gedeeltelijke serie was of als er
+	 *         geen serie is gevonden
+	 */
+	public boolean isVolledig() {
+		return volledig;
+	}
+
+	/**
+	 * Plan een serie. Als er met het gevraagde minimale verschil geen serie
+	 * mogelijk is, wordt het verschil stap voor stap verlaagd tot 0.
+	 *
+	 * @param gepland
+	 *            Spelers die al zijn ingepland. Spelers die in de serie worden
+	 *            opgenomen, worden hierin op true gezet.
+	 * @param teplannen
+	 *            Aantal nog in te plannen spelers
+	 * @param minverschil
+	 *            Minimaal verschil in ranking
+	 * @param ignoreTgn
+	 *            Aantal oudste tegenstanders dat niet meetelt
+	 * @param ronde
+	 *            Ronde; in ronde 1 worden doorgeschoven spelers eerst ingepland
+	 * @return De serie, een gedeeltelijke serie als de tijd op is, of null als
+	 *         er geen serie mogelijk is
+	 */
+	public Serie plan(boolean[] gepland, int teplannen, int minverschil, int ignoreTgn, int ronde) {
+		long start = System.nanoTime();
+		Serie serie = zoekSerie(gepland, teplannen, minverschil, ignoreTgn, ronde);
+		Metingen.meet(Metingen.Stap.PLANSERIE, start);
+		return serie;
+	}
+
+	private Serie zoekSerie(boolean[] gepland, int teplannen, int minverschil, int ignoreTgn, int ronde) {
+		this.ronde = ronde;
+		this.ignoreTgn = ignoreTgn;
+		this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tijdslimiet);
+		this.tijdOp = false;
+		this.volledig = false;
+		this.paren = new int[3 * (n / 2 + 1)];
+		this.besteParen = new int[paren.length];
+		this.besteAantal = 0;
+		for (int mv = minverschil; mv >= 0 && !tijdOp; mv--) {
+			this.minverschil = mv;
+			this.gepland = new BitSet(n);
+			for (int i = 0; i < n; i++) {
+				if (gepland[i]) {
+					this.gepland.set(i);
+				}
+			}
+			this.mislukt = new HashSet<>();
+			this.aantalParen = 0;
+			this.bezocht = 0;
+			bepaalMogelijkeParen();
+			boolean gevonden = zoek(teplannen, 1);
+			logger.log(Level.FINE, "planSerie mv:" + mv + ",itn:" + ignoreTgn + ",niv:" + niveau + " " + bezocht
+					+ " standen, " + mislukt.size() + " mislukt, gevonden: " + gevonden);
+			if (gevonden) {
+				volledig = true;
+				return maakSerie(paren, aantalParen, gepland);
+			}
+		}
+		if (tijdOp) {
+			logger.log(Level.WARNING, "Tijdslimiet van " + tijdslimiet + " ms bereikt bij indelen groep " + niveau
+					+ ", gedeeltelijke serie met " + besteAantal + " wedstrijden");
+			return maakSerie(besteParen, besteAantal, gepland);
+		}
+		return null;
+	}
+
+	/**
+	 * Bepaal voor iedere speler met welke spelers hij ooit een paar kan vormen,
+	 * ongeacht welke tak van de zoektocht het paar maakt. Dit is een
+	 * bovengrens, bedoeld om kansloze standen vroeg af te wijzen.
+	 */
+	private void bepaalMogelijkeParen() {
+		mogelijk = new BitSet[n];
+		for (int i = 0; i < n; i++) {
+			mogelijk[i] = new BitSet(n);
+		}
+		for (int p = 0; p < n; p++) {
+			for (int q = p + 1; q < n; q++) {
+				// Een doorgeschoven speler krijgt altijd een partner boven zich
+				boolean kan = isGewoonPaar(p, q) || (ronde == 1 && doorgeschoven.get(q) && isDoorgeschovenPaar(q, p));
+				if (kan) {
+					mogelijk[p].set(q);
+					mogelijk[q].set(p);
+				}
+			}
+		}
+	}
+
+	private boolean isGewoonPaar(int plannen, int partner) {
+		return !tegenstanders.isGespeeldTegen(plannen, partner, ignoreTgn)
+				&& (spelers.get(partner).getId() - spelers.get(plannen).getId() >= minverschil);
+	}
+
+	private boolean isDoorgeschovenPaar(int doorgeschovenID, int partner) {
+		return !tegenstanders.isGespeeldTegen(doorgeschovenID, partner, minverschil)
+				&& (spelers.get(partner).getGroep() != spelers.get(doorgeschovenID).getGroep());
+	}
+
+	private boolean zoek(int teplannen, int diepte) {
+		// Laatste ronde?
+		if (teplannen < 2) {
+			return true;
+		}
+		if (tijdOp || (((++bezocht & 0xFF) == 0) && (System.nanoTime() > deadline))) {
+			tijdOp = true;
+			return false;
+		}
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.log(Level.FINEST, "diepte:" + diepte + ",vanaf:" + gepland.nextClearBit(0) + "#" + teplannen
+					+ "mv:" + minverschil + ",itn:" + ignoreTgn + ",niv:" + niveau);
+		}
+		if (mislukt.contains(gepland)) {
+			return false;
+		}
+		if (!isHaalbaar(teplannen)) {
+			onthoudMislukt();
+			return false;
+		}
+		// Eerst doorgeschoven spelers inplannen
+		// Maar deze speciale behandeling geldt alleen de eerste ronde
+		int doorgeschovenID = laatsteOngeplandeDoorgeschovenspeler();
+		if ((doorgeschovenID >= 0) && (ronde == 1)) {
+			int partner = laatsteOngeplandeSpeler(doorgeschovenID - 1);
+			while (partner != -1) {
+				if (isDoorgeschovenPaar(doorgeschovenID, partner)) {
+					if (probeer(doorgeschovenID, partner, diepte, teplannen, diepte)) {
+						return true;
+					}
+					if (tijdOp) {
+						return false;
+					}
+				}
+				partner = laatsteOngeplandeSpeler(partner - 1);
+			}
+		} else {
+			// Inplannen 'gewone' speler
+			int plannenID = eersteOngeplandeSpeler(0);
+			int partner = eersteOngeplandeSpeler(plannenID + 1);
+			while (partner != -1) {
+				if (isGewoonPaar(plannenID, partner)) {
+					int nummer = spelers.get(plannenID).getId() * 100 + spelers.get(partner).getId();
+					if (probeer(plannenID, partner, nummer, teplannen, diepte)) {
+						return true;
+					}
+					if (tijdOp) {
+						return false;
+					}
+				}
+				partner = eersteOngeplandeSpeler(partner + 1);
+			}
+		}
+		onthoudMislukt();
+		return false;
+	}
+
+	/**
+	 * Plan wit tegen zwart en zoek verder. Bij succes blijft het paar staan.
+	 */
+	private boolean probeer(int wit, int zwart, int nummer, int teplannen, int diepte) {
+		gepland.set(wit);
+		gepland.set(zwart);
+		int pos = 3 * aantalParen++;
+		paren[pos] = wit;
+		paren[pos + 1] = zwart;
+		paren[pos + 2] = nummer;
+		if (aantalParen > besteAantal) {
+			besteAantal = aantalParen;
+			System.arraycopy(paren, 0, besteParen, 0, 3 * aantalParen);
+		}
+		if (zoek(teplannen - 2, diepte + 1)) {
+			return true;
+		}
+		aantalParen--;
+		gepland.clear(wit);
+		gepland.clear(zwart);
+		return false;
+	}
+
+	/**
+	 * Kan deze stand nog tot een volledige serie leiden? Als alle ongeplande
+	 * spelers nog ingepland moeten worden, moet ieder van hen nog minstens
+	 * een mogelijke tegenstander hebben.
+	 */
+	private boolean isHaalbaar(int teplannen) {
+		int ongepland = n - gepland.cardinality();
+		int nodig = 2 * (teplannen / 2);
+		if (nodig > ongepland) {
+			return false;
+		}
+		if (nodig < ongepland) {
+			return true;
+		}
+		BitSet vrij = new BitSet(n);
+		vrij.set(0, n);
+		vrij.andNot(gepland);
+		for (int i = vrij.nextSetBit(0); i >= 0; i = vrij.nextSetBit(i + 1)) {
+			if (!mogelijk[i].intersects(vrij)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void onthoudMislukt() {
+		if (!tijdOp && mislukt.size() < MAX_MISLUKT) {
+			mislukt.add((BitSet) gepland.clone());
+		}
+	}
+
+	private int eersteOngeplandeSpeler(int start) {
+		if ((start < 0) || (start >= n)) {
+			return -1;
+		}
+		int i = gepland.nextClearBit(start);
+		return i < n ? i : -1;
+	}
+
+	private int laatsteOngeplandeSpeler(int start) {
+		if ((start < 0) || (start >= n)) {
+			return -1;
+		}
+		return gepland.previousClearBit(start);
+	}
+
+	private int laatsteOngeplandeDoorgeschovenspeler() {
+		for (int i = doorgeschoven.previousSetBit(n - 1); i > 0; i = doorgeschoven.previousSetBit(i - 1)) {
+			if (!gepland.get(i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private Serie maakSerie(int[] wedstrijden, int aantal, boolean[] gepland) {
+		Serie serie = new Serie();
+		for (int k = 0; k < aantal; k++) {
+			int wit = wedstrijden[3 * k];
+			int zwart = wedstrijden[3 * k + 1];
+			serie.addWedstrijd(new Wedstrijd(wedstrijden[3 * k + 2], spelers.get(wit), spelers.get(zwart), 0));
+			gepland[wit] = true;
+			gepland[zwart] = true;
+		}
+		return serie;
+	}
+}
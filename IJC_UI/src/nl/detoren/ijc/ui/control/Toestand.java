@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+package nl.detoren.ijc.ui.control;
+
+import nl.detoren.ijc.data.groepen.Groepen;
+import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
+
+/**
+ * Een gepubliceerde versie van de groepen, wedstrijdgroepen en wedstrijden.
+ *
+ * De controller vervangt de toestand in zijn geheel na iedere wijziging.
+ * Wijzigingen in groepen, spelers en wedstrijden gebeuren op een kopie
+ * (copy-on-write), zodat een lezer die een toestand heeft opgevraagd, zonder
+ * lock met een consistente versie kan werken terwijl de volgende versie wordt
+ * gemaakt. Objecten uit een gepubliceerde toestand worden daarom nooit meer
+ * gewijzigd; ongewijzigde delen worden gedeeld met de volgende versie.
+ *
+ * @author Leo van der Meulen
+ */
+public final class Toestand {
+
+    /** Toestand voordat er iets is ingelezen */
+    public static final Toestand LEEG = new Toestand(0, null, null, null);
+
+    private final long versie;
+
+    private final Groepen groepen;
+
+    private final Groepen wedstrijdgroepen;
+
+    private final Wedstrijden wedstrijden;
+
+    private Toestand(long versie, Groepen groepen, Groepen wedstrijdgroepen, Wedstrijden wedstrijden) {
+        this.versie = versie;
+        this.groepen = groepen;
+        this.wedstrijdgroepen = wedstrijdgroepen;
+        this.wedstrijden = wedstrijden;
+    }
+
+    /**
+     * Maak de opvolger van deze toestand
+     */
+    Toestand volgende(Groepen groepen, Groepen wedstrijdgroepen, Wedstrijden wedstrijden) {
+        return new Toestand(versie + 1, groepen, wedstrijdgroepen, wedstrijden);
+    }
+
+    /**
+     * @return volgnummer van deze versie, hoger is nieuwer
+     */
+    public long getVersie() {
+        return versie;
+    }
+
+    public Groepen getGroepen() {
+        return groepen;
+    }
+
+    public Groepen getWedstrijdgroepen() {
+        return wedstrijdgroepen;
+    }
+
+    public Wedstrijden getWedstrijden() {
+        return wedstrijden;
+    }
+}
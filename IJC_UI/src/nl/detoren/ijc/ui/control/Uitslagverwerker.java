@@ -16,6 +16,10 @@
 package nl.detoren.ijc.ui.control;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,6 +31,7 @@ import nl.detoren.ijc.data.wedstrijden.Serie;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
 import nl.detoren.ijc.io.GroepenReader;
+import nl.detoren.ijc.ui.util.Diagnose;
 
 /**
  * 
@@ -47,13 +52,16 @@ public class Uitslagverwerker {
 		Groepen updateGroepen = new Groepen();
 		updateGroepen.setPeriode(spelersgroepen.getPeriode());
 		updateGroepen.setRonde(spelersgroepen.getRonde());
+		HashMap<Long, List<Wedstrijd>> perSpeler = verzamelWedstrijden(wedstrijden);
 		for (Groep groep : spelersgroepen.getGroepen()) {
 			logger.log(Level.INFO, "Verwerk uitslag voor groep " + groep.getNaam());
 			Groep bijgewerkt = new Groep();
 			bijgewerkt.setNiveau(groep.getNiveau());
 			for (Speler speler : groep.getSpelers()) {
-				logger.log(Level.INFO, "Speler " + speler.getNaam());
-				Speler update = updateSpeler(speler, wedstrijden);
+				if (logger.isLoggable(Level.FINE)) {
+					logger.log(Level.FINE, "Speler " + speler.getNaam());
+				}
+				Speler update = updateSpeler(speler, getWedstrijden(perSpeler, speler));
 				bijgewerkt.addSpeler(update);
 			}
 			updateGroepen.addGroep(bijgewerkt);
@@ -67,18 +75,22 @@ public class Uitslagverwerker {
 	 * 
 	 * @param speler
 	 *            Speler om bij te werken
-	 * @param wedstrijden
-	 *            Alle wedstrijden
+	 * @param spelerWedstrijden
+	 *            De wedstrijden van deze speler
 	 * @return Bijgewerkte speler
 	 */
-	private Speler updateSpeler(Speler speler, Wedstrijden wedstrijden) {
-		ArrayList<Wedstrijd> spelerWedstrijden = getWedstrijdenVoorSpeler(speler, wedstrijden);
+	private Speler updateSpeler(Speler speler, List<Wedstrijd> spelerWedstrijden) {
 		Speler nieuw = new Speler(speler);
 		// Standaardpunt
 		int puntenbij = 1;
-		System.out.println("      Aanwezigheidspunt :" + puntenbij);
-		for (Wedstrijd w : spelerWedstrijden) {
-			System.out.println("    Wedstrijd :" + w.toString());
+		Diagnose.trace(regel("      Aanwezigheidspunt :", puntenbij));
+		for (final Wedstrijd w : spelerWedstrijden) {
+			Diagnose.trace(new Supplier<String>() {
+				@Override
+				public String get() {
+					return "    Wedstrijd :" + w;
+				}
+			});
 			int resultaat = 0; // TOTO style -> 0 = onbekend
 			Speler tegenstander = w.getWit().gelijkAan(speler) ? w.getZwart() : w.getWit();
 			// RATING EN PUNTEN
@@ -88,44 +100,49 @@ public class Uitslagverwerker {
 			} else if (w.getUitslag() == Wedstrijd.GELIJKSPEL) {
 				puntenbij += 1;
 				resultaat = 3;
-				System.out.println("      Gelijkspel     : " + puntenbij);
+				Diagnose.trace(regel("      Gelijkspel     : ", puntenbij));
 				int ratingoud = nieuw.getRating();
 				nieuw.setRating(nieuweRatingOSBO(nieuw.getRating(), tegenstander.getRating(), 3));
-				System.out.println("      Rating         : " + (nieuw.getRating() - ratingoud));
+				Diagnose.trace(regel("      Rating         : ", nieuw.getRating() - ratingoud));
 			} else if ((w.getUitslag() == Wedstrijd.WIT_WINT) && (w.getWit().gelijkAan(speler))) {
 				puntenbij += 2;
 				resultaat = 1;
-				System.out.println("      Winst met wit  : " + puntenbij);
+				Diagnose.trace(regel("      Winst met wit  : ", puntenbij));
 				int ratingoud = nieuw.getRating();
 				nieuw.setRating(nieuweRatingOSBO(nieuw.getRating(), tegenstander.getRating(), 1));
-				System.out.println("      Rating         :" + (nieuw.getRating() - ratingoud));
+				Diagnose.trace(regel("      Rating         :", nieuw.getRating() - ratingoud));
 			} else if ((w.getUitslag() == Wedstrijd.ZWART_WINT) && (w.getZwart().gelijkAan(speler))) {
 				puntenbij += 2;
 				resultaat = 1;
-				System.out.println("      Winst met zwart :" + puntenbij);
+				Diagnose.trace(regel("      Winst met zwart :", puntenbij));
 				int ratingoud = nieuw.getRating();
 				nieuw.setRating(nieuweRatingOSBO(nieuw.getRating(), tegenstander.getRating(), 1));
-				System.out.println("      Rating :" + (nieuw.getRating() - ratingoud));
+				Diagnose.trace(regel("      Rating :", nieuw.getRating() - ratingoud));
 			} else {
 				// verlies
 				resultaat = 2;
-				System.out.println("      Verlies        :" + puntenbij);
+				Diagnose.trace(regel("      Verlies        :", puntenbij));
 				int ratingoud = nieuw.getRating();
 				nieuw.setRating(nieuweRatingOSBO(nieuw.getRating(), tegenstander.getRating(), 2));
-				System.out.println("      Rating         :" + (nieuw.getRating() - ratingoud));
+				Diagnose.trace(regel("      Rating         :", nieuw.getRating() - ratingoud));
 			}
 			// WITVOORKEUR
 			if (w.getWit().gelijkAan(speler)) {
 				nieuw.setWitvoorkeur(nieuw.getWitvoorkeur()-1);
-				System.out.println("      Witvoorkeur -1 :" + nieuw.getWitvoorkeur());
+				Diagnose.trace(regel("      Witvoorkeur -1 :", nieuw.getWitvoorkeur()));
 			} else {
 				nieuw.setWitvoorkeur(nieuw.getWitvoorkeur()+1);
-				System.out.println("      Witvoorkeur +1 :" + nieuw.getWitvoorkeur());
+				Diagnose.trace(regel("      Witvoorkeur +1 :", nieuw.getWitvoorkeur()));
 			}
 			// TEGENSTANDERS
 			String res = resultaat == 1 ? "+" : (resultaat == 2 ? "-" : (resultaat == 3 ? "=" : "?"));
 			nieuw.addTegenstander(tegenstander.getInitialen()+res);			
-			System.out.println("      Tegenstanders  :" + nieuw.getTegenstandersString());
+			Diagnose.trace(new Supplier<String>() {
+				@Override
+				public String get() {
+					return "      Tegenstanders  :" + nieuw.getTegenstandersString();
+				}
+			});
 		}
 		puntenbij = Math.min(puntenbij, 5); // niet meer dan 5 punten er bij
 		if (spelerWedstrijden.size() == 1) {
@@ -139,10 +156,10 @@ public class Uitslagverwerker {
 			if (!nieuw.isAfwezigheidspunt()) {
 				puntenbij += 2;
 				nieuw.setAfwezigheidspunt(true);
-				System.out.println("      Eerste keer afw : 2");
+				Diagnose.trace("      Eerste keer afw : 2");
 			}
 		}
-		System.out.println("      Punten bij tot :" + puntenbij);
+		Diagnose.trace(regel("      Punten bij tot :", puntenbij));
 		nieuw.setPunten(nieuw.getPunten() + puntenbij);
 		if (nieuw.getRating() < 100) nieuw.setRating(100);
 		// Tegenstanders
@@ -151,28 +168,82 @@ public class Uitslagverwerker {
 	}
 
 	/**
-	 * Geef voor een specifieke speler alle wedstrijden die hij gespeeld heeft
+	 * Traceregel met een getal. De regel wordt pas opgebouwd als er een
+	 * tracebestand is.
+	 */
+	private static Supplier<String> regel(final String tekst, final int waarde) {
+		return new Supplier<String>() {
+			@Override
+			public String get() {
+				return tekst + waarde;
+			}
+		};
+	}
+
+	private static Supplier<String> regel(final String tekst, final double waarde) {
+		return new Supplier<String>() {
+			@Override
+			public String get() {
+				return tekst + waarde;
+			}
+		};
+	}
+
+	/**
+	 * Verdeel alle wedstrijden van een speelavond in n keer over de
+	 * spelers. Per speler staan de wedstrijden in dezelfde volgorde als in
+	 * het wedstrijdschema: per groep eerst de series en dan het trio.
 	 * 
-	 * @param speler
-	 *            De speler
 	 * @param wedstrijden
 	 *            Alle wedstrijden van een speelavond
-	 * @return wedstrijden gespeeld door speler
+	 * @return wedstrijden per spelersleutel
 	 */
-	private ArrayList<Wedstrijd> getWedstrijdenVoorSpeler(Speler speler, Wedstrijden wedstrijden) {
-		ArrayList<Wedstrijd> result = new ArrayList<>();
+	private HashMap<Long, List<Wedstrijd>> verzamelWedstrijden(Wedstrijden wedstrijden) {
+		HashMap<Long, List<Wedstrijd>> result = new HashMap<>();
 		for (Groepswedstrijden gws : wedstrijden.getGroepswedstrijden()) {
 			for (Serie serie : gws.getSeries()) {
 				for (Wedstrijd w : serie.getWedstrijden()) {
-					if (w.getWit().gelijkAan(speler) || w.getZwart().gelijkAan(speler)) {
-						result.add(w);
-					}
+					voegToe(result, w);
 				}
 			}
 			for (Wedstrijd w : gws.getTriowedstrijden()) {
-				if (w.getWit().gelijkAan(speler) || w.getZwart().gelijkAan(speler)) {
-					result.add(w);
-				}
+				voegToe(result, w);
+			}
+		}
+		return result;
+	}
+
+	private void voegToe(HashMap<Long, List<Wedstrijd>> perSpeler, Wedstrijd w) {
+		long wit = w.getWit().getSleutel();
+		long zwart = w.getZwart().getSleutel();
+		voegToe(perSpeler, wit, w);
+		if (zwart != wit) {
+			voegToe(perSpeler, zwart, w);
+		}
+	}
+
+	private void voegToe(HashMap<Long, List<Wedstrijd>> perSpeler, long sleutel, Wedstrijd w) {
+		List<Wedstrijd> lijst = perSpeler.get(sleutel);
+		if (lijst == null) {
+			lijst = new ArrayList<>();
+			perSpeler.put(sleutel, lijst);
+		}
+		lijst.add(w);
+	}
+
+	/**
+	 * Geef de wedstrijden van een speler. Onder dezelfde sleutel kunnen ook
+	 * wedstrijden staan van de speler in een andere groep; die vallen af.
+	 */
+	private List<Wedstrijd> getWedstrijden(HashMap<Long, List<Wedstrijd>> perSpeler, Speler speler) {
+		List<Wedstrijd> lijst = perSpeler.get(speler.getSleutel());
+		if (lijst == null) {
+			return Collections.emptyList();
+		}
+		ArrayList<Wedstrijd> result = new ArrayList<>(lijst.size());
+		for (Wedstrijd w : lijst) {
+			if (w.getWit().gelijkAan(speler) || w.getZwart().gelijkAan(speler)) {
+				result.add(w);
 			}
 		}
 		return result;
@@ -18,9 +18,6 @@ package nl.detoren.ijc.ui.model;
 import java.util.ArrayList;
 import javax.swing.JComponent;
 import javax.swing.table.AbstractTableModel;
-import nl.detoren.ijc.data.groepen.Groep;
-import nl.detoren.ijc.data.groepen.Speler;
-import nl.detoren.ijc.data.wedstrijden.Groepswedstrijden;
 import nl.detoren.ijc.data.wedstrijden.Serie;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
 import nl.detoren.ijc.data.wedstrijden.Wedstrijden;
@@ -159,59 +156,29 @@ public class SerieModel extends AbstractTableModel {
         component.repaint();
     }
 
+    // Wijzigingen in het speelschema gaan via de controller, die ze in een
+    // kopie doorvoert en dan publiceert
+
     public void setSpeler(int wedstrijdID, int spelerID, boolean wit) {
-        Groepswedstrijden gws = controller.getWedstrijden().getGroepswedstrijdenNiveau(groepID);
-        Serie serie = gws.getSerie(serieID);
-        Wedstrijd ws = serie.getWedstrijd(wedstrijdID);
-        if (ws == null) {
-            return;
-        }
-        Groep groep = controller.getWedstrijdGroepByID(groepID);
-        if (groep == null) {
-            return;
-        }
-        Speler s = groep.getSpelerByID(spelerID);
-        if (s == null) {
-            return;
-        }
-        if (wit) {
-            ws.setWit(s);
-        } else {
-            ws.setZwart(s);
-        }
+        controller.setWedstrijdSpeler(groepID, serieID, wedstrijdID, spelerID, wit);
         component.repaint();
     }
 
     public void insertWedstrijd(int ID) {
-        Serie serie = controller.getWedstrijden().getGroepswedstrijdenNiveau(groepID).getSerie(serieID);
-        Wedstrijd w = new Wedstrijd(0, Speler.dummySpeler(groepID), Speler.dummySpeler(groepID), 0);
-        if (serie == null) {
-            Groepswedstrijden gws = controller.getWedstrijden().getGroepswedstrijdenNiveau(groepID);
-            ArrayList<Wedstrijd> legeLijst = new ArrayList<>();
-            if (serieID == 3) {
-                gws.setTriowedstrijden(legeLijst);
-                gws.addTrioWedstrijd(w);
-            } else {
-                Serie s = new Serie();
-                s.setNummer(serieID);
-                s.setWedstrijden(legeLijst);
-                gws.addSerie(s);
-                s.addWedstrijd(w);
-            }
-        } else {
-            serie.addWestrijd(w, ID);
-        }
+        controller.voegWedstrijdToe(groepID, serieID, ID);
         component.repaint();
     }
 
-    public Wedstrijd getWedstrijd(int idx) {
-        Serie serie = controller.getWedstrijden().getGroepswedstrijdenNiveau(groepID).getSerie(serieID);
-        return serie.getWedstrijd(idx);
+    public void wisSpelers(int idx) {
+        controller.wisWedstrijdSpelers(groepID, serieID, idx);
+    }
+
+    public void wisselSpelers(int idx) {
+        controller.wisselWedstrijdSpelers(groepID, serieID, idx);
     }
 
     public void verwijderWedstrijd(int idx) {
-        Serie serie = controller.getWedstrijden().getGroepswedstrijdenNiveau(groepID).getSerie(serieID);
-        serie.getWedstrijden().remove(idx);
+        controller.verwijderWedstrijd(groepID, serieID, idx);
     }
     
     public void forceRepaint() {
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+/**
+ * Paringen via minimalisatie van de triagonaal van de fuzzy matrix. Spelers die
+ * na het verwisselen van rijen en kolommen naast elkaar staan, spelen tegen
+ * elkaar. Het trio wordt na de minimalisatie bepaald met
+ * minimizetriagonal.gettrio().
+ */
+public class BandPairingEngine implements PairingEngine {
+
+	private final boolean incrementeel;
+	private final int maxIteraties;
+	private int trio;
+	private int iteraties;
+	private int swaps;
+
+	/**
+	 * @param incrementeel
+	 *            true voor IncrementalMinimizer, false voor minimizetriagonal
+	 * @param maxIteraties
+	 *            maximum aantal sweeps van de minimalisatie
+	 */
+	public BandPairingEngine(boolean incrementeel, int maxIteraties) {
+		this.incrementeel = incrementeel;
+		this.maxIteraties = maxIteraties;
+	}
+
+	@Override
+	public int[][] optimaliseer(int A[][], int indexrow) {
+		int tri[][];
+		if (incrementeel) {
+			IncrementalMinimizer minimizer = new IncrementalMinimizer(A, indexrow);
+			minimizer.Iterminimizetriagonal(maxIteraties);
+			tri = minimizer.getA();
+			iteraties = minimizer.getIterations();
+			swaps = minimizer.getSwaps();
+		} else {
+			// minimizetriagonal werkt altijd met een indexrow van 1
+			minimizetriagonal triagonal = new minimizetriagonal();
+			triagonal.setA(A);
+			triagonal.setOrder(new int[A.length]);
+			triagonal.setIterations(maxIteraties);
+			triagonal.Iterminimizetriagonal();
+			tri = triagonal.getA();
+			iteraties = triagonal.getUitgevoerdeIteraties();
+			swaps = triagonal.getAantalSwaps();
+		}
+		trio = minimizetriagonal.gettrio(tri, indexrow);
+		return tri;
+	}
+
+	@Override
+	public int getTrio() {
+		return trio;
+	}
+
+	@Override
+	public int getIteraties() {
+		return iteraties;
+	}
+
+	@Override
+	public int getSwaps() {
+		return swaps;
+	}
+
+}
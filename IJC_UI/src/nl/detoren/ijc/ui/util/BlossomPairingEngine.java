@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exacte paringen: de perfecte matching met de laagste totale kosten uit de
+ * fuzzy matrix, bepaald met het blossom algoritme (MaxWeightMatching). De
+ * kosten van een paring zijn, net als bij de triagonaal, de som van beide
+ * richtingen A[a][b] + A[b][a].
+ *
+ * Bij een oneven aantal spelers wordt het trio als onderdeel van de
+ * optimalisatie gekozen. Kandidaten zijn drie opeenvolgende spelers in de
+ * volgorde van de matrix (de ranglijst). Voor iedere kandidaat worden de
+ * kosten van de drie trio-partijen opgeteld bij de optimale matching van de
+ * overige spelers; de kandidaat met de laagste totale kosten wint. Kandidaten
+ * waarvan de triokosten plus een ondergrens voor de rest al boven de beste
+ * gevonden indeling uitkomen, worden overgeslagen.
+ *
+ * In het resultaat staat een eventueel trio op positie 0, 1 en 2 (getTrio()
+ * geeft dan 1), gevolgd door de paren.
+ */
+public class BlossomPairingEngine implements PairingEngine {
+
+	private final static Logger logger = Logger.getLogger(BlossomPairingEngine.class.getName());
+
+	private int trio;
+	private int kosten;
+
+	@Override
+	public int[][] optimaliseer(int A[][], int indexrow) {
+		int n = A.length;
+		int c[][] = new int[n][n];
+		for (int a = 0; a < n; a++) {
+			for (int b = a + 1; b < n; b++) {
+				c[a][b] = c[b][a] = A[a][indexrow + b] + A[b][indexrow + a];
+			}
+		}
+		int volgorde[];
+		if ((n & 1) == 0) {
+			int mate[] = match(c, alle(n));
+			volgorde = paren(mate, alle(n), new int[0]);
+			kosten = som(c, volgorde, 0);
+			trio = 0;
+		} else {
+			// Kandidaten op volgorde van triokosten, zodat een goede indeling
+			// vroeg gevonden wordt en de rest met de ondergrens afvalt
+			Integer middens[] = new Integer[Math.max(n - 2, 0)];
+			for (int m = 1; m < n - 1; m++) {
+				middens[m - 1] = m;
+			}
+			final int kc[][] = c;
+			Arrays.sort(middens, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer m1, Integer m2) {
+					return Integer.compare(triokosten(kc, m1), triokosten(kc, m2));
+				}
+			});
+			int beste[] = null;
+			int besteKosten = Integer.MAX_VALUE;
+			for (int m : middens) {
+				int t[] = { m - 1, m, m + 1 };
+				int triokosten = triokosten(c, m);
+				int rest[] = zonder(n, t);
+				if (triokosten + ondergrens(c, rest) >= besteKosten) {
+					continue;
+				}
+				int kandidaat[] = paren(match(c, rest), rest, t);
+				int totaal = triokosten + som(c, kandidaat, 3);
+				if (totaal < besteKosten) {
+					besteKosten = totaal;
+					beste = kandidaat;
+				}
+			}
+			if (beste == null) {
+				// Minder dan drie spelers, geen indeling mogelijk
+				volgorde = alle(n);
+				kosten = 0;
+				trio = 0;
+			} else {
+				volgorde = beste;
+				kosten = besteKosten;
+				trio = 1;
+			}
+		}
+		logger.log(Level.FINE, "Matching met kosten " + kosten + " voor " + n + " spelers.");
+		return herschik(A, indexrow, volgorde);
+	}
+
+	@Override
+	public int getTrio() {
+		return trio;
+	}
+
+	@Override
+	public int getIteraties() {
+		return 0;
+	}
+
+	@Override
+	public int getSwaps() {
+		return 0;
+	}
+
+	/**
+	 * @return totale kosten van de laatst gevonden indeling, inclusief trio
+	 */
+	public int getKosten() {
+		return kosten;
+	}
+
+	private static int triokosten(int c[][], int m) {
+		return c[m - 1][m] + c[m][m + 1] + c[m - 1][m + 1];
+	}
+
+	/**
+	 * Ondergrens voor de kosten van een perfecte matching tussen de gegeven
+	 * rijen: iedere speler draagt minimaal de helft van zijn goedkoopste paring
+	 * bij.
+	 */
+	private static int ondergrens(int c[][], int rijen[]) {
+		int som = 0;
+		for (int i = 0; i < rijen.length; i++) {
+			int min = Integer.MAX_VALUE;
+			for (int j = 0; j < rijen.length; j++) {
+				if (i != j) {
+					min = Math.min(min, c[rijen[i]][rijen[j]]);
+				}
+			}
+			som += min;
+		}
+		return rijen.length > 1 ? som / 2 : 0;
+	}
+
+	/**
+	 * Minimum kosten perfecte matching tussen de gegeven rijen. De kosten
+	 * worden omgezet naar gewichten (max - kosten + 1), zodat de maximum weight
+	 * matching met maximale cardinaliteit de goedkoopste perfecte matching is.
+	 *
+	 * @return mate[i] is de positie in rijen van de tegenstander van rijen[i]
+	 */
+	private static int[] match(int c[][], int rijen[]) {
+		int m = rijen.length;
+		int max = 0;
+		for (int i = 0; i < m; i++) {
+			for (int j = i + 1; j < m; j++) {
+				max = Math.max(max, c[rijen[i]][rijen[j]]);
+			}
+		}
+		int w[][] = new int[m][m];
+		for (int i = 0; i < m; i++) {
+			for (int j = i + 1; j < m; j++) {
+				w[i][j] = w[j][i] = max + 1 - c[rijen[i]][rijen[j]];
+			}
+		}
+		return new MaxWeightMatching(w).solve();
+	}
+
+	/**
+	 * Zet de matching om in een volgorde van rijen: eerst het trio, dan de
+	 * paren in volgorde van de hoogst geplaatste speler.
+	 */
+	private static int[] paren(int mate[], int rijen[], int trio[]) {
+		int volgorde[] = new int[trio.length + rijen.length];
+		int p = 0;
+		for (int t : trio) {
+			volgorde[p++] = t;
+		}
+		for (int i = 0; i < rijen.length; i++) {
+			if (mate[i] > i) {
+				volgorde[p++] = rijen[i];
+				volgorde[p++] = rijen[mate[i]];
+			}
+		}
+		return volgorde;
+	}
+
+	private static int som(int c[][], int volgorde[], int vanaf) {
+		int s = 0;
+		for (int k = vanaf; k + 1 < volgorde.length; k += 2) {
+			s += c[volgorde[k]][volgorde[k + 1]];
+		}
+		return s;
+	}
+
+	private static int[] alle(int n) {
+		int rijen[] = new int[n];
+		for (int i = 0; i < n; i++) {
+			rijen[i] = i;
+		}
+		return rijen;
+	}
+
+	private static int[] zonder(int n, int trio[]) {
+		int rijen[] = new int[n - trio.length];
+		int p = 0;
+		for (int i = 0; i < n; i++) {
+			if (i != trio[0] && i != trio[1] && i != trio[2]) {
+				rijen[p++] = i;
+			}
+		}
+		return rijen;
+	}
+
+	/**
+	 * Bouw de matrix op met rijen en kolommen in de gegeven volgorde, in
+	 * hetzelfde formaat als minimizetriagonal.getA() oplevert.
+	 */
+	private static int[][] herschik(int A[][], int indexrow, int volgorde[]) {
+		int n = volgorde.length;
+		int tri[][] = new int[n][];
+		for (int p = 0; p < n; p++) {
+			int rij[] = A[volgorde[p]];
+			int nieuw[] = new int[rij.length];
+			for (int c = 0; c < indexrow; c++) {
+				nieuw[c] = rij[c];
+			}
+			for (int q = 0; q < n; q++) {
+				nieuw[indexrow + q] = rij[indexrow + volgorde[q]];
+			}
+			tri[p] = nieuw;
+		}
+		return tri;
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diagnostische uitvoer van het indelen: matrices, trio's, wedstrijden en de
+ * verwerking van uitslagen. Deze uitvoer ging vroeger naar de console; nu
+ * gaat hij alleen naar een tracebestand, en alleen als daarom is gevraagd met
+ * de systeemproperty ijc.trace:
+ *
+ * -Dijc.trace=true schrijft naar trace_yyyyMMdd_HHmmss.txt,
+ * -Dijc.trace=bestand.txt schrijft naar het opgegeven bestand.
+ *
+ * Zonder die property doet trace niets. Regels worden in een wachtrij gezet
+ * en door een eigen thread weggeschreven, zodat het indelen niet op de schijf
+ * hoeft te wachten. Is de wachtrij vol, dan vervalt de regel; het aantal
+ * vervallen regels staat aan het eind van het bestand.
+ *
+ * Let op: bij trace(formaat, args) wordt alleen het opmaken uitgesteld; de
+ * argumenten zelf worden altijd uitgerekend. Gebruik in lussen daarom
+ * trace(Supplier), die de regel pas opbouwt als er een tracebestand is, of
+ * if (Diagnose.isTrace()).
+ */
+public final class Diagnose {
+
+	private final static Logger logger = Logger.getLogger(Diagnose.class.getName());
+
+	/** Systeemproperty die het tracebestand aanzet */
+	public static final String TRACE_PROPERTY = "ijc.trace";
+
+	/** Maximaal aantal regels dat op wegschrijven wacht */
+	private static final int MAX_WACHTEND = 10000;
+
+	private static final TraceBestand trace = open(System.getProperty(TRACE_PROPERTY));
+
+	private Diagnose() {
+	}
+
+	/**
+	 * @return true als er een tracebestand wordt geschreven
+	 */
+	public static boolean isTrace() {
+		return trace != null;
+	}
+
+	/**
+	 * Schrijf een regel naar het tracebestand
+	 */
+	public static void trace(String regel) {
+		if (trace != null) {
+			trace.schrijf(regel);
+		}
+	}
+
+	/**
+	 * Schrijf een regel naar het tracebestand. De regel wordt alleen
+	 * opgemaakt als er een tracebestand is.
+	 *
+	 * @param formaat
+	 *            Formaat zoals bij String.format
+	 * @param args
+	 *            Argumenten
+	 */
+	public static void trace(String formaat, Object... args) {
+		if (trace != null) {
+			trace.schrijf(String.format(formaat, args));
+		}
+	}
+
+	/**
+	 * Schrijf een regel naar het tracebestand. De regel wordt alleen
+	 * opgebouwd als er een tracebestand is.
+	 *
+	 * @param regel
+	 *            Levert de regel
+	 */
+	public static void trace(Supplier<String> regel) {
+		if (trace != null) {
+			trace.schrijf(regel.get());
+		}
+	}
+
+	/**
+	 * Schrijf een matrix naar het tracebestand, 1 regel per rij
+	 *
+	 * @param titel
+	 *            Regel voor de matrix, of null
+	 * @param matrix
+	 *            De matrix
+	 */
+	public static void traceMatrix(String titel, int[][] matrix) {
+		if (trace == null) {
+			return;
+		}
+		if (titel != null) {
+			trace.schrijf(titel);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int[] rij : matrix) {
+			sb.setLength(0);
+			for (int waarde : rij) {
+				sb.append(waarde).append(';');
+			}
+			trace.schrijf(sb.toString());
+		}
+	}
+
+	private static TraceBestand open(String waarde) {
+		if ((waarde == null) || waarde.isEmpty() || waarde.equalsIgnoreCase("false")) {
+			return null;
+		}
+		String bestandsnaam = waarde;
+		if (waarde.equalsIgnoreCase("true")) {
+			String s = new SimpleDateFormat("yyyyMMdd_HHmmss").format(Calendar.getInstance().getTime());
+			bestandsnaam = "trace_" + s + ".txt";
+		}
+		try {
+			TraceBestand t = new TraceBestand(bestandsnaam);
+			logger.log(Level.INFO, "Trace naar bestand " + bestandsnaam);
+			return t;
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Tracebestand " + bestandsnaam + " niet geopend: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Tracebestand met een eigen schrijfthread. Bij het afsluiten van de JVM
+	 * wordt de rest van de wachtrij nog weggeschreven.
+	 */
+	private static final class TraceBestand implements Runnable {
+
+		private final ArrayBlockingQueue<String> wachtrij = new ArrayBlockingQueue<>(MAX_WACHTEND);
+
+		private final BufferedWriter uit;
+
+		private final AtomicLong vervallen = new AtomicLong();
+
+		private volatile boolean gesloten = false;
+
+		TraceBestand(String bestandsnaam) throws IOException {
+			uit = new BufferedWriter(new FileWriter(bestandsnaam));
+			Thread t = new Thread(this, "IJC trace");
+			t.setDaemon(true);
+			t.start();
+			Runtime.getRuntime().addShutdownHook(new Thread("IJC trace afsluiten") {
+				@Override
+				public void run() {
+					sluit();
+				}
+			});
+		}
+
+		void schrijf(String regel) {
+			if (gesloten || !wachtrij.offer(regel)) {
+				vervallen.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void run() {
+			ArrayList<String> regels = new ArrayList<>();
+			try {
+				while (!gesloten) {
+					String regel = wachtrij.poll(1, TimeUnit.SECONDS);
+					if (regel == null) {
+						continue;
+					}
+					regels.add(regel);
+					wachtrij.drainTo(regels);
+					schrijfRegels(regels);
+					regels.clear();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private synchronized void schrijfRegels(ArrayList<String> regels) {
+			if (gesloten) {
+				return;
+			}
+			try {
+				for (String r : regels) {
+					uit.write(r);
+					uit.newLine();
+				}
+				uit.flush();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Schrijven trace mislukt: " + e.getMessage());
+			}
+		}
+
+		private synchronized void sluit() {
+			ArrayList<String> rest = new ArrayList<>();
+			wachtrij.drainTo(rest);
+			schrijfRegels(rest);
+			gesloten = true;
+			try {
+				if (vervallen.get() > 0) {
+					uit.write(vervallen.get() + " regels vervallen, wachtrij was vol");
+					uit.newLine();
+				}
+				uit.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Sluiten trace mislukt: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.util.Locale;
+
+/**
+ * Tijd en kwaliteit van de laatste indeling van 1 groep. Een indeling wordt
+ * in 1 keer vastgelegd, zodat de waarden altijd bij elkaar horen.
+ */
+public class GroepMeting implements GroepMetingMBean {
+
+	private final String naam;
+
+	private long aantalIndelingen;
+	private double laatsteMs;
+	private int bandsom;
+	private int herhalingen;
+	private int kleurOnbalans;
+	private int iteraties;
+	private int swaps;
+	private int aantalWedstrijden;
+
+	public GroepMeting(String naam) {
+		this.naam = naam;
+	}
+
+	public String getNaam() {
+		return naam;
+	}
+
+	/**
+	 * Leg het resultaat van een indeling vast
+	 */
+	public synchronized void legVast(long duurNs, int bandsom, int herhalingen, int kleurOnbalans, int iteraties,
+			int swaps, int aantalWedstrijden) {
+		this.aantalIndelingen++;
+		this.laatsteMs = duurNs / 1000000.0;
+		this.bandsom = bandsom;
+		this.herhalingen = herhalingen;
+		this.kleurOnbalans = kleurOnbalans;
+		this.iteraties = iteraties;
+		this.swaps = swaps;
+		this.aantalWedstrijden = aantalWedstrijden;
+	}
+
+	@Override
+	public synchronized long getAantalIndelingen() {
+		return aantalIndelingen;
+	}
+
+	@Override
+	public synchronized double getLaatsteMs() {
+		return laatsteMs;
+	}
+
+	@Override
+	public synchronized int getBandsom() {
+		return bandsom;
+	}
+
+	@Override
+	public synchronized int getHerhalingen() {
+		return herhalingen;
+	}
+
+	@Override
+	public synchronized int getKleurOnbalans() {
+		return kleurOnbalans;
+	}
+
+	@Override
+	public synchronized int getIteraties() {
+		return iteraties;
+	}
+
+	@Override
+	public synchronized int getSwaps() {
+		return swaps;
+	}
+
+	@Override
+	public synchronized int getAantalWedstrijden() {
+		return aantalWedstrijden;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "groep=" + naam + ";ms=" + String.format(Locale.ROOT, "%.1f", laatsteMs) + ";bandsom=" + bandsom
+				+ ";herhalingen=" + herhalingen + ";kleuronbalans=" + kleurOnbalans + ";iteraties=" + iteraties
+				+ ";swaps=" + swaps + ";wedstrijden=" + aantalWedstrijden;
+	}
+}
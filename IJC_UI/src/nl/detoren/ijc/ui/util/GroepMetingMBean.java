@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+/**
+ * JMX-interface van een GroepMeting: tijd en kwaliteit van de laatste
+ * indeling van een groep.
+ */
+public interface GroepMetingMBean {
+
+	/** @return aantal keer dat deze groep is ingedeeld */
+	public long getAantalIndelingen();
+
+	/** @return rekentijd van de laatste indeling in ms */
+	public double getLaatsteMs();
+
+	/** @return som van de banden van de geoptimaliseerde matrices, over alle series */
+	public int getBandsom();
+
+	/** @return aantal wedstrijden tegen een tegenstander uit de laatste vier partijen */
+	public int getHerhalingen();
+
+	/** @return aantal spelers dat een kleur krijgt tegen hun voorkeur in */
+	public int getKleurOnbalans();
+
+	/** @return aantal iteraties van de minimalisatie, over alle series */
+	public int getIteraties();
+
+	/** @return aantal verwisselingen van de minimalisatie, over alle series */
+	public int getSwaps();
+
+	public int getAantalWedstrijden();
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Minimaliseert de som van de diagonaal, sub- en superdiagonaal van een fuzzy
+ * matrix door rijen/kolommen te verwisselen, net als minimizetriagonal. In
+ * plaats van na iedere kandidaat-swap de volledige triagonaalsom opnieuw uit te
+ * rekenen, wordt de som bijgehouden en wordt het effect van een swap bepaald uit
+ * alleen de vier randen rond de twee betrokken posities. Een sweep is daarmee
+ * O(n^2) in plaats van O(n^3).
+ *
+ * De originele matrix wordt niet aangepast; de volgorde van de rijen wordt als
+ * permutatie bijgehouden en pas bij getA() wordt de geoptimaliseerde matrix
+ * opgebouwd.
+ */
+public class IncrementalMinimizer {
+
+	private final static Logger logger = Logger.getLogger(IncrementalMinimizer.class.getName());
+
+	private final int A[][];
+	private final int indexrow;
+	private final int n;
+	private final int pos[]; // pos[p] is de rij uit A die op positie p staat
+	private int triagonalsum;
+	private int iterations;
+	private int swaps;
+
+	/**
+	 * @param A
+	 *            [X][X+1] matrix met in de eerste indexrow kolommen de index
+	 * @param indexrow
+	 *            aantal indexkolommen voor de eerste kostenkolom
+	 */
+	public IncrementalMinimizer(int A[][], int indexrow) {
+		this.A = A;
+		this.indexrow = indexrow;
+		this.n = A.length;
+		this.pos = new int[n];
+		for (int p = 0; p < n; p++) {
+			pos[p] = p;
+		}
+		this.triagonalsum = Utils.triagonalsum(A, indexrow);
+	}
+
+	/**
+	 * Kosten van de rand tussen twee spelers (rij a en b in A), de som van
+	 * beide richtingen zoals die in sub- en superdiagonaal terechtkomen.
+	 */
+	private int kosten(int a, int b) {
+		return A[a][indexrow + b] + A[b][indexrow + a];
+	}
+
+	/**
+	 * Verandering van de triagonaalsom als posities k en j (k < j) verwisseld
+	 * worden.
+	 */
+	public int delta(int k, int j) {
+		int pk = pos[k];
+		int pj = pos[j];
+		int d = 0;
+		if (k > 0) {
+			int links = pos[k - 1];
+			d += kosten(links, pj) - kosten(links, pk);
+		}
+		if (j < n - 1) {
+			int rechts = pos[j + 1];
+			d += kosten(pk, rechts) - kosten(pj, rechts);
+		}
+		if (j - k > 1) {
+			int naK = pos[k + 1];
+			int voorJ = pos[j - 1];
+			d += kosten(pj, naK) - kosten(pk, naK);
+			d += kosten(voorJ, pk) - kosten(voorJ, pj);
+		}
+		// Bij naast elkaar gelegen posities blijft de rand tussen k en j gelijk
+		return d;
+	}
+
+	/**
+	 * En sweep over alle paren posities. Iedere swap die de triagonaalsom
+	 * verlaagt, wordt direct uitgevoerd.
+	 *
+	 * @return aantal uitgevoerde swaps
+	 */
+	public int minimize() {
+		int swapped = 0;
+		for (int k = 0; k < n - 1; k++) {
+			for (int j = k + 1; j < n; j++) {
+				int d = delta(k, j);
+				if (d < 0) {
+					int val = pos[k];
+					pos[k] = pos[j];
+					pos[j] = val;
+					triagonalsum += d;
+					swapped++;
+				}
+			}
+		}
+		swaps += swapped;
+		return swapped;
+	}
+
+	/**
+	 * Herhaal minimize() tot er geen swaps meer zijn of het maximum aantal
+	 * iteraties is bereikt.
+	 *
+	 * @param maxIterations
+	 *            maximum aantal sweeps
+	 * @return true als er convergentie is bereikt
+	 */
+	public boolean Iterminimizetriagonal(int maxIterations) {
+		int cont;
+		iterations = 0;
+		do {
+			iterations++;
+			cont = minimize();
+		} while (cont > 0 && iterations < maxIterations);
+		if (cont == 0) {
+			logger.log(Level.FINE, "Iteration completed in " + iterations + " iterations and " + swaps + " swaps.");
+			return true;
+		}
+		logger.log(Level.SEVERE, "Iteration failed. No convergence within maximum of " + maxIterations + " iterations.");
+		return false;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	public int getSwaps() {
+		return swaps;
+	}
+
+	public int getTriagonalsum() {
+		return triagonalsum;
+	}
+
+	/**
+	 * @return volgorde van de rijen uit de originele matrix
+	 */
+	public int[] getOrder() {
+		return pos.clone();
+	}
+
+	/**
+	 * Bouw de geoptimaliseerde matrix op, in hetzelfde formaat als
+	 * minimizetriagonal.getA() oplevert.
+	 *
+	 * @return [X][X+1] matrix met verwisselde rijen en kolommen
+	 */
+	public int[][] getA() {
+		int tri[][] = new int[n][];
+		for (int p = 0; p < n; p++) {
+			int rij[] = A[pos[p]];
+			int nieuw[] = new int[rij.length];
+			for (int c = 0; c < indexrow; c++) {
+				nieuw[c] = rij[c];
+			}
+			for (int q = 0; q < n; q++) {
+				nieuw[indexrow + q] = rij[indexrow + pos[q]];
+			}
+			tri[p] = nieuw;
+		}
+		return tri;
+	}
+}
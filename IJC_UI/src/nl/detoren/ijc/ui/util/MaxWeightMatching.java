@@ -0,0 +1,647 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.util.Arrays;
+
+/**
+ * Maximum weight matching in een algemene graaf met het blossom algoritme van
+ * Edmonds, in de O(n^3) variant van Galil. Er wordt altijd een matching met
+ * maximale cardinaliteit opgeleverd; binnen die matchings de matching met het
+ * hoogste totaalgewicht. Op een volledige graaf met een even aantal punten is
+ * dat dus de perfecte matching met het hoogste gewicht.
+ *
+ * Gewichten zijn gehele getallen. De duale variabelen worden verdubbeld
+ * bijgehouden zodat alle berekeningen geheeltallig blijven.
+ *
+ * Gebaseerd op de beschrijving in Z. Galil, "Efficient algorithms for finding
+ * maximum matching in graphs", ACM Computing Surveys, 1986.
+ */
+public class MaxWeightMatching {
+
+	private final int nvertex;
+	private final int nedge;
+	private final int edgeI[];
+	private final int edgeJ[];
+	private final int edgeW[];
+
+	private int endpoint[];
+	private int neighbend[][];
+	private int mate[];
+	private int label[];
+	private int labelend[];
+	private int inblossom[];
+	private int blossomparent[];
+	private int blossomchilds[][];
+	private int blossombase[];
+	private int blossomendps[][];
+	private int bestedge[];
+	private int blossombestedges[][];
+	private int unusedblossoms[];
+	private int nunused;
+	private int dualvar[];
+	private boolean allowedge[];
+	private int queue[];
+	private int nqueue;
+
+	/**
+	 * Maak een matching probleem voor een volledige graaf.
+	 *
+	 * @param gewicht
+	 *            symmetrische [n][n] matrix met het gewicht van iedere rand;
+	 *            de diagonaal wordt genegeerd
+	 */
+	public MaxWeightMatching(int gewicht[][]) {
+		nvertex = gewicht.length;
+		nedge = nvertex * (nvertex - 1) / 2;
+		edgeI = new int[nedge];
+		edgeJ = new int[nedge];
+		edgeW = new int[nedge];
+		int k = 0;
+		for (int i = 0; i < nvertex; i++) {
+			for (int j = i + 1; j < nvertex; j++) {
+				edgeI[k] = i;
+				edgeJ[k] = j;
+				edgeW[k] = gewicht[i][j];
+				k++;
+			}
+		}
+	}
+
+	/**
+	 * Bepaal de matching.
+	 *
+	 * @return mate[v] is de partner van punt v, of -1 als v ongepaard is
+	 */
+	public int[] solve() {
+		if (nedge == 0) {
+			int leeg[] = new int[nvertex];
+			Arrays.fill(leeg, -1);
+			return leeg;
+		}
+		init();
+		for (int t = 0; t < nvertex; t++) {
+			Arrays.fill(label, 0);
+			Arrays.fill(bestedge, -1);
+			for (int b = nvertex; b < 2 * nvertex; b++) {
+				blossombestedges[b] = null;
+			}
+			Arrays.fill(allowedge, false);
+			nqueue = 0;
+			for (int v = 0; v < nvertex; v++) {
+				if (mate[v] == -1 && label[inblossom[v]] == 0) {
+					assignLabel(v, 1, -1);
+				}
+			}
+			boolean augmented = false;
+			while (true) {
+				while (nqueue > 0 && !augmented) {
+					int v = queue[--nqueue];
+					for (int p : neighbend[v]) {
+						int k = p / 2;
+						int w = endpoint[p];
+						if (inblossom[v] == inblossom[w]) {
+							continue;
+						}
+						int kslack = 0;
+						if (!allowedge[k]) {
+							kslack = slack(k);
+							if (kslack <= 0) {
+								allowedge[k] = true;
+							}
+						}
+						if (allowedge[k]) {
+							if (label[inblossom[w]] == 0) {
+								assignLabel(w, 2, p ^ 1);
+							} else if (label[inblossom[w]] == 1) {
+								int base = scanBlossom(v, w);
+								if (base >= 0) {
+									addBlossom(base, k);
+								} else {
+									augmentMatching(k);
+									augmented = true;
+									break;
+								}
+							} else if (label[w] == 0) {
+								label[w] = 2;
+								labelend[w] = p ^ 1;
+							}
+						} else if (label[inblossom[w]] == 1) {
+							int b = inblossom[v];
+							if (bestedge[b] == -1 || kslack < slack(bestedge[b])) {
+								bestedge[b] = k;
+							}
+						} else if (label[w] == 0) {
+							if (bestedge[w] == -1 || kslack < slack(bestedge[w])) {
+								bestedge[w] = k;
+							}
+						}
+					}
+				}
+				if (augmented) {
+					break;
+				}
+				// Geen augmenterend pad gevonden, pas de duale variabelen aan
+				int deltatype = -1;
+				int delta = 0;
+				int deltaedge = -1;
+				int deltablossom = -1;
+				for (int v = 0; v < nvertex; v++) {
+					if (label[inblossom[v]] == 0 && bestedge[v] != -1) {
+						int d = slack(bestedge[v]);
+						if (deltatype == -1 || d < delta) {
+							delta = d;
+							deltatype = 2;
+							deltaedge = bestedge[v];
+						}
+					}
+				}
+				for (int b = 0; b < 2 * nvertex; b++) {
+					if (blossomparent[b] == -1 && label[b] == 1 && bestedge[b] != -1) {
+						int d = slack(bestedge[b]) / 2;
+						if (deltatype == -1 || d < delta) {
+							delta = d;
+							deltatype = 3;
+							deltaedge = bestedge[b];
+						}
+					}
+				}
+				for (int b = nvertex; b < 2 * nvertex; b++) {
+					if (blossombase[b] >= 0 && blossomparent[b] == -1 && label[b] == 2
+							&& (deltatype == -1 || dualvar[b] < delta)) {
+						delta = dualvar[b];
+						deltatype = 4;
+						deltablossom = b;
+					}
+				}
+				if (deltatype == -1) {
+					// Maximale cardinaliteit bereikt
+					deltatype = 1;
+					int min = dualvar[0];
+					for (int v = 1; v < nvertex; v++) {
+						min = Math.min(min, dualvar[v]);
+					}
+					delta = Math.max(0, min);
+				}
+				for (int v = 0; v < nvertex; v++) {
+					if (label[inblossom[v]] == 1) {
+						dualvar[v] -= delta;
+					} else if (label[inblossom[v]] == 2) {
+						dualvar[v] += delta;
+					}
+				}
+				for (int b = nvertex; b < 2 * nvertex; b++) {
+					if (blossombase[b] >= 0 && blossomparent[b] == -1) {
+						if (label[b] == 1) {
+							dualvar[b] += delta;
+						} else if (label[b] == 2) {
+							dualvar[b] -= delta;
+						}
+					}
+				}
+				if (deltatype == 1) {
+					break;
+				} else if (deltatype == 2) {
+					allowedge[deltaedge] = true;
+					int i = edgeI[deltaedge];
+					if (label[inblossom[i]] == 0) {
+						i = edgeJ[deltaedge];
+					}
+					queue[nqueue++] = i;
+				} else if (deltatype == 3) {
+					allowedge[deltaedge] = true;
+					queue[nqueue++] = edgeI[deltaedge];
+				} else {
+					expandBlossom(deltablossom, false);
+				}
+			}
+			if (!augmented) {
+				break;
+			}
+			for (int b = nvertex; b < 2 * nvertex; b++) {
+				if (blossomparent[b] == -1 && blossombase[b] >= 0 && label[b] == 1 && dualvar[b] == 0) {
+					expandBlossom(b, true);
+				}
+			}
+		}
+		int result[] = new int[nvertex];
+		for (int v = 0; v < nvertex; v++) {
+			result[v] = mate[v] >= 0 ? endpoint[mate[v]] : -1;
+		}
+		return result;
+	}
+
+	private void init() {
+		int maxweight = 0;
+		for (int k = 0; k < nedge; k++) {
+			maxweight = Math.max(maxweight, edgeW[k]);
+		}
+		endpoint = new int[2 * nedge];
+		int aantalBuren[] = new int[nvertex];
+		for (int k = 0; k < nedge; k++) {
+			endpoint[2 * k] = edgeI[k];
+			endpoint[2 * k + 1] = edgeJ[k];
+			aantalBuren[edgeI[k]]++;
+			aantalBuren[edgeJ[k]]++;
+		}
+		neighbend = new int[nvertex][];
+		for (int v = 0; v < nvertex; v++) {
+			neighbend[v] = new int[aantalBuren[v]];
+			aantalBuren[v] = 0;
+		}
+		for (int k = 0; k < nedge; k++) {
+			int i = edgeI[k];
+			int j = edgeJ[k];
+			neighbend[i][aantalBuren[i]++] = 2 * k + 1;
+			neighbend[j][aantalBuren[j]++] = 2 * k;
+		}
+		mate = new int[nvertex];
+		Arrays.fill(mate, -1);
+		label = new int[2 * nvertex];
+		labelend = new int[2 * nvertex];
+		Arrays.fill(labelend, -1);
+		inblossom = new int[nvertex];
+		for (int v = 0; v < nvertex; v++) {
+			inblossom[v] = v;
+		}
+		blossomparent = new int[2 * nvertex];
+		Arrays.fill(blossomparent, -1);
+		blossomchilds = new int[2 * nvertex][];
+		blossombase = new int[2 * nvertex];
+		for (int v = 0; v < 2 * nvertex; v++) {
+			blossombase[v] = v < nvertex ? v : -1;
+		}
+		blossomendps = new int[2 * nvertex][];
+		bestedge = new int[2 * nvertex];
+		Arrays.fill(bestedge, -1);
+		blossombestedges = new int[2 * nvertex][];
+		unusedblossoms = new int[nvertex];
+		nunused = nvertex;
+		for (int i = 0; i < nvertex; i++) {
+			unusedblossoms[i] = nvertex + i;
+		}
+		dualvar = new int[2 * nvertex];
+		for (int v = 0; v < nvertex; v++) {
+			dualvar[v] = maxweight;
+		}
+		allowedge = new boolean[nedge];
+		queue = new int[nvertex];
+		nqueue = 0;
+	}
+
+	private int slack(int k) {
+		return dualvar[edgeI[k]] + dualvar[edgeJ[k]] - 2 * edgeW[k];
+	}
+
+	private static int index(int j, int lengte) {
+		return ((j % lengte) + lengte) % lengte;
+	}
+
+	/**
+	 * Voeg alle punten van blossom b (recursief) toe aan lijst, vanaf positie
+	 * n
+	 */
+	private int blossomLeaves(int b, int lijst[], int n) {
+		if (b < nvertex) {
+			lijst[n++] = b;
+		} else {
+			for (int t : blossomchilds[b]) {
+				n = blossomLeaves(t, lijst, n);
+			}
+		}
+		return n;
+	}
+
+	private int[] blossomLeaves(int b) {
+		int lijst[] = new int[nvertex];
+		int n = blossomLeaves(b, lijst, 0);
+		return Arrays.copyOf(lijst, n);
+	}
+
+	private void assignLabel(int w, int t, int p) {
+		int b = inblossom[w];
+		label[w] = label[b] = t;
+		labelend[w] = labelend[b] = p;
+		bestedge[w] = bestedge[b] = -1;
+		if (t == 1) {
+			nqueue = blossomLeaves(b, queue, nqueue);
+		} else if (t == 2) {
+			int base = blossombase[b];
+			assignLabel(endpoint[mate[base]], 1, mate[base] ^ 1);
+		}
+	}
+
+	private int scanBlossom(int v, int w) {
+		int path[] = new int[2 * nvertex];
+		int npath = 0;
+		int base = -1;
+		while (v != -1 || w != -1) {
+			int b = inblossom[v];
+			if ((label[b] & 4) != 0) {
+				base = blossombase[b];
+				break;
+			}
+			path[npath++] = b;
+			label[b] = 5;
+			if (labelend[b] == -1) {
+				v = -1;
+			} else {
+				v = endpoint[labelend[b]];
+				b = inblossom[v];
+				v = endpoint[labelend[b]];
+			}
+			if (w != -1) {
+				int tmp = v;
+				v = w;
+				w = tmp;
+			}
+		}
+		for (int i = 0; i < npath; i++) {
+			label[path[i]] = 1;
+		}
+		return base;
+	}
+
+	private void addBlossom(int base, int k) {
+		int v = edgeI[k];
+		int w = edgeJ[k];
+		int bb = inblossom[base];
+		int bv = inblossom[v];
+		int bw = inblossom[w];
+		int b = unusedblossoms[--nunused];
+		blossombase[b] = base;
+		blossomparent[b] = -1;
+		blossomparent[bb] = b;
+		int path[] = new int[2 * nvertex];
+		int endps[] = new int[2 * nvertex];
+		int npath = 0;
+		int nendps = 0;
+		while (bv != bb) {
+			blossomparent[bv] = b;
+			path[npath++] = bv;
+			endps[nendps++] = labelend[bv];
+			v = endpoint[labelend[bv]];
+			bv = inblossom[v];
+		}
+		path[npath++] = bb;
+		reverse(path, npath);
+		reverse(endps, nendps);
+		endps[nendps++] = 2 * k;
+		while (bw != bb) {
+			blossomparent[bw] = b;
+			path[npath++] = bw;
+			endps[nendps++] = labelend[bw] ^ 1;
+			w = endpoint[labelend[bw]];
+			bw = inblossom[w];
+		}
+		blossomchilds[b] = Arrays.copyOf(path, npath);
+		blossomendps[b] = Arrays.copyOf(endps, nendps);
+		label[b] = 1;
+		labelend[b] = labelend[bb];
+		dualvar[b] = 0;
+		for (int leaf : blossomLeaves(b)) {
+			if (label[inblossom[leaf]] == 2) {
+				queue[nqueue++] = leaf;
+			}
+			inblossom[leaf] = b;
+		}
+		// Bepaal de beste randen naar andere S-blossoms
+		int bestedgeto[] = new int[2 * nvertex];
+		Arrays.fill(bestedgeto, -1);
+		for (int i = 0; i < npath; i++) {
+			int sub = path[i];
+			int nblists[][];
+			if (blossombestedges[sub] == null) {
+				int leaves[] = blossomLeaves(sub);
+				nblists = new int[leaves.length][];
+				for (int l = 0; l < leaves.length; l++) {
+					int buren[] = neighbend[leaves[l]];
+					nblists[l] = new int[buren.length];
+					for (int q = 0; q < buren.length; q++) {
+						nblists[l][q] = buren[q] / 2;
+					}
+				}
+			} else {
+				nblists = new int[][] { blossombestedges[sub] };
+			}
+			for (int nblist[] : nblists) {
+				for (int e : nblist) {
+					int j = edgeJ[e];
+					if (inblossom[j] == b) {
+						j = edgeI[e];
+					}
+					int bj = inblossom[j];
+					if (bj != b && label[bj] == 1 && (bestedgeto[bj] == -1 || slack(e) < slack(bestedgeto[bj]))) {
+						bestedgeto[bj] = e;
+					}
+				}
+			}
+			blossombestedges[sub] = null;
+			bestedge[sub] = -1;
+		}
+		int aantal = 0;
+		for (int e : bestedgeto) {
+			if (e != -1) {
+				aantal++;
+			}
+		}
+		int beste[] = new int[aantal];
+		aantal = 0;
+		for (int e : bestedgeto) {
+			if (e != -1) {
+				beste[aantal++] = e;
+			}
+		}
+		blossombestedges[b] = beste;
+		bestedge[b] = -1;
+		for (int e : beste) {
+			if (bestedge[b] == -1 || slack(e) < slack(bestedge[b])) {
+				bestedge[b] = e;
+			}
+		}
+	}
+
+	private void expandBlossom(int b, boolean endstage) {
+		for (int s : blossomchilds[b]) {
+			blossomparent[s] = -1;
+			if (s < nvertex) {
+				inblossom[s] = s;
+			} else if (endstage && dualvar[s] == 0) {
+				expandBlossom(s, endstage);
+			} else {
+				for (int leaf : blossomLeaves(s)) {
+					inblossom[leaf] = s;
+				}
+			}
+		}
+		if (!endstage && label[b] == 2) {
+			int childs[] = blossomchilds[b];
+			int endps[] = blossomendps[b];
+			int lengte = childs.length;
+			int entrychild = inblossom[endpoint[labelend[b] ^ 1]];
+			int j = indexOf(childs, entrychild);
+			int jstep;
+			int endptrick;
+			if ((j & 1) != 0) {
+				j -= lengte;
+				jstep = 1;
+				endptrick = 0;
+			} else {
+				jstep = -1;
+				endptrick = 1;
+			}
+			int p = labelend[b];
+			while (j != 0) {
+				label[endpoint[p ^ 1]] = 0;
+				label[endpoint[endps[index(j - endptrick, lengte)] ^ endptrick ^ 1]] = 0;
+				assignLabel(endpoint[p ^ 1], 2, p);
+				allowedge[endps[index(j - endptrick, lengte)] / 2] = true;
+				j += jstep;
+				p = endps[index(j - endptrick, lengte)] ^ endptrick;
+				allowedge[p / 2] = true;
+				j += jstep;
+			}
+			int bv = childs[index(j, lengte)];
+			label[endpoint[p ^ 1]] = label[bv] = 2;
+			labelend[endpoint[p ^ 1]] = labelend[bv] = p;
+			bestedge[bv] = -1;
+			j += jstep;
+			while (childs[index(j, lengte)] != entrychild) {
+				bv = childs[index(j, lengte)];
+				if (label[bv] == 1) {
+					j += jstep;
+					continue;
+				}
+				int gelabeld = -1;
+				for (int leaf : blossomLeaves(bv)) {
+					gelabeld = leaf;
+					if (label[leaf] != 0) {
+						break;
+					}
+				}
+				if (gelabeld >= 0 && label[gelabeld] != 0) {
+					label[gelabeld] = 0;
+					label[endpoint[mate[blossombase[bv]]]] = 0;
+					assignLabel(gelabeld, 2, labelend[gelabeld]);
+				}
+				j += jstep;
+			}
+		}
+		label[b] = labelend[b] = -1;
+		blossomchilds[b] = blossomendps[b] = null;
+		blossombase[b] = -1;
+		blossombestedges[b] = null;
+		bestedge[b] = -1;
+		unusedblossoms[nunused++] = b;
+	}
+
+	private void augmentBlossom(int b, int v) {
+		int t = v;
+		while (blossomparent[t] != b) {
+			t = blossomparent[t];
+		}
+		if (t >= nvertex) {
+			augmentBlossom(t, v);
+		}
+		int childs[] = blossomchilds[b];
+		int endps[] = blossomendps[b];
+		int lengte = childs.length;
+		int i = indexOf(childs, t);
+		int j = i;
+		int jstep;
+		int endptrick;
+		if ((i & 1) != 0) {
+			j -= lengte;
+			jstep = 1;
+			endptrick = 0;
+		} else {
+			jstep = -1;
+			endptrick = 1;
+		}
+		while (j != 0) {
+			j += jstep;
+			t = childs[index(j, lengte)];
+			int p = endps[index(j - endptrick, lengte)] ^ endptrick;
+			if (t >= nvertex) {
+				augmentBlossom(t, endpoint[p]);
+			}
+			j += jstep;
+			t = childs[index(j, lengte)];
+			if (t >= nvertex) {
+				augmentBlossom(t, endpoint[p ^ 1]);
+			}
+			mate[endpoint[p]] = p ^ 1;
+			mate[endpoint[p ^ 1]] = p;
+		}
+		blossomchilds[b] = rotate(childs, i);
+		blossomendps[b] = rotate(endps, i);
+		blossombase[b] = blossombase[blossomchilds[b][0]];
+	}
+
+	private void augmentMatching(int k) {
+		int start[] = { edgeI[k], edgeJ[k] };
+		int eind[] = { 2 * k + 1, 2 * k };
+		for (int r = 0; r < 2; r++) {
+			int s = start[r];
+			int p = eind[r];
+			while (true) {
+				int bs = inblossom[s];
+				if (bs >= nvertex) {
+					augmentBlossom(bs, s);
+				}
+				mate[s] = p;
+				if (labelend[bs] == -1) {
+					break;
+				}
+				int t = endpoint[labelend[bs]];
+				int bt = inblossom[t];
+				s = endpoint[labelend[bt]];
+				int j = endpoint[labelend[bt] ^ 1];
+				if (bt >= nvertex) {
+					augmentBlossom(bt, j);
+				}
+				mate[j] = labelend[bt];
+				p = labelend[bt] ^ 1;
+			}
+		}
+	}
+
+	private static int indexOf(int lijst[], int waarde) {
+		for (int i = 0; i < lijst.length; i++) {
+			if (lijst[i] == waarde) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void reverse(int lijst[], int n) {
+		for (int i = 0, j = n - 1; i < j; i++, j--) {
+			int tmp = lijst[i];
+			lijst[i] = lijst[j];
+			lijst[j] = tmp;
+		}
+	}
+
+	private static int[] rotate(int lijst[], int i) {
+		int result[] = new int[lijst.length];
+		for (int q = 0; q < lijst.length; q++) {
+			result[q] = lijst[(q + i) % lijst.length];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metingen van het indelen: doorlooptijden per stap en de kwaliteit van de
+ * laatste indeling per groep.
+ *
+ * Alle metingen zijn als MBean te bekijken, bijvoorbeeld met jconsole, onder
+ * nl.detoren.ijc:type=Stap en nl.detoren.ijc:type=Groep. Daarnaast wordt per
+ * meting een regel in een metingenbestand geschreven, in te stellen met de
+ * systeemproperty ijc.metingen:
+ *
+ * zonder property wordt naar metingen.log geschreven,
+ * -Dijc.metingen=bestand.log schrijft naar het opgegeven bestand,
+ * -Dijc.metingen=false schrijft geen bestand.
+ *
+ * Wordt het bestand groter dan MAX_BESTAND, dan wordt het hernoemd naar
+ * bestand.1 (en bestand.1 naar bestand.2, enz.) en wordt een nieuw bestand
+ * begonnen. Het schrijven gebeurt op een eigen thread; een regel die niet
+ * meer in de wachtrij past, vervalt.
+ */
+public final class Metingen {
+
+	private final static Logger logger = Logger.getLogger(Metingen.class.getName());
+
+	/** Systeemproperty voor het metingenbestand */
+	public static final String METINGEN_PROPERTY = "ijc.metingen";
+
+	/** Standaard metingenbestand */
+	public static final String STANDAARD_BESTAND = "metingen.log";
+
+	/** Grootte in bytes waarboven een nieuw bestand wordt begonnen */
+	private static final long MAX_BESTAND = 1024 * 1024;
+
+	/** Aantal oude bestanden dat bewaard blijft */
+	private static final int AANTAL_OUDE_BESTANDEN = 3;
+
+	/** Maximaal aantal regels dat op wegschrijven wacht */
+	private static final int MAX_WACHTEND = 1000;
+
+	private static final String DOMEIN = "nl.detoren.ijc";
+
+	/**
+	 * De gemeten stappen
+	 */
+	public enum Stap {
+		/** GroepenIndeler.maakGroepsindeling */
+		GROEPSINDELING("maakGroepsindeling"),
+		/** Het hele wedstrijdschema, alle groepen samen */
+		WEDSTRIJDSCHEMA("maakWedstrijdschema"),
+		/** Wedstrijden voor 1 groep */
+		GROEP("maakWedstrijdenVoorGroep"),
+		/** GroepenIndeler.MaakFuzzyMatrix, per serie */
+		FUZZYMATRIX("MaakFuzzyMatrix"),
+		/** Minimalisatie van de fuzzy matrix, per serie */
+		MINIMALISATIE("Iterminimizetriagonal"),
+		/** SeriePlanner.plan */
+		PLANSERIE("planSerie"),
+		/** OutputExcel.schrijfExcel, het werk van updateExcel */
+		EXCEL("schrijfExcel");
+
+		private final String naam;
+
+		Stap(String naam) {
+			this.naam = naam;
+		}
+
+		public String getNaam() {
+			return naam;
+		}
+	}
+
+	private static final EnumMap<Stap, StapMeting> stappen = new EnumMap<>(Stap.class);
+
+	private static final ConcurrentHashMap<String, GroepMeting> groepen = new ConcurrentHashMap<>();
+
+	/**
+	 * Registreert MBeans en schrijft het metingenbestand. Het starten van de
+	 * MBeanServer kost tijd; dat gebeurt zo niet tijdens het indelen.
+	 */
+	private static final ExecutorService uitvoerder = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<Runnable>(MAX_WACHTEND), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "IJC metingen");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	private static final Schrijver schrijver = open(System.getProperty(METINGEN_PROPERTY, STANDAARD_BESTAND));
+
+	static {
+		for (Stap stap : Stap.values()) {
+			StapMeting meting = new StapMeting(stap.getNaam());
+			stappen.put(stap, meting);
+			registreer("type=Stap,name=" + stap.getNaam(), meting);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread("IJC metingen afsluiten") {
+			@Override
+			public void run() {
+				// Schrijf de regels die nog wachten
+				uitvoerder.shutdown();
+				try {
+					uitvoerder.awaitTermination(2, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	private Metingen() {
+	}
+
+	/**
+	 * Start de metingen bij het opstarten, zodat het registreren van de MBeans
+	 * niet samenvalt met de eerste indeling. Doet verder niets; het werk
+	 * gebeurt bij het laden van de klasse.
+	 */
+	public static void start() {
+		logger.log(Level.FINE, "Metingen gestart");
+	}
+
+	/**
+	 * Leg de doorlooptijd van een stap vast
+	 *
+	 * @param stap
+	 *            De stap
+	 * @param startNs
+	 *            Begin van de stap, volgens System.nanoTime()
+	 * @return De doorlooptijd in nanoseconden
+	 */
+	public static long meet(Stap stap, long startNs) {
+		long duur = System.nanoTime() - startNs;
+		stappen.get(stap).meet(duur);
+		return duur;
+	}
+
+	/**
+	 * Leg de doorlooptijd van een stap vast en schrijf hem ook naar het
+	 * metingenbestand. Bedoeld voor stappen die weinig voorkomen.
+	 *
+	 * @param stap
+	 *            De stap
+	 * @param startNs
+	 *            Begin van de stap, volgens System.nanoTime()
+	 * @param omschrijving
+	 *            Extra informatie voor het bestand, of null
+	 */
+	public static void meetEnSchrijf(Stap stap, long startNs, String omschrijving) {
+		long duur = meet(stap, startNs);
+		if (schrijver != null) {
+			schrijver.schrijf("stap=" + stap.getNaam() + ";ms=" + String.format(Locale.ROOT, "%.1f", duur / 1000000.0)
+					+ (omschrijving == null ? "" : ";" + omschrijving));
+		}
+	}
+
+	/**
+	 * @return de meting van een stap
+	 */
+	public static StapMeting getStap(Stap stap) {
+		return stappen.get(stap);
+	}
+
+	/**
+	 * @return de meting van een groep, wordt zo nodig aangemaakt
+	 */
+	public static GroepMeting getGroep(String naam) {
+		GroepMeting meting = groepen.get(naam);
+		if (meting == null) {
+			GroepMeting nieuw = new GroepMeting(naam);
+			meting = groepen.putIfAbsent(naam, nieuw);
+			if (meting == null) {
+				meting = nieuw;
+				registreer("type=Groep,name=" + ObjectName.quote(naam), nieuw);
+			}
+		}
+		return meting;
+	}
+
+	/**
+	 * Leg het resultaat van de indeling van een groep vast en schrijf het naar
+	 * het metingenbestand. Zie GroepMeting voor de betekenis van de waarden.
+	 */
+	public static void legGroepVast(String naam, long duurNs, int bandsom, int herhalingen, int kleurOnbalans,
+			int iteraties, int swaps, int aantalWedstrijden) {
+		GroepMeting meting = getGroep(naam);
+		meting.legVast(duurNs, bandsom, herhalingen, kleurOnbalans, iteraties, swaps, aantalWedstrijden);
+		if (schrijver != null) {
+			schrijver.schrijf(meting.toString());
+		}
+	}
+
+	private static void registreer(final String sleutels, final Object mbean) {
+		voerUit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+					server.registerMBean(mbean, new ObjectName(DOMEIN + ":" + sleutels));
+				} catch (JMException e) {
+					logger.log(Level.WARNING, "Registreren MBean " + sleutels + " mislukt: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	private static void voerUit(Runnable taak) {
+		try {
+			uitvoerder.execute(taak);
+		} catch (RejectedExecutionException e) {
+			// Wachtrij vol, taak vervalt
+		}
+	}
+
+	private static Schrijver open(String waarde) {
+		if ((waarde == null) || waarde.isEmpty() || waarde.equalsIgnoreCase("false")) {
+			return null;
+		}
+		logger.log(Level.INFO, "Metingen naar bestand " + waarde);
+		return new Schrijver(new File(waarde));
+	}
+
+	/**
+	 * Schrijft regels met een tijdstempel naar het metingenbestand, op de
+	 * thread van de metingen. Het bestand wordt per regel geopend, zodat het
+	 * tussentijds verplaatst of gelezen kan worden.
+	 */
+	private static final class Schrijver {
+
+		private final File bestand;
+
+		/** Alleen gebruikt op de thread van de metingen */
+		private final SimpleDateFormat formaat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+		Schrijver(File bestand) {
+			this.bestand = bestand;
+		}
+
+		void schrijf(String regel) {
+			final long tijd = System.currentTimeMillis();
+			final String r = regel;
+			voerUit(new Runnable() {
+				@Override
+				public void run() {
+					schrijfRegel(formaat.format(new Date(tijd)) + ";" + r);
+				}
+			});
+		}
+
+		private void schrijfRegel(String regel) {
+			if (bestand.length() > MAX_BESTAND) {
+				roteer();
+			}
+			try (BufferedWriter uit = new BufferedWriter(new FileWriter(bestand, true))) {
+				uit.write(regel);
+				uit.newLine();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Schrijven metingen mislukt: " + e.getMessage());
+			}
+		}
+
+		private void roteer() {
+			String pad = bestand.getPath();
+			new File(pad + "." + AANTAL_OUDE_BESTANDEN).delete();
+			for (int i = AANTAL_OUDE_BESTANDEN - 1; i >= 1; i--) {
+				new File(pad + "." + i).renameTo(new File(pad + "." + (i + 1)));
+			}
+			if (!bestand.renameTo(new File(pad + ".1"))) {
+				logger.log(Level.WARNING, "Roteren metingenbestand " + pad + " mislukt");
+			}
+		}
+	}
+}
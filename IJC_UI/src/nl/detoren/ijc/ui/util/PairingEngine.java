@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2016 Lars Dam
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+/**
+ * Bepaalt de paringen binnen een groep op basis van een fuzzy matrix.
+ *
+ * De invoer is een [X][X+1] matrix met in de eerste indexrow kolommen de index
+ * (het ID van de speler) en daarna de kosten van iedere paring. Het resultaat
+ * heeft hetzelfde formaat, met de rijen en kolommen in een nieuwe volgorde:
+ * rij k en k+1 (k even) spelen tegen elkaar. Bij een oneven aantal spelers
+ * geeft getTrio() de positie van de middelste speler van het trio; de spelers
+ * op getTrio()-1, getTrio() en getTrio()+1 spelen dan onderling, de overige
+ * rijen vormen paren zoals hierboven.
+ */
+public interface PairingEngine {
+
+	/**
+	 * Bepaal de paringen voor de gegeven fuzzy matrix.
+	 *
+	 * @param A
+	 *            [X][X+1] fuzzy matrix; wordt niet aangepast
+	 * @param indexrow
+	 *            aantal indexkolommen voor de eerste kostenkolom
+	 * @return matrix met de rijen en kolommen in de gevonden volgorde
+	 */
+	public int[][] optimaliseer(int A[][], int indexrow);
+
+	/**
+	 * @return positie van de middelste speler van het trio in de laatst
+	 *         opgeleverde matrix, of 0 als er geen trio is
+	 */
+	public int getTrio();
+
+	/**
+	 * @return aantal iteraties van de laatste optimalisatie, 0 als de engine
+	 *         niet iteratief werkt
+	 */
+	public int getIteraties();
+
+	/**
+	 * @return aantal verwisselingen van de laatste optimalisatie, 0 als de
+	 *         engine niet met verwisselingen werkt
+	 */
+	public int getSwaps();
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Doorlooptijden van 1 stap, met een histogram met vaste klassen. Metingen
+ * kunnen vanuit meerdere threads tegelijk worden toegevoegd.
+ */
+public class StapMeting implements StapMetingMBean {
+
+	/** Bovengrenzen van de histogramklassen in ms, daarboven de open klasse */
+	private static final long[] GRENZEN = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+	private final String naam;
+
+	private final AtomicLong aantal = new AtomicLong();
+
+	private final AtomicLong totaalNs = new AtomicLong();
+
+	private final AtomicLong maxNs = new AtomicLong();
+
+	private final AtomicLong laatsteNs = new AtomicLong();
+
+	private final AtomicLongArray histogram = new AtomicLongArray(GRENZEN.length + 1);
+
+	public StapMeting(String naam) {
+		this.naam = naam;
+	}
+
+	public String getNaam() {
+		return naam;
+	}
+
+	/**
+	 * Voeg een meting toe
+	 *
+	 * @param duurNs
+	 *            Doorlooptijd in nanoseconden
+	 */
+	public void meet(long duurNs) {
+		aantal.incrementAndGet();
+		totaalNs.addAndGet(duurNs);
+		laatsteNs.set(duurNs);
+		long max = maxNs.get();
+		while (duurNs > max && !maxNs.compareAndSet(max, duurNs)) {
+			max = maxNs.get();
+		}
+		histogram.incrementAndGet(klasse(duurNs));
+	}
+
+	private static int klasse(long duurNs) {
+		long ms = duurNs / 1000000;
+		for (int i = 0; i < GRENZEN.length; i++) {
+			if (ms < GRENZEN[i]) {
+				return i;
+			}
+		}
+		return GRENZEN.length;
+	}
+
+	private static double ms(long ns) {
+		return ns / 1000000.0;
+	}
+
+	@Override
+	public long getAantal() {
+		return aantal.get();
+	}
+
+	@Override
+	public double getTotaalMs() {
+		return ms(totaalNs.get());
+	}
+
+	@Override
+	public double getGemiddeldeMs() {
+		long n = aantal.get();
+		return n == 0 ? 0 : ms(totaalNs.get()) / n;
+	}
+
+	@Override
+	public double getMaxMs() {
+		return ms(maxNs.get());
+	}
+
+	@Override
+	public double getLaatsteMs() {
+		return ms(laatsteNs.get());
+	}
+
+	@Override
+	public long getP50Ms() {
+		return percentiel(50);
+	}
+
+	@Override
+	public long getP95Ms() {
+		return percentiel(95);
+	}
+
+	/**
+	 * Bovengrens van de klasse waarin het percentiel valt. Valt het in de
+	 * open klasse, dan is het resultaat de grootste gemeten tijd.
+	 */
+	private long percentiel(int p) {
+		long[] h = getHistogram();
+		long n = 0;
+		for (long k : h) {
+			n += k;
+		}
+		if (n == 0) {
+			return 0;
+		}
+		long drempel = (n * p + 99) / 100;
+		long som = 0;
+		for (int i = 0; i < GRENZEN.length; i++) {
+			som += h[i];
+			if (som >= drempel) {
+				return GRENZEN[i];
+			}
+		}
+		return (long) Math.ceil(getMaxMs());
+	}
+
+	@Override
+	public long[] getHistogramGrenzenMs() {
+		return GRENZEN.clone();
+	}
+
+	@Override
+	public long[] getHistogram() {
+		long[] h = new long[histogram.length()];
+		for (int i = 0; i < h.length; i++) {
+			h[i] = histogram.get(i);
+		}
+		return h;
+	}
+
+	@Override
+	public void reset() {
+		aantal.set(0);
+		totaalNs.set(0);
+		maxNs.set(0);
+		laatsteNs.set(0);
+		for (int i = 0; i < histogram.length(); i++) {
+			histogram.set(i, 0);
+		}
+	}
+}
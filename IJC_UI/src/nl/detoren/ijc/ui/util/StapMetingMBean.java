@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2016 Leo van der Meulen
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation version 3.0
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * See: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Problemen in deze code:
+ * - ...
+ * - ...
+ */
+
+package nl.detoren.ijc.ui.util;
+
+/**
+ * JMX-interface van een StapMeting: doorlooptijden van een stap van het
+ * indelen of exporteren. Tijden zijn in milliseconden.
+ */
+public interface StapMetingMBean {
+
+	/** @return aantal metingen sinds de start of de laatste reset */
+	public long getAantal();
+
+	public double getTotaalMs();
+
+	public double getGemiddeldeMs();
+
+	public double getMaxMs();
+
+	public double getLaatsteMs();
+
+	/** @return bovengrens in ms waar de helft van de metingen onder valt */
+	public long getP50Ms();
+
+	/** @return bovengrens in ms waar 95% van de metingen onder valt */
+	public long getP95Ms();
+
+	/** @return bovengrenzen van de histogramklassen in ms; de laatste klasse is open */
+	public long[] getHistogramGrenzenMs();
+
+	/** @return aantal metingen per histogramklasse */
+	public long[] getHistogram();
+
+	/** Zet alle tellers op 0 */
+	public void reset();
+}
@@ -19,52 +19,74 @@ package nl.detoren.ijc.ui.util;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Minimaliseert de triagonaal van een fuzzy matrix door rijen/kolommen te
+ * verwisselen. Alle toestand is per instantie, zodat meerdere groepen
+ * tegelijkertijd (in verschillende threads) geoptimaliseerd kunnen worden.
+ * Gebruik per groep een eigen instantie.
+ */
 public class minimizetriagonal {
 
-    private static int iterations;
-    private static int order[];
-    private static int swaps[][];
-	private static int A[][];
+    private int iterations;
+    private int order[];
+    private int swaps[][];
+	private int A[][];
+	private int uitgevoerdeIteraties;
+	private int aantalSwaps;
 	
 	private final static Logger logger = Logger.getLogger(minimizetriagonal.class.getName());
     
-    public static int getIterations() {
+    public int getIterations() {
         return iterations;
     }
 
     public void setIterations(int iterations) {
-        minimizetriagonal.iterations = iterations;
+        this.iterations = iterations;
     }
 
-	public static int[] getOrder() {
+	public int[] getOrder() {
 		return order;
 	}
 
 	public void setOrder(int order[]) {
-		minimizetriagonal.order = order;
+		this.order = order;
 	}
 
-	public static int[][] getSwaps() {
+	public int[][] getSwaps() {
 		return swaps;
 	}
 
 	public void setSwaps(int swaps[][]) {
-		minimizetriagonal.swaps = swaps;
+		this.swaps = swaps;
 	}
 
-	public static int[][] getA() {
+	public int[][] getA() {
         return A;
     }
 
     public void setA(int A[][]) {
-        minimizetriagonal.A = A;
+        this.A = A;
+    }
+
+    /**
+     * @return aantal iteraties van de laatste Iterminimizetriagonal
+     */
+    public int getUitgevoerdeIteraties() {
+        return uitgevoerdeIteraties;
     }
 
-    public static int getADimensionx() {
+    /**
+     * @return aantal verwisselingen van de laatste Iterminimizetriagonal
+     */
+    public int getAantalSwaps() {
+        return aantalSwaps;
+    }
+
+    public int getADimensionx() {
         return A.length;
     }
 
-    public static int getADimensiony() {
+    public int getADimensiony() {
         return A[0].length;
     }
 
@@ -76,13 +98,14 @@ public class minimizetriagonal {
     		i++;
     		cont = minimize();
     		contsum +=cont;
-    		System.out.printf("Iteration nr. %d with %d swaps\n", i, cont);
+    		Diagnose.trace("Iteration nr. %d with %d swaps", i, cont);
     	} while (cont>0 && i<getIterations());
+		uitgevoerdeIteraties = i;
+		aantalSwaps = contsum;
 		if (cont==0) {
-			System.out.printf("Iteration completed in %d iteration and in %d swaps.\n", i, contsum);
+			Diagnose.trace("Iteration completed in %d iteration and in %d swaps.", i, contsum);
 		} else {
-			System.out.printf("Iteration failed. No convergence within maximum of %d iterations.\n", minimizetriagonal.getIterations());
-			logger.log(Level.SEVERE, "Iteration failed. No convergence within maximum of %d iterations.\n", minimizetriagonal.getIterations());    		
+			logger.log(Level.SEVERE, "Iteration failed. No convergence within maximum of " + getIterations() + " iterations.");
 		}
     	return;
     }
@@ -100,28 +123,32 @@ public class minimizetriagonal {
 				int somt = 0;
 				for (int j=(Math.max(i-1, 0)); j<=Math.min(i+1, M.length);j++){
 					if (!(i==j)){
-						System.out.printf("M[%d][%d] is %d \n", i,j,M[i][j+indexrow]);
-						System.out.printf("M[%d][%d] is %d \n", j,i,M[j][i+indexrow]);
+						if (Diagnose.isTrace()) {
+							Diagnose.trace("M[%d][%d] is %d ", i,j,M[i][j+indexrow]);
+							Diagnose.trace("M[%d][%d] is %d ", j,i,M[j][i+indexrow]);
+						}
 						somt += M[i][j+indexrow] + M[j][i+indexrow];
 
 					}
 				}
-				System.out.printf("somt is %d \n", somt);
+				if (Diagnose.isTrace()) {
+					Diagnose.trace("somt is %d ", somt);
+				}
 				if (somt < triosom) {
 					triosom = somt;
 					trio = i;
 				}
 			}
 		}
-		System.out.printf("Trio gevonden op %d, %d en %d \n", trio-1, trio, trio+1);
+		Diagnose.trace("Trio gevonden op %d, %d en %d ", trio-1, trio, trio+1);
 		return trio;
 	}
 
-    public static int[][] redoSwaps (int[][] A) {
+    public int[][] redoSwaps (int[][] A) {
     // Solves best pairing by minimizing matrix triagonal 
     	int i, j, k, val;
     	int[][] swaps;
-    	swaps = minimizetriagonal.getSwaps();
+    	swaps = getSwaps();
     	for (k=0;k<swaps.length;k++){ 
         			for (i = 0; i < A.length; i++) {
         				//System.out.print("i is %d \n", i);
@@ -142,7 +169,7 @@ public class minimizetriagonal {
     }
 	
 	
-    public static int minimize ()
+    public int minimize ()
     // Solves best pairing by minimizing matrix triagonal 
     {
     	int i, j, k, t;
@@ -153,7 +180,7 @@ public class minimizetriagonal {
     	int trisum1 = 0; // som van de mini matrix voor swap.
     	int trisum2 = 0; // som van de mini matrix na swap.
     	int swapped = 0;
-        System.out.print("Starting minimizing process\n");
+        Diagnose.trace("Starting minimizing process");
         int[] order = getOrder();
         int indexrow = 1;
         tri = getA();
@@ -54,7 +54,8 @@ public class BewerkSpelerDialoog extends JDialog {
 
     public BewerkSpelerDialoog(Frame frame, String title, Speler s, boolean bestaand, int loc) {
         super(frame, title);
-        this.speler = s;
+        // Bewerk een kopie; de controller neemt de wijzigingen over
+        this.speler = new Speler(s);
         this.bestaandeSpeler = bestaand;
         this.locatie = loc;
     	logger.log(Level.INFO, "Bewerk speler " + s.toPrintableString());
@@ -127,10 +128,16 @@ public class BewerkSpelerDialoog extends JDialog {
             @Override
             public void actionPerformed(ActionEvent e) {
                 // Do actions
-                // Naam
-                speler.setNaam(tfNaam.getText());
-                // Initialen
-                speler.setInitialen(tfInit.getText());
+                if (bestaandeSpeler) {
+                    // Naam
+                    speler.setNaam(tfNaam.getText());
+                    // Initialen
+                    speler.setInitialen(tfInit.getText());
+                } else {
+                    // Een nieuwe speler krijgt zijn sleutel bij naam en
+                    // initialen, net als bij het inlezen van uitslag.txt
+                    speler = new Speler(speler, tfNaam.getText(), tfInit.getText());
+                }
                 // Rating
                 int rating = Integer.parseInt(tfRating.getText());
                 speler.setRating(rating);
@@ -149,6 +156,8 @@ public class BewerkSpelerDialoog extends JDialog {
                 // Als nieuwe speler, dan invoegen.
                 if (!bestaandeSpeler) {
                     controller.addSpeler(speler.getGroep(), speler, locatie);
+                } else {
+                    controller.wijzigSpeler(speler.getGroep(), speler, locatie - 1);
                 }
                 dispose();
             }
@@ -18,6 +18,7 @@ package nl.detoren.ijc.ui.view;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Cursor;
 import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.Toolkit;
@@ -28,6 +29,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,6 +57,7 @@ import javax.swing.table.TableColumn;
 
 import nl.detoren.ijc.data.groepen.Groep;
 import nl.detoren.ijc.data.groepen.Speler;
+import nl.detoren.ijc.ui.control.Achtergrondtaken;
 import nl.detoren.ijc.ui.control.IJCController;
 import nl.detoren.ijc.ui.model.SpelersModel;
 import nl.detoren.ijc.ui.model.WedstrijdModel;
@@ -84,7 +87,12 @@ public class Hoofdscherm extends JFrame {
 	private JTabbedPane tabs;
 	private JPanel[] panels;
 	private JLabel rondeLabel;
+	private JLabel voortgangLabel;
 	private JButton automatischButton;
+	/** Knoppen die uit staan zolang er een achtergrondtaak loopt */
+	private final ArrayList<JButton> knoppen = new ArrayList<>();
+	/** Aantal gestarte achtergrondtaken dat nog niet is afgerond */
+	private int lopend = 0;
 	private JScrollPane[] leftScrollPane;
 	private JScrollPane[] centerScrollPane;
 	private JScrollPane[] rightScrollPane;
@@ -138,10 +146,21 @@ public class Hoofdscherm extends JFrame {
 
 		this.addWindowListener(new WindowAdapter(){
             public void windowClosing(WindowEvent e){
-                    controller.saveState(false);
+                    if (controller.isBezig()) {
+                        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                    }
+                    controller.saveStateNaTaken();
                 }
         });
 
+		// Na automatisch herindelen de tabellen opnieuw tonen
+		controller.addHerindelingLuisteraar(new Runnable() {
+			@Override
+			public void run() {
+				hoofdPanel.repaint();
+			}
+		});
+
 	}
 
 	private void addButtons() {
@@ -171,12 +190,17 @@ public class Hoofdscherm extends JFrame {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				controller.setAutomatisch(false);
-				int groep = tabs.getSelectedIndex();
-				controller.maakGroepsindeling(groep);
-				hoofdPanel.repaint();
+				final int groep = tabs.getSelectedIndex();
+				start(new SchermTaak("Groepsindeling maken") {
+					@Override
+					protected void voerUit() {
+						controller.maakGroepsindeling(groep);
+					}
+				});
 			}
 		});
 		buttonPane.add(wgButton);
+		knoppen.add(wgButton);
 		buttonPane.add(new JSeparator(SwingConstants.VERTICAL));
 		buttonPane.add(new JSeparator(SwingConstants.VERTICAL));
 		buttonPane.add(new JSeparator(SwingConstants.VERTICAL));
@@ -187,12 +211,17 @@ public class Hoofdscherm extends JFrame {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				updateAutomatisch(false);
-				int groep = tabs.getSelectedIndex();
-				controller.maakWedstrijden(groep);
-				hoofdPanel.repaint();
+				final int groep = tabs.getSelectedIndex();
+				start(new SchermTaak("Speelschema maken") {
+					@Override
+					protected void voerUit() {
+						controller.maakWedstrijden(groep);
+					}
+				});
 			}
 		});
 		buttonPane.add(ssButton);
+		knoppen.add(ssButton);
 
 		// Button voor bewerken speelschema
 		final JButton bsButton = new JButton("2a. Bewerk speelschema");
@@ -209,7 +238,13 @@ public class Hoofdscherm extends JFrame {
 					public void windowClosed(WindowEvent e) {
 						System.out.println("closing...");
 						hoofdPanel.repaint();
-						// do something...
+						// Bewerkingen staan niet in het journaal; leg ze vast
+						start(new SchermTaak("Speelschema opslaan") {
+							@Override
+							protected void voerUit() {
+								controller.speelschemaBewerkt();
+							}
+						});
 					}
 
 				});
@@ -217,17 +252,22 @@ public class Hoofdscherm extends JFrame {
 			}
 		});
 		buttonPane.add(bsButton);
+		knoppen.add(bsButton);
 
 		final JButton exportButton = new JButton("Export");
 		exportButton.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				// ResultaatDialoog
-				controller.exportToExcel();
-				hoofdPanel.repaint();
+				start(new SchermTaak("Exporteren naar Excel") {
+					@Override
+					protected void voerUit() {
+						controller.exportToExcel();
+					}
+				});
 			}
 		});
 		buttonPane.add(exportButton);
+		knoppen.add(exportButton);
 
 		buttonPane.add(new JSeparator(SwingConstants.VERTICAL));
 		buttonPane.add(new JSeparator(SwingConstants.VERTICAL));
@@ -255,17 +295,31 @@ public class Hoofdscherm extends JFrame {
 			}
 		});
 		buttonPane.add(guButton);
+		knoppen.add(guButton);
 
 		final JButton usButton = new JButton("4. Update stand");
 		usButton.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				controller.setAutomatisch(false);
-				controller.verwerkUitslagen();
-				hoofdPanel.repaint();
+				start(new SchermTaak("Uitslagen verwerken") {
+					@Override
+					protected void voerUit() {
+						// Eerst een nog geplande indeling afmaken, dan pas stoppen
+						controller.wachtOpHerindeling();
+						controller.setAutomatisch(false);
+						controller.verwerkUitslagen();
+					}
+
+					@Override
+					protected void gereed() {
+						automatischButton.setBackground(Color.RED);
+						updateRondeLabel();
+					}
+				});
 			}
 		});
 		buttonPane.add(usButton);
+		knoppen.add(usButton);
 
 		buttonPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 		buttonPane.setBackground(Color.white);
@@ -275,6 +329,70 @@ public class Hoofdscherm extends JFrame {
 		// hoofdPanel.add(new JLabel("IJC De Toren"));
 		hoofdPanel.add(buttonPane);
 		hoofdPanel.add(rondeLabel);
+		voortgangLabel = new JLabel(" ");
+		hoofdPanel.add(voortgangLabel);
+	}
+
+	/**
+	 * Taak die vanuit het hoofdscherm op de achtergrond wordt uitgevoerd.
+	 * Na afloop wordt het scherm bijgewerkt; een fout wordt gemeld.
+	 */
+	private abstract class SchermTaak extends Achtergrondtaken.Taak {
+
+		SchermTaak(String omschrijving) {
+			super(omschrijving);
+		}
+
+		@Override
+		protected void voortgang(String bericht) {
+			voortgangLabel.setText(bericht);
+		}
+
+		@Override
+		protected final void klaar() {
+			afgerond();
+			gereed();
+			hoofdPanel.repaint();
+		}
+
+		@Override
+		protected final void mislukt(Exception e) {
+			afgerond();
+			hoofdPanel.repaint();
+			JOptionPane.showMessageDialog(Hoofdscherm.this, getOmschrijving() + " is mislukt: " + e.getMessage(),
+					"Fout", JOptionPane.ERROR_MESSAGE);
+		}
+
+		/**
+		 * Extra afhandeling na een geslaagde taak, op de event thread
+		 */
+		protected void gereed() {
+		}
+	}
+
+	/**
+	 * Start een taak op de achtergrond. Zolang er taken lopen, staan de
+	 * knoppen uit en wordt de voortgang getoond.
+	 */
+	private void start(SchermTaak taak) {
+		if (++lopend == 1) {
+			for (JButton knop : knoppen) {
+				knop.setEnabled(false);
+			}
+			setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		}
+		voortgangLabel.setText(taak.getOmschrijving() + "...");
+		controller.voerUitOpAchtergrond(taak);
+	}
+
+	private void afgerond() {
+		if (--lopend == 0) {
+			for (JButton knop : knoppen) {
+				knop.setEnabled(true);
+			}
+			setCursor(Cursor.getDefaultCursor());
+			voortgangLabel.setText(" ");
+		}
 	}
 
 	/**
@@ -317,11 +435,23 @@ public class Hoofdscherm extends JFrame {
 					File file = fc.getSelectedFile();
 					// This is where a real application would open the file.
 					System.out.println("Opening: " + file.getAbsolutePath() + ".");
-					controller.leesGroepen(file.getAbsolutePath());
-					controller.setAutomatisch(true);
-					controller.maakGroepsindeling();
-					updateRondeLabel();
-					hs.repaint();
+					final String bestandsnaam = file.getAbsolutePath();
+					start(new SchermTaak("Groepen inlezen") {
+						@Override
+						protected void voerUit() {
+							controller.leesGroepen(bestandsnaam);
+							meldVoortgang("Groepsindeling maken...");
+							controller.setAutomatisch(true);
+							controller.maakGroepsindeling();
+						}
+
+						@Override
+						protected void gereed() {
+							automatischButton.setBackground(Color.GREEN);
+							updateRondeLabel();
+							hs.repaint();
+						}
+					});
 				} else {
 					System.out.println("Openen bestand geannuleerd");
 				}
@@ -334,7 +464,25 @@ public class Hoofdscherm extends JFrame {
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
 				System.out.println("Save state");
-				controller.saveState(false);
+				start(new SchermTaak("Status opslaan") {
+					@Override
+					protected void voerUit() {
+						controller.saveState(false);
+					}
+				});
+			}
+		});
+		menu.add(item);
+		item = new JMenuItem("Export status (JSON)");
+		item.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				start(new SchermTaak("Status exporteren") {
+					@Override
+					protected void voerUit() {
+						controller.exportStatus();
+					}
+				});
 			}
 		});
 		menu.add(item);
@@ -345,7 +493,10 @@ public class Hoofdscherm extends JFrame {
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
 				System.out.println("Exit from meu");
-				controller.saveState(false);
+				if (controller.isBezig()) {
+					setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+				}
+				controller.saveStateNaTaken();
 				System.exit(EXIT_ON_CLOSE);
 			}
 		});
@@ -514,6 +665,8 @@ public class Hoofdscherm extends JFrame {
 
 						@Override
 						public void actionPerformed(ActionEvent e) {
+							// Alleen een voorbeeld voor de dialoog; die maakt de
+							// echte speler, met een sleutel bij de ingevulde naam
 							Speler nieuw = new Speler(s);
 							nieuw.setId(0);
 							nieuw.setNaam("");
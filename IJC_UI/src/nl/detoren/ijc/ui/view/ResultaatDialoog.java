@@ -106,7 +106,7 @@ class ResultaatDialoog extends JDialog {
                 for (JTextField jtf : uitslagVelden) {
                     if (jtf != null && jtf.getText() != null && !jtf.getText().equals("")) {
                         System.out.println("Veld " + i + " Waarde " + Integer.parseInt(jtf.getText()));
-                        wedstrijden.get(i).setUitslag012(Integer.parseInt(jtf.getText()));
+                        controller.setUitslag(groep, wedstrijden.get(i), Integer.parseInt(jtf.getText()));
                     }
                     ++i;
                 }
@@ -46,8 +46,6 @@ import javax.swing.TransferHandler;
 import javax.swing.table.TableCellRenderer;
 
 import nl.detoren.ijc.data.groepen.Groep;
-import nl.detoren.ijc.data.groepen.Speler;
-import nl.detoren.ijc.data.wedstrijden.Wedstrijd;
 import nl.detoren.ijc.io.GroepenReader;
 import nl.detoren.ijc.ui.model.SerieModel;
 import nl.detoren.ijc.ui.model.SpelersIndelenModel;
@@ -234,7 +232,6 @@ public class WedstrijdschemaDialoog extends JDialog {
                     return;
                 }
                 final SerieModel model = (SerieModel) serieTabel[i].getModel();
-                final Wedstrijd w = model.getWedstrijd(rowindex);
                 if (e.isPopupTrigger() && e.getComponent() instanceof JTable) {
                     JPopupMenu popup = new JPopupMenu();
                     JMenuItem menuItem = new JMenuItem("Verwijder wedstrijd");
@@ -252,7 +249,7 @@ public class WedstrijdschemaDialoog extends JDialog {
 
                         @Override
                         public void actionPerformed(ActionEvent e) {
-                            w.setSpelers(Speler.dummySpeler(groep), Speler.dummySpeler(groep));
+                            model.wisSpelers(rowindex);
                             model.forceRepaint();
                         }
                     });
@@ -262,9 +259,7 @@ public class WedstrijdschemaDialoog extends JDialog {
 
                         @Override
                         public void actionPerformed(ActionEvent e) {
-                            Speler s1 = w.getWit();
-                            Speler s2 = w.getZwart();
-                            w.setSpelers(s2, s1);
+                            model.wisselSpelers(rowindex);
                             model.forceRepaint();
                         }
                     });